@@ -0,0 +1,80 @@
+package net.heberling.ismart;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import net.heberling.ismart.RateLimiter.Budget;
+import net.heberling.ismart.RateLimiter.Lane;
+import org.junit.jupiter.api.Test;
+
+class RateLimiterTest {
+
+  @Test
+  void commandsGoBeforeWaitingBackgroundRequests() throws Exception {
+    // one token every 50 ms for the account
+    RateLimiter limiter = new RateLimiter(new Budget(20, 1), new Budget(1000, 100));
+    List<String> order = new CopyOnWriteArrayList<>();
+
+    assertTrue(limiter.acquire("/status", Lane.BACKGROUND).isDone());
+    CompletableFuture<Void> status =
+        limiter.acquire("/status", Lane.BACKGROUND).thenRun(() -> order.add("status"));
+    CompletableFuture<Void> command =
+        limiter.acquire("/command", Lane.COMMAND).thenRun(() -> order.add("command"));
+    assertEquals(2, limiter.getQueued());
+    assertEquals(2, limiter.getThrottled());
+
+    CompletableFuture.allOf(status, command).get(1, TimeUnit.SECONDS);
+    assertEquals(List.of("command", "status"), order);
+    assertEquals(0, limiter.getQueued());
+  }
+
+  @Test
+  void endpointsHaveTheirOwnBudget() throws Exception {
+    // one token every 10 s for each endpoint
+    RateLimiter limiter = new RateLimiter(new Budget(1000, 100), new Budget(0.1, 1));
+
+    assertTrue(limiter.acquire("/a", Lane.BACKGROUND).isDone());
+    CompletableFuture<Void> a = limiter.acquire("/a", Lane.BACKGROUND);
+    CompletableFuture<Void> b = limiter.acquire("/b", Lane.BACKGROUND);
+
+    b.get(1, TimeUnit.SECONDS);
+    assertFalse(a.isDone());
+    assertEquals(1, limiter.getQueued());
+    a.cancel(false);
+  }
+
+  @Test
+  void backgroundRequestsWaitForCommandsOnOtherEndpoints() throws Exception {
+    // one token every 10 s for each endpoint
+    RateLimiter limiter = new RateLimiter(new Budget(1000, 100), new Budget(0.1, 1));
+
+    assertTrue(limiter.acquire("/command", Lane.COMMAND).isDone());
+    CompletableFuture<Void> command = limiter.acquire("/command", Lane.COMMAND);
+    CompletableFuture<Void> status = limiter.acquire("/status", Lane.BACKGROUND);
+    assertFalse(status.isDone());
+
+    // without the command, the status request gets the token of its endpoint
+    command.cancel(false);
+    status.get(1, TimeUnit.SECONDS);
+    assertEquals(0, limiter.getQueued());
+  }
+
+  @Test
+  void cancelledRequestsLeaveTheQueue() throws Exception {
+    RateLimiter limiter = new RateLimiter(new Budget(20, 1), new Budget(1000, 100));
+
+    limiter.acquire("/status", Lane.BACKGROUND);
+    CompletableFuture<Void> cancelled = limiter.acquire("/status", Lane.BACKGROUND);
+    CompletableFuture<Void> next = limiter.acquire("/status", Lane.BACKGROUND);
+    cancelled.cancel(false);
+
+    next.get(1, TimeUnit.SECONDS);
+    assertTrue(cancelled.isCancelled());
+    assertEquals(0, limiter.getQueued());
+  }
+}
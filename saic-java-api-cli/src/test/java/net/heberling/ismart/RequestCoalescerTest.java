@@ -0,0 +1,67 @@
+package net.heberling.ismart;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import org.junit.jupiter.api.Test;
+
+class RequestCoalescerTest {
+  private final RequestCoalescer<String> coalescer = new RequestCoalescer<>();
+  private final List<CompletableFuture<String>> started = new CopyOnWriteArrayList<>();
+
+  private CompletableFuture<String> start() {
+    CompletableFuture<String> operation = new CompletableFuture<>();
+    started.add(operation);
+    return operation;
+  }
+
+  @Test
+  void joinsTheOperationInFlight() throws Exception {
+    CompletableFuture<String> first = coalescer.run("vin", this::start);
+    CompletableFuture<String> second = coalescer.run("vin", this::start);
+    CompletableFuture<String> other = coalescer.run("other", this::start);
+    assertEquals(2, started.size());
+    assertEquals(1, coalescer.getCoalesced());
+
+    started.get(0).complete("status");
+    assertEquals("status", first.get());
+    assertEquals("status", second.get());
+    assertFalse(other.isDone());
+
+    // the operation is done, the next caller starts a new one
+    coalescer.run("vin", this::start);
+    assertEquals(3, started.size());
+  }
+
+  @Test
+  void cancellingOneCallerKeepsTheOthers() throws Exception {
+    CompletableFuture<String> first = coalescer.run("vin", this::start);
+    CompletableFuture<String> second = coalescer.run("vin", this::start);
+
+    first.cancel(false);
+    started.get(0).complete("status");
+    assertEquals("status", second.get());
+  }
+
+  @Test
+  void sharesFailures() {
+    CompletableFuture<String> first = coalescer.run("vin", this::start);
+    CompletableFuture<String> second = coalescer.run("vin", this::start);
+
+    started.get(0).completeExceptionally(new IOException("offline"));
+    assertEquals(
+        "offline", assertThrows(ExecutionException.class, first::get).getCause().getMessage());
+    assertEquals(
+        "offline", assertThrows(ExecutionException.class, second::get).getCause().getMessage());
+
+    coalescer.run("vin", () -> CompletableFuture.failedFuture(new IOException("still offline")));
+    coalescer.run("vin", this::start);
+    assertEquals(2, started.size());
+  }
+}
@@ -0,0 +1,102 @@
+package net.heberling.ismart;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import net.heberling.ismart.asn1.v1_1.Message;
+import net.heberling.ismart.asn1.v1_1.MessageCoder;
+import net.heberling.ismart.asn1.v1_1.entity.MP_UserLoggingInResp;
+import org.junit.jupiter.api.Test;
+
+class SessionManagerTest {
+  private final List<CompletableFuture<Message<MP_UserLoggingInResp>>> logins =
+      new CopyOnWriteArrayList<>();
+
+  private final SessionManager session =
+      new SessionManager(
+          (user, password) -> {
+            CompletableFuture<Message<MP_UserLoggingInResp>> login = new CompletableFuture<>();
+            logins.add(login);
+            return login;
+          });
+
+  @Test
+  void concurrentRenewalsShareOneLogin() throws Exception {
+    session.login("user", "password");
+    logins.get(0).complete(loginResponse("1"));
+    SessionManager.Credentials expired = session.current();
+    assertEquals("1", expired.token);
+
+    CompletableFuture<SessionManager.Credentials> first = session.renew(expired);
+    CompletableFuture<SessionManager.Credentials> second = session.renew(expired);
+    assertSame(first, second);
+    assertEquals(2, logins.size());
+
+    logins.get(1).complete(loginResponse("2"));
+    assertEquals("2", first.get().token);
+    assertEquals("2", session.getToken());
+
+    // a request, that still used the expired token, gets the new one without another login
+    assertSame(first.get(), session.renew(expired).get());
+    assertEquals(2, logins.size());
+
+    SessionManager.Metrics metrics = session.getMetrics();
+    assertEquals(2, metrics.getLogins());
+    assertEquals(1, metrics.getRelogins());
+    assertEquals(0, metrics.getFailedLogins());
+    assertEquals(3, metrics.getExpiredResponses());
+  }
+
+  @Test
+  void failedRenewalIsRetriedByTheNextRequest() throws Exception {
+    session.login("user", "password");
+    logins.get(0).complete(loginResponse("1"));
+    SessionManager.Credentials expired = session.current();
+
+    CompletableFuture<SessionManager.Credentials> failed = session.renew(expired);
+    logins.get(1).complete(loginResponse(null));
+    ExecutionException e = assertThrows(ExecutionException.class, failed::get);
+    assertInstanceOf(IOException.class, e.getCause());
+    assertSame(expired, session.current());
+
+    CompletableFuture<SessionManager.Credentials> renewed = session.renew(expired);
+    assertEquals(3, logins.size());
+    logins.get(2).complete(loginResponse("2"));
+    assertEquals("2", renewed.get().token);
+    assertEquals(1, session.getMetrics().getFailedLogins());
+  }
+
+  @Test
+  void detectsExpiredTokens() {
+    assertTrue(SessionManager.isExpired(SessionManager.RESULT_TOKEN_EXPIRED));
+    assertFalse(SessionManager.isExpired(0));
+    assertFalse(SessionManager.isExpired(null));
+  }
+
+  /**
+   * @param token the token of a successful login, or <code>null</code> for a failed one
+   */
+  private static Message<MP_UserLoggingInResp> loginResponse(String token) {
+    MP_UserLoggingInResp applicationData = null;
+    if (token != null) {
+      applicationData = new MP_UserLoggingInResp();
+      applicationData.setToken(token);
+    }
+    Message<MP_UserLoggingInResp> response =
+        MessageCoder.of(MP_UserLoggingInResp.class)
+            .initializeMessage("uid", null, null, "501", 513, 1, applicationData);
+    if (token == null) {
+      response.getBody().setResult(1);
+    }
+    return response;
+  }
+}
@@ -0,0 +1,57 @@
+package net.heberling.ismart;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class TimerWheelTest {
+
+  @Test
+  void runsTasksAfterTheirDelay() throws InterruptedException {
+    // one round of the wheel takes 40 ms, the longest delay needs more than one round
+    TimerWheel wheel = new TimerWheel(10, 4, Runnable::run, "test-timer");
+    List<Long> order = new CopyOnWriteArrayList<>();
+    CountDownLatch done = new CountDownLatch(4);
+    long start = System.nanoTime();
+    for (long delay : new long[] {95, 25, 0, 55}) {
+      wheel.schedule(
+          delay,
+          () -> {
+            long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            assertTrue(elapsed >= delay, "Task with delay " + delay + " ran after " + elapsed);
+            order.add(delay);
+            done.countDown();
+          });
+    }
+
+    assertTrue(done.await(5, TimeUnit.SECONDS));
+    assertEquals(List.of(0L, 25L, 55L, 95L), order);
+  }
+
+  @Test
+  void runsManyTasks() throws InterruptedException {
+    TimerWheel wheel = new TimerWheel(1, 16, Runnable::run, "test-timer");
+    CountDownLatch done = new CountDownLatch(10_000);
+    for (int i = 0; i < 10_000; i++) {
+      wheel.schedule(i % 50, done::countDown);
+    }
+
+    assertTrue(done.await(5, TimeUnit.SECONDS));
+  }
+
+  @Test
+  void doesNotRunTasksAfterClose() throws InterruptedException {
+    TimerWheel wheel = new TimerWheel(10, 4, Runnable::run, "test-timer");
+    CountDownLatch done = new CountDownLatch(1);
+    wheel.schedule(50, done::countDown);
+    wheel.close();
+
+    assertFalse(done.await(200, TimeUnit.MILLISECONDS));
+  }
+}
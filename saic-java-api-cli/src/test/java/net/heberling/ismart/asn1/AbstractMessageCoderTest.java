@@ -2,6 +2,7 @@ package net.heberling.ismart.asn1;
 
 import static net.heberling.ismart.cli.GetData.toJSON;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
 
 import java.io.File;
 import java.io.IOException;
@@ -54,6 +55,15 @@ public class AbstractMessageCoderTest {
       // make sure the message stays the same
       assertEquals(messageString, coder.encodeRequest(message));
 
+      // a copy encodes the same and shares no mutable parts with the message
+      M copy = MessageCopier.copy(message);
+      assertNotSame(message.getBody(), copy.getBody());
+      assertEquals(messageString, coder.encodeRequest(copy));
+
+      // JER keeps all values, so the decoded message encodes the same
+      M jerMessage = JerCodec.decodeMessage(JerCodec.encodeMessage(message), coder);
+      assertEquals(messageString, coder.encodeRequest(jerMessage));
+
       if (forceOverwrite) {
         Anonymizer.anonymize(message);
         messageString = coder.encodeRequest(message);
@@ -0,0 +1,126 @@
+package net.heberling.ismart.asn1;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import net.heberling.ismart.asn1.v1_1.Message;
+import net.heberling.ismart.asn1.v1_1.MessageCoder;
+import net.heberling.ismart.asn1.v1_1.entity.MP_UserLoggingInReq;
+import net.heberling.ismart.asn1.v1_1.entity.MP_UserLoggingInResp;
+import org.junit.jupiter.api.Test;
+
+class DecodeLimitsTest {
+
+  @Test
+  void stringLongerThanTheMessage() throws IOException {
+    // 4 bytes are enough for 8 numeric characters, but not for 5 octets or 5 IA5 characters
+    DecodeLimits limits = DecodeLimits.UNLIMITED;
+    assertThrows(IllegalArgumentException.class, () -> stream(limits).readOctetString(5, "t"));
+    assertThrows(IllegalArgumentException.class, () -> stream(limits).read7BitString(5, "t"));
+    assertEquals(8, stream(limits).readNumericString(8, "t").length());
+  }
+
+  @Test
+  void stringLength() throws IOException {
+    DecodeLimits limits = new DecodeLimits(100, 3, 100, 10);
+    assertThrows(IllegalArgumentException.class, () -> stream(limits).read7BitString(4, "t"));
+    assertThrows(IllegalArgumentException.class, () -> stream(limits).readOctetString(4, "t"));
+    assertEquals(3, stream(limits).read7BitString(3, "t").length());
+  }
+
+  @Test
+  void collectionSize() {
+    PerBitInputStream stream = stream(new DecodeLimits(100, 100, 2, 10));
+    assertEquals(2, stream.checkCollectionSize(2, "t"));
+    assertThrows(IllegalArgumentException.class, () -> stream.checkCollectionSize(3, "t"));
+  }
+
+  @Test
+  void depth() {
+    PerBitInputStream stream = stream(new DecodeLimits(100, 100, 100, 2));
+    stream.enter("a");
+    stream.enter("b");
+    assertThrows(IllegalArgumentException.class, () -> stream.enter("c"));
+    stream.exit();
+    stream.exit();
+    stream.enter("d");
+  }
+
+  @Test
+  void messageLength() {
+    MessageCoder<MP_UserLoggingInReq> coder = MessageCoder.of(MP_UserLoggingInReq.class);
+    String encoded = coder.encodeRequest(loginRequest(coder, "password"));
+    assertEquals(
+        "password",
+        coder.decodeResponse(encoded, DecodeLimits.UNLIMITED).getApplicationData().getPassword());
+
+    RuntimeException e =
+        assertThrows(
+            RuntimeException.class,
+            () -> coder.decodeResponse(encoded, new DecodeLimits(16, 100, 100, 10)));
+    assertInstanceOf(IllegalArgumentException.class, e.getCause());
+  }
+
+  @Test
+  void truncatedMessage() {
+    MessageCoder<MP_UserLoggingInReq> coder = MessageCoder.of(MP_UserLoggingInReq.class);
+    ByteBuffer buffer = ByteBuffer.allocate(1024);
+    coder.encodeRequest(loginRequest(coder, "012345678901234567890123456789"), buffer);
+    buffer.flip();
+    // the password is the last element, its length is intact, but most of its characters are not
+    buffer.limit(buffer.limit() - 10);
+
+    RuntimeException e = assertThrows(RuntimeException.class, () -> coder.decodeResponse(buffer));
+    assertInstanceOf(IllegalArgumentException.class, e.getCause());
+    assertTrue(e.getCause().getMessage().contains("bits left"), e.getCause().getMessage());
+  }
+
+  @Test
+  void reflectiveDecoder() throws Exception {
+    MP_UserLoggingInResp response = new MP_UserLoggingInResp();
+    response.setUserName("username");
+    PerBitOutputStream stream = new PerBitOutputStream();
+    new AbstractMessageCoder.MyPERUnalignedEncoder().encode(response, stream);
+    byte[] encoded = stream.toByteArray();
+
+    assertEquals("username", decodeReflective(encoded, DecodeLimits.UNLIMITED).getUserName());
+    DecodeLimits limits = new DecodeLimits(100, 4, 100, 10);
+    assertThrows(IllegalArgumentException.class, () -> decodeReflective(encoded, limits));
+  }
+
+  private static MP_UserLoggingInResp decodeReflective(byte[] encoded, DecodeLimits limits)
+      throws Exception {
+    ByteArrayInputStream in = new ByteArrayInputStream(encoded);
+    AbstractMessageCoder.FrameInputStream frame =
+        new AbstractMessageCoder.FrameInputStream(limits) {
+          @Override
+          int remaining() {
+            return in.available();
+          }
+
+          @Override
+          public int read() {
+            return in.read();
+          }
+        };
+    return new AbstractMessageCoder.MyPERUnalignedDecoder(frame)
+        .decode(frame, MP_UserLoggingInResp.class);
+  }
+
+  private static PerBitInputStream stream(DecodeLimits limits) {
+    return new PerBitInputStream(new ByteArrayInputStream(new byte[4]), limits, 32);
+  }
+
+  private static Message<MP_UserLoggingInReq> loginRequest(
+      MessageCoder<MP_UserLoggingInReq> coder, String password) {
+    MP_UserLoggingInReq request = new MP_UserLoggingInReq();
+    request.setPassword(password);
+    return coder.initializeMessage(
+        "0000000000000000000000000000000000000000000000000#", null, null, "501", 513, 1, request);
+  }
+}
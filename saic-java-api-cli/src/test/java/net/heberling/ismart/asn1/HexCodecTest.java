@@ -0,0 +1,110 @@
+package net.heberling.ismart.asn1;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class HexCodecTest {
+
+  private static final HexCodec[] CODECS = {HexCodec.LOOKUP, HexCodec.SWAR};
+
+  @Test
+  void encodeAllBytes() {
+    // all byte values in every position of a block and in the remainder
+    for (int length = 1; length <= 9; length++) {
+      for (int position = 0; position < length; position++) {
+        for (int value = 0; value < 256; value++) {
+          byte[] bytes = new byte[length];
+          bytes[position] = (byte) value;
+          char[] expected = new char[length * 2 + 1];
+          encodeWithFormat(bytes, expected, 1);
+          for (HexCodec codec : CODECS) {
+            char[] chars = new char[length * 2 + 1];
+            codec.encode(bytes, 0, length, chars, 1);
+            assertArrayEquals(expected, chars);
+
+            byte[] ascii = new byte[length * 2 + 1];
+            codec.encode(bytes, 0, length, ascii, 1);
+            assertEquals(new String(expected, 1, length * 2), new String(ascii, 1, length * 2));
+          }
+        }
+      }
+    }
+  }
+
+  @Test
+  void decodeAllCharacters() {
+    // every character in every position of a block, invalid ones fail like the lookup table
+    for (int position = 0; position < 8; position++) {
+      for (int c = 0; c <= Character.MAX_VALUE; c++) {
+        char[] chars = "0123456789aBcDeF".toCharArray();
+        chars[position] = (char) c;
+        String hex = new String(chars);
+        int value = Character.digit(c, 16);
+        boolean valid = value >= 0 && c < 0x80;
+        for (HexCodec codec : CODECS) {
+          byte[] bytes = new byte[8];
+          if (valid) {
+            codec.decode(hex, 0, bytes, 0, 8);
+            assertEquals(value, (bytes[position / 2] >>> (position % 2 == 0 ? 4 : 0)) & 0x0F);
+          } else {
+            assertThrows(
+                IllegalArgumentException.class, () -> codec.decode(hex, 0, bytes, 0, 8), hex);
+          }
+          if (c < 256) {
+            byte[] ascii = hex.getBytes(StandardCharsets.ISO_8859_1);
+            if (valid) {
+              byte[] fromAscii = new byte[8];
+              codec.decode(ascii, 0, fromAscii, 0, 8);
+              assertArrayEquals(bytes, fromAscii);
+            } else {
+              assertThrows(
+                  IllegalArgumentException.class, () -> codec.decode(ascii, 0, bytes, 0, 8), hex);
+            }
+          }
+        }
+      }
+    }
+  }
+
+  @Test
+  void roundTrip() {
+    Random random = new Random(42);
+    for (int length = 0; length < 100; length++) {
+      byte[] bytes = new byte[length];
+      random.nextBytes(bytes);
+      for (HexCodec codec : CODECS) {
+        char[] chars = new char[length * 2];
+        codec.encode(bytes, 0, length, chars, 0);
+        String hex = new String(chars);
+        for (String input : new String[] {hex, hex.toLowerCase(Locale.ROOT)}) {
+          byte[] decoded = new byte[length + 2];
+          codec.decode(input, 0, decoded, 1, length);
+          byte[] fromAscii = new byte[length + 2];
+          codec.decode(input.getBytes(StandardCharsets.US_ASCII), 0, fromAscii, 1, length);
+          byte[] expected = new byte[length + 2];
+          System.arraycopy(bytes, 0, expected, 1, length);
+          assertArrayEquals(expected, decoded);
+          assertArrayEquals(expected, fromAscii);
+        }
+      }
+      assertEquals(
+          AbstractMessageCoder.bytesToHex(bytes),
+          AbstractMessageCoder.bytesToHex(
+              AbstractMessageCoder.hexStringToByteArray(AbstractMessageCoder.bytesToHex(bytes))));
+    }
+  }
+
+  private static void encodeWithFormat(byte[] bytes, char[] target, int index) {
+    for (byte b : bytes) {
+      String hex = String.format("%02X", b);
+      target[index++] = hex.charAt(0);
+      target[index++] = hex.charAt(1);
+    }
+  }
+}
@@ -0,0 +1,88 @@
+package net.heberling.ismart.asn1;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.ByteBuffer;
+import net.heberling.ismart.asn1.v1_1.entity.MP_UserLoggingInReq;
+import net.heberling.ismart.asn1.v2_1.entity.OTA_RVMVehicleStatusReq;
+import net.heberling.ismart.asn1.v3_0.entity.OTA_ChrgCtrlReq;
+import org.bn.coders.IASN1PreparedElement;
+import org.junit.jupiter.api.Test;
+
+class MessageCoderRegistryTest {
+
+  private static final String UID = "0000000000000000000000000000000000000000000000000#";
+
+  private static final String TOKEN = "0000000000000000000000000000000000000000";
+
+  private static final String VIN = "00000000000000000";
+
+  @Test
+  void decodeRequestOfEachVersion() {
+    MP_UserLoggingInReq login = new MP_UserLoggingInReq();
+    login.setPassword("password");
+    net.heberling.ismart.asn1.v1_1.MessageCoder<MP_UserLoggingInReq> v1Coder =
+        net.heberling.ismart.asn1.v1_1.MessageCoder.of(MP_UserLoggingInReq.class);
+    String v1 =
+        v1Coder.encodeRequest(v1Coder.initializeMessage(UID, null, null, "501", 513, 1, login));
+
+    OTA_RVMVehicleStatusReq status = new OTA_RVMVehicleStatusReq();
+    status.setVehStatusReqType(2);
+    net.heberling.ismart.asn1.v2_1.MessageCoder<OTA_RVMVehicleStatusReq> v2Coder =
+        net.heberling.ismart.asn1.v2_1.MessageCoder.of(OTA_RVMVehicleStatusReq.class);
+    String v2 =
+        v2Coder.encodeRequest(v2Coder.initializeMessage(UID, TOKEN, VIN, "511", 25857, 1, status));
+
+    OTA_ChrgCtrlReq charging = new OTA_ChrgCtrlReq();
+    charging.setTboxV2XReq(0);
+    charging.setTboxEleccLckCtrlReq(0);
+    charging.setChrgCtrlReq(1);
+    net.heberling.ismart.asn1.v3_0.MessageCoder<OTA_ChrgCtrlReq> v3Coder =
+        net.heberling.ismart.asn1.v3_0.MessageCoder.of(OTA_ChrgCtrlReq.class);
+    String v3 =
+        v3Coder.encodeRequest(v3Coder.initializeMessage(UID, TOKEN, VIN, "516", 768, 7, charging));
+
+    assertEquals("1.1", MessageCoderRegistry.detectVersion(v1));
+    assertEquals("2.1", MessageCoderRegistry.detectVersion(v2));
+    assertEquals("3.0", MessageCoderRegistry.detectVersion(v3));
+
+    assertInstanceOf(
+        MP_UserLoggingInReq.class, MessageCoderRegistry.decodeRequest(v1).getApplicationData());
+    assertInstanceOf(
+        OTA_RVMVehicleStatusReq.class, MessageCoderRegistry.decodeRequest(v2).getApplicationData());
+    assertInstanceOf(
+        OTA_ChrgCtrlReq.class, MessageCoderRegistry.decodeRequest(v3).getApplicationData());
+  }
+
+  @Test
+  void unknownMessageIsDecodedWithoutApplicationData() {
+    OTA_RVMVehicleStatusReq status = new OTA_RVMVehicleStatusReq();
+    status.setVehStatusReqType(2);
+    net.heberling.ismart.asn1.v2_1.MessageCoder<OTA_RVMVehicleStatusReq> coder =
+        net.heberling.ismart.asn1.v2_1.MessageCoder.of(OTA_RVMVehicleStatusReq.class);
+    net.heberling.ismart.asn1.v2_1.Message<OTA_RVMVehicleStatusReq> message =
+        coder.initializeMessage(UID, TOKEN, VIN, "999", 25857, 1, status);
+
+    ByteBuffer buffer = ByteBuffer.allocate(1024);
+    coder.encodeRequest(message, buffer);
+    buffer.flip();
+    AbstractMessage<?, ?, ?> decoded = MessageCoderRegistry.decodeResponse(buffer);
+    assertNull(decoded.getApplicationData());
+    assertEquals(
+        "999",
+        ((net.heberling.ismart.asn1.v2_1.MP_DispatcherBody) decoded.getBody()).getApplicationID());
+  }
+
+  @Test
+  void unsupportedVersion() {
+    assertThrows(
+        IllegalArgumentException.class, () -> MessageCoderRegistry.detectVersion("00000F0"));
+    assertEquals(
+        IASN1PreparedElement.class,
+        MessageCoderRegistry.getApplicationDataClass(
+            "3.0", new Routing("516", 768, 5, null, null, false, 0), false));
+  }
+}
@@ -0,0 +1,140 @@
+package net.heberling.ismart.asn1;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import net.heberling.ismart.asn1.v1_1.DataEncodingType;
+import net.heberling.ismart.asn1.v1_1.LanguageType;
+import net.heberling.ismart.asn1.v1_1.MP_DispatcherBody;
+import net.heberling.ismart.asn1.v1_1.MessageCounter;
+import net.heberling.ismart.asn1.v1_1.NetworkInfo;
+import net.heberling.ismart.asn1.v1_1.entity.MP_UserLoggingInResp;
+import net.heberling.ismart.asn1.v1_1.entity.Timestamp;
+import net.heberling.ismart.asn1.v1_1.entity.VinInfo;
+import org.junit.jupiter.api.Test;
+
+class PerCodecsTest {
+
+  @Test
+  void dispatcherBodyMatchesReflectiveEncoding() throws Exception {
+    MP_DispatcherBody body = new MP_DispatcherBody();
+    body.setUid("00000000000000000000000000000000000000000000000001");
+    body.setApplicationID("501");
+    body.setVin("LSJA0000000000000");
+    body.setEventCreationTime(4294967295L);
+    // 48 bit value, upstream binarynotes truncates it while decoding
+    body.setEventID(0xFEDCBA987654L);
+    body.setMessageID(2);
+    MessageCounter messageCounter = new MessageCounter();
+    messageCounter.setUplinkCounter(1);
+    messageCounter.setDownlinkCounter(255);
+    body.setMessageCounter(messageCounter);
+    NetworkInfo networkInfo = new NetworkInfo();
+    networkInfo.setMccNetwork("262");
+    networkInfo.setMncNetwork("007");
+    networkInfo.setMccSim("262");
+    networkInfo.setMncSim("007");
+    networkInfo.setSignalStrength(99);
+    body.setNetworkInfo(networkInfo);
+    // numeric strings, spaces are encoded as well
+    body.setSimInfo("1234567890 87654321");
+    body.setIccID("12345678901234567890");
+    LanguageType hmiLanguage = new LanguageType();
+    hmiLanguage.setValue(LanguageType.EnumType.values()[1]);
+    body.setHmiLanguage(hmiLanguage);
+    body.setApplicationDataLength(0L);
+    DataEncodingType dataEncoding = new DataEncodingType();
+    dataEncoding.setValue(DataEncodingType.EnumType.perUnaligned);
+    body.setApplicationDataEncoding(dataEncoding);
+    body.setApplicationDataProtocolVersion(513);
+    body.setTestFlag(2);
+    body.setResult(0);
+    body.setErrorMessage("error".getBytes(StandardCharsets.UTF_8));
+
+    byte[] encoded = assertSameEncoding(body);
+
+    MP_DispatcherBody decoded = decodeGenerated(encoded, MP_DispatcherBody.class);
+    assertEquals(0xFEDCBA987654L, decoded.getEventID());
+    assertEquals("1234567890 87654321", decoded.getSimInfo());
+    assertEquals(
+        0xFEDCBA987654L,
+        new AbstractMessageCoder.MyPERUnalignedDecoder()
+            .decode(new ByteArrayInputStream(encoded), MP_DispatcherBody.class)
+            .getEventID());
+    assertArrayEquals(encoded, encodeGenerated(decoded));
+  }
+
+  @Test
+  void sequenceOfMatchesReflectiveEncoding() throws Exception {
+    MP_UserLoggingInResp response = new MP_UserLoggingInResp();
+    response.setToken("0000000000000000000000000000000000000000");
+    response.setRefreshToken("1111111111111111111111111111111111111111");
+    Timestamp expiration = new Timestamp();
+    expiration.setSeconds(1700000000L);
+    response.setTokenExpiration(expiration);
+    VinInfo first = new VinInfo();
+    first.setVin("LSJA0000000000000");
+    first.setSeries("ZS EV");
+    first.setBrandName("MG".getBytes(StandardCharsets.UTF_8));
+    first.setModelName("MG ZS EV".getBytes(StandardCharsets.UTF_8));
+    first.setIsAcivate(true);
+    first.setIsCurrentVehicle(1);
+    VinInfo second = new VinInfo();
+    second.setVin("LSJA0000000000001");
+    second.setSeries("MG5");
+    second.setBrandName("MG".getBytes(StandardCharsets.UTF_8));
+    second.setModelName("MG5 Electric".getBytes(StandardCharsets.UTF_8));
+    second.setIsAcivate(false);
+    second.setModelYear("2022");
+    second.setBindTime(expiration);
+    response.setVinList(List.of(first, second));
+    response.setUserName("username");
+
+    byte[] encoded = assertSameEncoding(response);
+
+    assertArrayEquals(
+        encoded, encodeGenerated(decodeGenerated(encoded, MP_UserLoggingInResp.class)));
+  }
+
+  @Test
+  void mandatoryFieldMissing() {
+    PerCodec<MessageCounter> codec = PerCodecs.get(MessageCounter.class);
+    assumeTrue(codec != null, "generated codecs are not available");
+
+    MessageCounter messageCounter = new MessageCounter();
+    messageCounter.setUplinkCounter(1);
+    IllegalArgumentException exception =
+        assertThrows(
+            IllegalArgumentException.class,
+            () -> codec.encode(messageCounter, new PerBitOutputStream()));
+    assertEquals(
+        "The mandatory field 'downlinkCounter' does not have a value!", exception.getMessage());
+  }
+
+  private static byte[] assertSameEncoding(Object element) throws Exception {
+    PerBitOutputStream expected = new PerBitOutputStream();
+    new AbstractMessageCoder.MyPERUnalignedEncoder().encode(element, expected);
+
+    byte[] actual = encodeGenerated(element);
+    assertArrayEquals(expected.toByteArray(), actual);
+    return actual;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static byte[] encodeGenerated(Object element) {
+    PerCodec<Object> codec = (PerCodec<Object>) PerCodecs.get(element.getClass());
+    assumeTrue(codec != null, "generated codecs are not available");
+    PerBitOutputStream stream = new PerBitOutputStream();
+    codec.encode(element, stream);
+    return stream.toByteArray();
+  }
+
+  private static <T> T decodeGenerated(byte[] encoded, Class<T> type) throws Exception {
+    return PerCodecs.get(type).decode(new PerBitInputStream(new ByteArrayInputStream(encoded)));
+  }
+}
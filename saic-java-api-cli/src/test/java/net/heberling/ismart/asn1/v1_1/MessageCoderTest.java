@@ -1,5 +1,16 @@
 package net.heberling.ismart.asn1.v1_1;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import net.heberling.ismart.asn1.MessageCoderRegistry;
+import net.heberling.ismart.asn1.PreparedRequest;
 import net.heberling.ismart.asn1.v1_1.entity.APPUpgradeInfoReq;
 import net.heberling.ismart.asn1.v1_1.entity.APPUpgradeInfoResp;
 import net.heberling.ismart.asn1.v1_1.entity.AbortSendMessageReq;
@@ -14,6 +25,7 @@ import net.heberling.ismart.asn1.v1_1.entity.MessageListReq;
 import net.heberling.ismart.asn1.v1_1.entity.MessageListResp;
 import net.heberling.ismart.asn1.v1_1.entity.PINVerificationReq;
 import net.heberling.ismart.asn1.v1_1.entity.SetNotificationCountReq;
+import net.heberling.ismart.asn1.v1_1.entity.Timestamp;
 import org.bn.coders.IASN1PreparedElement;
 import org.junit.jupiter.api.Test;
 
@@ -158,4 +170,134 @@ class MessageCoderTest extends net.heberling.ismart.asn1.AbstractMessageCoderTes
     // https://tap-eu.soimt.com/TAP.Web/ota.mp
     decodeEncode("313_513_response", new MessageCoder<>(IASN1PreparedElement.class));
   }
+
+  @Test
+  void splitFrames() throws IOException {
+    MessageCoder<MP_UserLoggingInReq> coder = MessageCoder.of(MP_UserLoggingInReq.class);
+    MP_UserLoggingInReq request = new MP_UserLoggingInReq();
+    request.setPassword("password");
+    String first =
+        coder.encodeRequest(
+            coder.initializeMessage(
+                "0000000000000000000000000000000000000000000000000#",
+                null,
+                null,
+                "501",
+                513,
+                1,
+                request));
+    request.setPassword("a much longer password");
+    String second =
+        coder.encodeRequest(
+            coder.initializeMessage(
+                "0000000000000000000000000000000000000000000000000#",
+                null,
+                null,
+                "501",
+                513,
+                2,
+                request));
+    String capture = first + "\n" + second + "\n";
+
+    List<CharSequence> frames = coder.splitFrames(capture);
+    assertEquals(2, frames.size());
+    assertEquals(first, frames.get(0).toString());
+    assertEquals(second, frames.get(1).toString());
+    assertEquals(frames.size(), MessageCoderRegistry.splitFrames(capture).size());
+
+    // characters after the length prefix are not part of the message
+    assertEquals(
+        "password", coder.decodeResponse(first + second).getApplicationData().getPassword());
+    assertThrows(
+        RuntimeException.class, () -> coder.decodeResponse(first.substring(0, first.length() - 2)));
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> coder.splitFrames(capture.substring(0, capture.length() - 3)));
+
+    List<Message<MP_UserLoggingInReq>> messages = new ArrayList<>();
+    coder.readResponses(
+        new ByteArrayInputStream(capture.getBytes(StandardCharsets.US_ASCII)), messages::add);
+    assertEquals(2, messages.size());
+    assertEquals("a much longer password", messages.get(1).getApplicationData().getPassword());
+  }
+
+  @Test
+  void preparedRequest() {
+    MessageCoder<MP_UserLoggingInReq> coder = MessageCoder.of(MP_UserLoggingInReq.class);
+    MP_UserLoggingInReq request = new MP_UserLoggingInReq();
+    request.setPassword("password");
+    Message<MP_UserLoggingInReq> message =
+        coder.initializeMessage(
+            "0000000000000000000000000000000000000000000000000#",
+            null,
+            null,
+            "501",
+            513,
+            1,
+            request);
+    PreparedRequest<Message<MP_UserLoggingInReq>> prepared = coder.prepareRequest(message);
+    assertEquals(coder.encodeRequest(message), prepared.encodeRequest());
+
+    // event IDs have 48 bits in this version
+    message.getBody().setEventID(0xFFFF_FFFF_FFFFL);
+    assertEquals(coder.encodeRequest(message), prepared.encodeRequest());
+    message.getBody().setEventID(1L);
+    assertEquals(coder.encodeRequest(message), prepared.encodeRequest());
+  }
+
+  @Test
+  void visitSequenceOf() throws IOException {
+    List<net.heberling.ismart.asn1.v1_1.entity.Message> items = new ArrayList<>();
+    for (long id = 1; id <= 3; id++) {
+      net.heberling.ismart.asn1.v1_1.entity.Message item =
+          new net.heberling.ismart.asn1.v1_1.entity.Message();
+      item.setMessageId(id);
+      item.setMessageType("323");
+      item.setTitle(("Title " + id).getBytes(StandardCharsets.UTF_8));
+      Timestamp time = new Timestamp();
+      time.setSeconds(1700000000L + id);
+      item.setMessageTime(time);
+      item.setSender("Sender".getBytes(StandardCharsets.UTF_8));
+      items.add(item);
+    }
+    MessageListResp response = new MessageListResp();
+    response.setRecordsNumber(3L);
+    response.setMessages(items);
+    MessageCoder<MessageListResp> coder = MessageCoder.of(MessageListResp.class);
+    String encoded =
+        coder.encodeRequest(
+            coder.initializeMessage(
+                "0000000000000000000000000000000000000000000000000#",
+                null,
+                null,
+                "531",
+                513,
+                2,
+                response));
+
+    List<Long> visited = new ArrayList<>();
+    Message<MessageListResp> decoded =
+        coder.decodeResponse(
+            encoded,
+            net.heberling.ismart.asn1.v1_1.entity.Message.class,
+            item -> visited.add(item.getMessageId()));
+    assertEquals(List.of(1L, 2L, 3L), visited);
+    assertEquals(3L, decoded.getApplicationData().getRecordsNumber());
+    assertNull(decoded.getApplicationData().getMessages());
+    net.heberling.ismart.asn1.v1_1.entity.Message first =
+        coder.decodeResponse(encoded).getApplicationData().getMessages().iterator().next();
+    assertEquals("Title 1", new String(first.getTitle(), StandardCharsets.UTF_8));
+
+    // stopping skips the rest of the message, the next one is read from the stream
+    visited.clear();
+    ByteArrayInputStream stream =
+        new ByteArrayInputStream((encoded + encoded).getBytes(StandardCharsets.US_ASCII));
+    assertNull(
+        coder.readResponse(
+            stream,
+            net.heberling.ismart.asn1.v1_1.entity.Message.class,
+            item -> visited.add(item.getMessageId()) && item.getMessageId() < 2));
+    assertEquals(List.of(1L, 2L), visited);
+    assertEquals(3, coder.readResponse(stream).getApplicationData().getMessages().size());
+  }
 }
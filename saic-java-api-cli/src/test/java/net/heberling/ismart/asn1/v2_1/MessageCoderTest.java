@@ -1,6 +1,25 @@
 package net.heberling.ismart.asn1.v2_1;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import net.heberling.ismart.asn1.AbstractMessageCoderTest;
+import net.heberling.ismart.asn1.Anonymizer;
+import net.heberling.ismart.asn1.JerCodec;
+import net.heberling.ismart.asn1.PreparedRequest;
+import net.heberling.ismart.asn1.Routing;
 import net.heberling.ismart.asn1.v2_1.entity.MP_SecurityAlarmResp;
 import net.heberling.ismart.asn1.v2_1.entity.OTA_RVCReq;
 import net.heberling.ismart.asn1.v2_1.entity.OTA_RVCStatus25857;
@@ -55,4 +74,205 @@ class MessageCoderTest extends AbstractMessageCoderTest {
   void decodeEncodeResponse_510() {
     decodeEncode("510_25857_response", new MessageCoder<>(OTA_RVCStatus25857.class));
   }
+
+  @Test
+  void encodeDecodeByteBuffer() {
+    MessageCoder<OTA_RVMVehicleStatusReq> coder = new MessageCoder<>(OTA_RVMVehicleStatusReq.class);
+    OTA_RVMVehicleStatusReq request = new OTA_RVMVehicleStatusReq();
+    request.setVehStatusReqType(2);
+    Message<OTA_RVMVehicleStatusReq> message =
+        coder.initializeMessage(
+            "0000000000000000000000000000000000000000000000000#",
+            "0000000000000000000000000000000000000000",
+            "00000000000000000",
+            "511",
+            25857,
+            1,
+            request);
+    String hex = coder.encodeRequest(message);
+
+    ByteBuffer buffer = ByteBuffer.allocate(1024);
+    buffer.put((byte) 42);
+    coder.encodeRequest(message, buffer);
+    buffer.flip();
+    assertEquals(42, buffer.get());
+    assertEquals((hex.length() - 5) / 2, buffer.remaining());
+
+    Message<OTA_RVMVehicleStatusReq> decoded = coder.decodeResponse(buffer);
+    assertEquals(0, buffer.remaining());
+    assertArrayEquals(message.getReserved(), decoded.getReserved());
+    assertEquals(2, decoded.getApplicationData().getVehStatusReqType());
+    assertEquals(hex, coder.encodeRequest(decoded));
+    assertEquals(hex, coder.encodeRequest(coder.decodeResponse(new StringBuilder(hex))));
+
+    ByteBuffer tooSmall = ByteBuffer.allocate(10);
+    assertThrows(BufferOverflowException.class, () -> coder.encodeRequest(message, tooSmall));
+    assertEquals(0, tooSmall.position());
+  }
+
+  @Test
+  void jer() {
+    OTA_RVMVehicleStatusReq request = new OTA_RVMVehicleStatusReq();
+    request.setVehStatusReqType(2);
+    assertEquals("{\"vehStatusReqType\":2}", JerCodec.encode(request));
+    assertEquals(
+        2,
+        JerCodec.decode("{\"vehStatusReqType\": 2}", OTA_RVMVehicleStatusReq.class)
+            .getVehStatusReqType());
+
+    assertThrows(
+        IllegalArgumentException.class, () -> JerCodec.decode("{}", OTA_RVMVehicleStatusReq.class));
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> JerCodec.decode("{\"vehStatusReqType\":\"2\"}", OTA_RVMVehicleStatusReq.class));
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> JerCodec.decode("{\"unknown\":2}", OTA_RVMVehicleStatusReq.class));
+  }
+
+  @Test
+  void preparedRequest() throws IOException {
+    MessageCoder<OTA_RVMVehicleStatusReq> coder = MessageCoder.of(OTA_RVMVehicleStatusReq.class);
+    OTA_RVMVehicleStatusReq request = new OTA_RVMVehicleStatusReq();
+    request.setVehStatusReqType(2);
+    Message<OTA_RVMVehicleStatusReq> message = initializeMessage(coder, request);
+    PreparedRequest<Message<OTA_RVMVehicleStatusReq>> prepared = coder.prepareRequest(message);
+    assertSame(message, prepared.getMessage());
+    assertEquals(coder.encodeRequest(message), prepared.encodeRequest());
+
+    // the event ID and the reserved bytes are patched
+    message.getBody().setEventID(123456789);
+    Arrays.fill(message.getReserved(), (byte) 0x42);
+    assertEquals(coder.encodeRequest(message), prepared.encodeRequest());
+    message.getBody().setEventID(Integer.MAX_VALUE);
+    assertEquals(coder.encodeRequest(message), prepared.encodeRequest());
+
+    // a changed token is encoded again
+    message.getBody().setToken("1111111111111111111111111111111111111111");
+    message.getBody().setEventID(0);
+    assertEquals(coder.encodeRequest(message), prepared.encodeRequest());
+
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    prepared.writeRequest(outputStream);
+    assertEquals(coder.encodeRequest(message), outputStream.toString(StandardCharsets.US_ASCII));
+    assertArrayEquals(outputStream.toByteArray(), prepared.encodeRequestBytes());
+  }
+
+  @Test
+  void sharedCoderReusesBuffers() {
+    MessageCoder<OTA_RVMVehicleStatusReq> coder = MessageCoder.of(OTA_RVMVehicleStatusReq.class);
+    assertSame(coder, MessageCoder.of(OTA_RVMVehicleStatusReq.class));
+
+    OTA_RVMVehicleStatusReq request = new OTA_RVMVehicleStatusReq();
+    request.setVehStatusReqType(2);
+    String withData = coder.encodeRequest(initializeMessage(coder, request));
+    String withoutData = coder.encodeRequest(initializeMessage(coder, null));
+
+    // the buffers of the previous message must not leak into the next one
+    MessageCoder<OTA_RVMVehicleStatusReq> fresh = new MessageCoder<>(OTA_RVMVehicleStatusReq.class);
+    assertEquals(fresh.encodeRequest(initializeMessage(fresh, null)), withoutData);
+    assertEquals(withData, coder.encodeRequest(coder.decodeResponse(withData)));
+  }
+
+  @Test
+  void rejectsUnknownBodyEncoding() {
+    MessageCoder<OTA_RVMVehicleStatusReq> coder = MessageCoder.of(OTA_RVMVehicleStatusReq.class);
+    String hex = coder.encodeRequest(initializeMessage(coder, null));
+    // length prefix, protocol version and message length come before the body encoding
+    String der = hex.substring(0, 9) + "01" + hex.substring(11);
+
+    RuntimeException e = assertThrows(RuntimeException.class, () -> coder.decodeResponse(der));
+    assertTrue(e.getCause() instanceof IllegalArgumentException);
+  }
+
+  @Test
+  void peekRouting() {
+    MessageCoder<OTA_RVMVehicleStatusReq> coder = MessageCoder.of(OTA_RVMVehicleStatusReq.class);
+    OTA_RVMVehicleStatusReq request = new OTA_RVMVehicleStatusReq();
+    request.setVehStatusReqType(2);
+    Message<OTA_RVMVehicleStatusReq> message = initializeMessage(coder, request);
+    message.getBody().setEventID(1234);
+    message.getBody().setResult(2);
+    message.getBody().setErrorMessage("not ready".getBytes(StandardCharsets.UTF_8));
+    String hex = coder.encodeRequest(message);
+
+    Routing routing = coder.peekRouting(hex);
+    assertEquals("511", routing.getApplicationID());
+    assertEquals(25857, routing.getApplicationDataProtocolVersion());
+    assertEquals(1, routing.getMessageID());
+    assertEquals(1234L, routing.getEventID());
+    assertEquals(2, routing.getResult());
+    assertTrue(routing.isErrorMessagePresent());
+    assertTrue(routing.hasApplicationData());
+
+    ByteBuffer buffer = ByteBuffer.allocate(1024);
+    coder.encodeRequest(initializeMessage(coder, null), buffer);
+    buffer.flip();
+    routing = coder.peekRouting(buffer);
+    assertEquals(0, buffer.position());
+    assertEquals(0L, routing.getEventID());
+    assertNull(routing.getResult());
+    assertFalse(routing.isErrorMessagePresent());
+    assertFalse(routing.hasApplicationData());
+  }
+
+  @Test
+  void writeReadStream() throws IOException {
+    MessageCoder<OTA_RVMVehicleStatusReq> coder = MessageCoder.of(OTA_RVMVehicleStatusReq.class);
+    OTA_RVMVehicleStatusReq request = new OTA_RVMVehicleStatusReq();
+    request.setVehStatusReqType(2);
+    Message<OTA_RVMVehicleStatusReq> message = initializeMessage(coder, request);
+    String hex = coder.encodeRequest(message);
+
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    coder.writeRequest(message, outputStream);
+    assertEquals(hex, outputStream.toString(StandardCharsets.US_ASCII));
+    assertArrayEquals(outputStream.toByteArray(), coder.encodeRequestBytes(message));
+
+    // trailing characters after the message are not read
+    outputStream.write('\n');
+    ByteArrayInputStream inputStream = new ByteArrayInputStream(outputStream.toByteArray());
+    Message<OTA_RVMVehicleStatusReq> decoded = coder.readResponse(inputStream);
+    assertEquals(1, inputStream.available());
+    assertEquals(2, decoded.getApplicationData().getVehStatusReqType());
+    assertEquals(hex, coder.encodeRequest(decoded));
+  }
+
+  @Test
+  void anonymizedCopy() {
+    MessageCoder<OTA_RVMVehicleStatusReq> coder = MessageCoder.of(OTA_RVMVehicleStatusReq.class);
+    OTA_RVMVehicleStatusReq request = new OTA_RVMVehicleStatusReq();
+    request.setVehStatusReqType(2);
+    Message<OTA_RVMVehicleStatusReq> message = initializeMessage(coder, request);
+    message.getBody().setVin("LSJA1234567890123");
+    message.getBody().setEventCreationTime(1234567);
+    Arrays.fill(message.getReserved(), (byte) 1);
+    String hex = coder.encodeRequest(message);
+
+    Message<OTA_RVMVehicleStatusReq> anonymized = Anonymizer.anonymized(message);
+
+    assertEquals("XXXX9999999990999", anonymized.getBody().getVin());
+    assertEquals(1200000, anonymized.getBody().getEventCreationTime().intValue());
+    assertArrayEquals(new byte[16], anonymized.getReserved());
+    assertEquals(2, anonymized.getApplicationData().getVehStatusReqType());
+    // the original message is not changed
+    assertEquals(hex, coder.encodeRequest(message));
+  }
+
+  private static Message<OTA_RVMVehicleStatusReq> initializeMessage(
+      MessageCoder<OTA_RVMVehicleStatusReq> coder, OTA_RVMVehicleStatusReq request) {
+    Message<OTA_RVMVehicleStatusReq> message =
+        coder.initializeMessage(
+            "0000000000000000000000000000000000000000000000000#",
+            "0000000000000000000000000000000000000000",
+            "00000000000000000",
+            "511",
+            25857,
+            1,
+            request);
+    // the reserved bytes are random, messages with the same content must encode the same
+    Arrays.fill(message.getReserved(), (byte) '1');
+    message.getBody().setEventCreationTime(0);
+    return message;
+  }
 }
@@ -0,0 +1,793 @@
+package net.heberling.ismart.asn1;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.bn.annotations.ASN1Boolean;
+import org.bn.annotations.ASN1Element;
+import org.bn.annotations.ASN1Enum;
+import org.bn.annotations.ASN1EnumItem;
+import org.bn.annotations.ASN1Integer;
+import org.bn.annotations.ASN1OctetString;
+import org.bn.annotations.ASN1Sequence;
+import org.bn.annotations.ASN1SequenceOf;
+import org.bn.annotations.ASN1String;
+import org.bn.annotations.constraints.ASN1SizeConstraint;
+import org.bn.annotations.constraints.ASN1ValueRangeConstraint;
+import org.bn.coders.IASN1PreparedElement;
+import org.bn.coders.IASN1PreparedElementData;
+
+/**
+ * Generates unaligned PER codecs for the classes of the binarynotes compiler, so encoding and
+ * decoding does not need reflection. The generated code produces the same bits as {@link
+ * AbstractMessageCoder.MyPERUnalignedEncoder}. Types using ASN.1 features that are not supported
+ * here are skipped and still handled by the binarynotes coders.
+ *
+ * <p>This runs during the build of this module, see the <code>per-codecs</code> profile in the pom.
+ * It has its own source directory and is excluded from the jar of this module.
+ * Usage: <code>PerCodecGenerator &lt;classes directory&gt; &lt;output directory&gt;
+ * &lt;package&gt;...</code>
+ */
+public final class PerCodecGenerator {
+
+  private enum Kind {
+    BOOLEAN(false),
+    INTEGER(false),
+    ENUMERATED(false),
+    SEQUENCE(false),
+    SEQUENCE_OF(true),
+    OCTET_STRING(false),
+    STRING(true),
+    NUMERIC_STRING(true);
+
+    /** Whether the generated encoding declares local variables. */
+    private final boolean needsBlock;
+
+    Kind(boolean needsBlock) {
+      this.needsBlock = needsBlock;
+    }
+  }
+
+  /** A field of a sequence. */
+  private static final class Element {
+    private final Field field;
+    private final Kind kind;
+    private final boolean optional;
+
+    /** The referenced type for sequences, enums and the items of a sequence of. */
+    private Class<?> type;
+
+    private long min;
+    private long max;
+
+    private Long size;
+
+    private Element(Field field, Kind kind, boolean optional) {
+      this.field = field;
+      this.kind = kind;
+      this.optional = optional;
+    }
+  }
+
+  private final Map<Class<?>, List<Element>> sequences = new LinkedHashMap<>();
+
+  private final Set<Class<?>> enums = new HashSet<>();
+
+  private PerCodecGenerator() {}
+
+  public static void main(String[] args) throws Exception {
+    if (args.length < 3) {
+      // thrown instead of exiting, this runs in the JVM of the build
+      throw new IllegalArgumentException(
+          "Usage: PerCodecGenerator <classes directory> <output directory> <package>...");
+    }
+    Path classes = Paths.get(args[0]);
+    Path output = Paths.get(args[1]);
+    List<String> packages = Arrays.asList(args).subList(2, args.length);
+
+    ClassLoader classLoader =
+        new URLClassLoader(
+            new URL[] {classes.toUri().toURL()}, PerCodecGenerator.class.getClassLoader());
+
+    PerCodecGenerator generator = new PerCodecGenerator();
+    List<Class<?>> types = new ArrayList<>();
+    for (String packageName : packages) {
+      Path directory = classes.resolve(packageName.replace('.', '/'));
+      try (Stream<Path> files = Files.list(directory)) {
+        for (Path file : files.sorted().collect(Collectors.toList())) {
+          String fileName = file.getFileName().toString();
+          if (fileName.endsWith(".class") && !fileName.contains("$")) {
+            types.add(
+                Class.forName(
+                    packageName + "." + fileName.substring(0, fileName.length() - 6),
+                    false,
+                    classLoader));
+          }
+        }
+      }
+    }
+    generator.analyze(types);
+    for (String packageName : packages) {
+      generator.write(packageName, output);
+    }
+  }
+
+  private void analyze(List<Class<?>> types) {
+    for (Class<?> type : types) {
+      if (!IASN1PreparedElement.class.isAssignableFrom(type)) {
+        continue;
+      }
+      if (type.isAnnotationPresent(ASN1Enum.class)) {
+        if (isSupportedEnum(type)) {
+          enums.add(type);
+        }
+      } else if (type.isAnnotationPresent(ASN1Sequence.class)
+          && !type.getAnnotation(ASN1Sequence.class).isSet()) {
+        List<Element> elements = analyzeSequence(type);
+        if (elements != null) {
+          sequences.put(type, elements);
+        }
+      }
+    }
+    // drop sequences that reference unsupported types, until nothing changes anymore
+    boolean changed;
+    do {
+      changed =
+          sequences
+              .entrySet()
+              .removeIf(
+                  e ->
+                      e.getValue().stream()
+                          .anyMatch(
+                              element ->
+                                  element.type != null
+                                      && !enums.contains(element.type)
+                                      && !sequences.containsKey(element.type)));
+    } while (changed);
+  }
+
+  private static boolean isSupportedEnum(Class<?> type) {
+    Class<?> enumType =
+        Arrays.stream(type.getDeclaredClasses()).filter(Class::isEnum).findFirst().orElse(null);
+    if (enumType == null || enumType.getEnumConstants().length == 0) {
+      return false;
+    }
+    // the index in the stream must match the ordinal of the constant
+    Set<Integer> tags = new HashSet<>();
+    Object[] constants = enumType.getEnumConstants();
+    int index = 0;
+    for (Field field : enumType.getDeclaredFields()) {
+      if (!field.isAnnotationPresent(ASN1EnumItem.class)) {
+        continue;
+      }
+      if (index >= constants.length
+          || !field.getName().equals(((Enum<?>) constants[index]).name())
+          || !tags.add(field.getAnnotation(ASN1EnumItem.class).tag())) {
+        return false;
+      }
+      index++;
+    }
+    if (index != constants.length) {
+      return false;
+    }
+    try {
+      type.getMethod("getValue");
+      type.getMethod("setValue", enumType);
+    } catch (NoSuchMethodException e) {
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * @return the elements of the sequence, or <code>null</code> if it is not supported
+   */
+  private static List<Element> analyzeSequence(Class<?> type) {
+    List<Element> elements = new ArrayList<>();
+    int optionalCount = 0;
+    for (Field field : type.getDeclaredFields()) {
+      if (field.getType().equals(IASN1PreparedElementData.class) || field.isSynthetic()) {
+        continue;
+      }
+      Element element = analyzeField(type, field);
+      if (element == null) {
+        return null;
+      }
+      if (element.optional) {
+        optionalCount++;
+      }
+      elements.add(element);
+    }
+    if (optionalCount > 64) {
+      return null;
+    }
+    return elements;
+  }
+
+  private static Element analyzeField(Class<?> type, Field field) {
+    ASN1Element info = field.getAnnotation(ASN1Element.class);
+    if (info == null || info.hasDefaultValue() || Modifier.isStatic(field.getModifiers())) {
+      return null;
+    }
+    try {
+      Class<?> getterType = type.getMethod(getter(field)).getReturnType();
+      type.getMethod(setter(field), field.getType());
+      if (!getterType.equals(field.getType())) {
+        return null;
+      }
+    } catch (NoSuchMethodException e) {
+      return null;
+    }
+    Class<?> fieldType = field.getType();
+    Element element;
+    if (field.isAnnotationPresent(ASN1SequenceOf.class)) {
+      Type genericType = field.getGenericType();
+      if (!Collection.class.equals(fieldType) || !(genericType instanceof ParameterizedType)) {
+        return null;
+      }
+      Type itemType = ((ParameterizedType) genericType).getActualTypeArguments()[0];
+      if (!(itemType instanceof Class)) {
+        return null;
+      }
+      element = new Element(field, Kind.SEQUENCE_OF, info.isOptional());
+      element.type = (Class<?>) itemType;
+      if (!setLength(element)) {
+        return null;
+      }
+    } else if (field.isAnnotationPresent(ASN1Sequence.class)
+        || field.isAnnotationPresent(ASN1Enum.class)) {
+      return null;
+    } else if (field.isAnnotationPresent(ASN1Boolean.class)) {
+      if (!Boolean.class.equals(fieldType)) {
+        return null;
+      }
+      element = new Element(field, Kind.BOOLEAN, info.isOptional());
+    } else if (field.isAnnotationPresent(ASN1Integer.class)) {
+      ASN1ValueRangeConstraint range = field.getAnnotation(ASN1ValueRangeConstraint.class);
+      if (range == null
+          || field.isAnnotationPresent(ASN1SizeConstraint.class)
+          || range.min() > range.max()
+          || range.max() - range.min() < 0) {
+        return null;
+      }
+      if (Integer.class.equals(fieldType)) {
+        if (range.min() < Integer.MIN_VALUE || range.max() > Integer.MAX_VALUE) {
+          return null;
+        }
+      } else if (!Long.class.equals(fieldType)) {
+        return null;
+      }
+      element = new Element(field, Kind.INTEGER, info.isOptional());
+      element.min = range.min();
+      element.max = range.max();
+    } else if (field.isAnnotationPresent(ASN1OctetString.class)) {
+      if (!byte[].class.equals(fieldType)) {
+        return null;
+      }
+      element = new Element(field, Kind.OCTET_STRING, info.isOptional());
+      if (!setLength(element)) {
+        return null;
+      }
+    } else if (field.isAnnotationPresent(ASN1String.class)) {
+      if (!String.class.equals(fieldType)) {
+        return null;
+      }
+      switch (field.getAnnotation(ASN1String.class).stringType()) {
+        case 18:
+          element = new Element(field, Kind.NUMERIC_STRING, info.isOptional());
+          break;
+        case 19:
+        case 22:
+        case 26:
+          element = new Element(field, Kind.STRING, info.isOptional());
+          break;
+        default:
+          return null;
+      }
+      if (!setLength(element)) {
+        return null;
+      }
+    } else if (IASN1PreparedElement.class.isAssignableFrom(fieldType)
+        && Arrays.stream(field.getAnnotations())
+            .allMatch(a -> a.annotationType().equals(ASN1Element.class))) {
+      if (fieldType.isAnnotationPresent(ASN1Enum.class)) {
+        element = new Element(field, Kind.ENUMERATED, info.isOptional());
+      } else if (fieldType.isAnnotationPresent(ASN1Sequence.class)) {
+        element = new Element(field, Kind.SEQUENCE, info.isOptional());
+      } else {
+        return null;
+      }
+      element.type = fieldType;
+    } else {
+      return null;
+    }
+    return element;
+  }
+
+  /** The size constraint takes precedence over the value range, like in binarynotes. */
+  private static boolean setLength(Element element) {
+    ASN1SizeConstraint size = element.field.getAnnotation(ASN1SizeConstraint.class);
+    ASN1ValueRangeConstraint range = element.field.getAnnotation(ASN1ValueRangeConstraint.class);
+    if (size != null) {
+      if (size.max() < 0 || size.max() > Integer.MAX_VALUE) {
+        return false;
+      }
+      element.size = size.max();
+    } else if (range != null) {
+      if (range.min() < 0 || range.max() > Integer.MAX_VALUE || range.min() > range.max()) {
+        return false;
+      }
+      element.min = range.min();
+      element.max = range.max();
+    } else {
+      element.min = -1;
+    }
+    return true;
+  }
+
+  private void write(String packageName, Path output) throws IOException {
+    List<Class<?>> types =
+        Stream.concat(enums.stream(), sequences.keySet().stream())
+            .filter(t -> t.getPackageName().equals(packageName))
+            .sorted((a, b) -> a.getName().compareTo(b.getName()))
+            .collect(Collectors.toList());
+    if (types.isEmpty()) {
+      return;
+    }
+    Source source = new Source(packageName);
+    source.line("package " + packageName + ";");
+    source.line("");
+    source.line("import java.io.IOException;");
+    source.line("import java.util.Map;");
+    source.line("import net.heberling.ismart.asn1.PerBitInputStream;");
+    source.line("import net.heberling.ismart.asn1.PerBitOutputStream;");
+    source.line("import net.heberling.ismart.asn1.PerCodec;");
+    source.line("");
+    source.line(
+        "/** Generated by {@link net.heberling.ismart.asn1.PerCodecGenerator}, do not edit. */");
+    source.open("public final class " + PerCodecs.REGISTRY_CLASS_NAME + " {");
+    for (Class<?> type : types) {
+      if (enums.contains(type)) {
+        Class<?> enumType =
+            Arrays.stream(type.getDeclaredClasses()).filter(Class::isEnum).findFirst().get();
+        source.line("");
+        source.line(
+            "private static final "
+                + source.name(enumType)
+                + "[] "
+                + valuesConstant(type)
+                + " = "
+                + source.name(enumType)
+                + ".values();");
+      }
+    }
+    source.line("");
+    source.open("public static final Map<Class<?>, PerCodec<?>> CODECS =");
+    source.open("Map.ofEntries(");
+    for (int i = 0; i < types.size(); i++) {
+      Class<?> type = types.get(i);
+      source.line(
+          "Map.entry("
+              + source.name(type)
+              + ".class, PerCodec.of("
+              + PerCodecs.REGISTRY_CLASS_NAME
+              + "::encode"
+              + type.getSimpleName()
+              + ", "
+              + PerCodecs.REGISTRY_CLASS_NAME
+              + "::decode"
+              + type.getSimpleName()
+              + "))"
+              + (i < types.size() - 1 ? "," : ");"));
+    }
+    source.close("");
+    source.close("");
+    source.line("");
+    source.line("private " + PerCodecs.REGISTRY_CLASS_NAME + "() {}");
+    for (Class<?> type : types) {
+      if (enums.contains(type)) {
+        writeEnum(source, type);
+      } else {
+        writeSequence(source, type, sequences.get(type));
+      }
+    }
+    source.close("}");
+
+    Path file =
+        output
+            .resolve(packageName.replace('.', '/'))
+            .resolve(PerCodecs.REGISTRY_CLASS_NAME + ".java");
+    Files.createDirectories(file.getParent());
+    Files.writeString(file, source.toString(), StandardCharsets.UTF_8);
+  }
+
+  private static void writeEnum(Source source, Class<?> type) {
+    String name = source.name(type);
+    String values = valuesConstant(type);
+    Class<?> enumType =
+        Arrays.stream(type.getDeclaredClasses()).filter(Class::isEnum).findFirst().get();
+    int bits = bitLength(enumType.getEnumConstants().length - 1);
+
+    source.line("");
+    source.open(
+        "public static void encode"
+            + type.getSimpleName()
+            + "("
+            + name
+            + " value, PerBitOutputStream out) {");
+    if (bits > 0) {
+      source.line("out.writeBits(value.getValue().ordinal(), " + bits + ");");
+    } else {
+      source.line("value.getValue().ordinal();");
+    }
+    source.close("}");
+
+    source.line("");
+    source.open(
+        "public static "
+            + name
+            + " decode"
+            + type.getSimpleName()
+            + "(PerBitInputStream in) throws IOException {");
+    if (bits > 0) {
+      source.line("int index = (int) in.readLong(" + bits + ");");
+      source.open("if (index >= " + values + ".length) {");
+      source.line(
+          "throw new IllegalArgumentException(\"Invalid index \" + index + \" for "
+              + type.getSimpleName()
+              + "\");");
+      source.close("}");
+    } else {
+      source.line("int index = 0;");
+    }
+    source.line(name + " value = new " + name + "();");
+    source.line("value.setValue(" + values + "[index]);");
+    source.line("return value;");
+    source.close("}");
+  }
+
+  private static void writeSequence(Source source, Class<?> type, List<Element> elements) {
+    String name = source.name(type);
+    long optionalCount = elements.stream().filter(e -> e.optional).count();
+
+    source.line("");
+    source.open(
+        "public static void encode"
+            + type.getSimpleName()
+            + "("
+            + name
+            + " value, PerBitOutputStream out) {");
+    for (Element element : elements) {
+      if (element.optional) {
+        source.line("out.writeBit(value." + getter(element.field) + "() != null);");
+      }
+    }
+    for (Element element : elements) {
+      String value = "value." + getter(element.field) + "()";
+      boolean block = element.optional || element.kind.needsBlock;
+      if (!element.optional) {
+        source.open("if (" + value + " == null) {");
+        source.line(
+            "throw new IllegalArgumentException(\"The mandatory field '"
+                + element.field.getName()
+                + "' does not have a value!\");");
+        source.close("}");
+      }
+      if (block) {
+        source.open(element.optional ? "if (" + value + " != null) {" : "{");
+      }
+      writeEncodeElement(source, type, element, value);
+      if (block) {
+        source.close("}");
+      }
+    }
+    source.close("}");
+
+    source.line("");
+    source.open(
+        "public static "
+            + name
+            + " decode"
+            + type.getSimpleName()
+            + "(PerBitInputStream in) throws IOException {");
+    source.line("in.enter(\"" + type.getSimpleName() + "\");");
+    source.line(name + " value = new " + name + "();");
+    source.line("value.initWithDefaults();");
+    if (optionalCount > 0) {
+      source.line("long preamble = in.readLong(" + optionalCount + ");");
+    }
+    long optionalIndex = 0;
+    for (Element element : elements) {
+      boolean block = element.optional || element.kind == Kind.SEQUENCE_OF;
+      if (element.optional) {
+        long mask = 1L << (optionalCount - 1 - optionalIndex++);
+        source.open("if ((preamble & " + mask + "L) != 0) {");
+      } else if (block) {
+        source.open("{");
+      }
+      writeDecodeElement(source, type, element);
+      if (block) {
+        source.close("}");
+      }
+    }
+    source.line("in.exit();");
+    source.line("return value;");
+    source.close("}");
+  }
+
+  private static void writeEncodeElement(
+      Source source, Class<?> type, Element element, String value) {
+    switch (element.kind) {
+      case BOOLEAN:
+        source.line("out.writeBit(" + value + ".booleanValue());");
+        break;
+      case INTEGER:
+        int bits = bitLength(element.max - element.min);
+        if (bits > 0) {
+          source.line("out.writeBits(" + value + offset(-element.min) + ", " + bits + ");");
+        }
+        break;
+      case ENUMERATED:
+      case SEQUENCE:
+        source.line(
+            source.codec(element.type)
+                + ".encode"
+                + element.type.getSimpleName()
+                + "("
+                + value
+                + ", out);");
+        break;
+      case SEQUENCE_OF:
+        writeEncodeLength(source, type, element, value + ".size()");
+        source.open("for (" + source.name(element.type) + " item : " + value + ") {");
+        source.line(
+            source.codec(element.type) + ".encode" + element.type.getSimpleName() + "(item, out);");
+        source.close("}");
+        break;
+      case OCTET_STRING:
+        writeEncodeLength(source, type, element, value + ".length");
+        source.line("out.writeBytes(" + value + ");");
+        break;
+      case STRING:
+      case NUMERIC_STRING:
+        source.line("byte[] bytes = " + value + ".getBytes();");
+        writeEncodeLength(source, type, element, "bytes.length");
+        source.line(
+            "out."
+                + (element.kind == Kind.STRING ? "write7BitString" : "writeNumericString")
+                + "(bytes);");
+        break;
+      default:
+        throw new IllegalStateException("Unexpected kind: " + element.kind);
+    }
+  }
+
+  private static void writeEncodeLength(
+      Source source, Class<?> type, Element element, String length) {
+    if (element.size != null) {
+      source.line(
+          "out.checkFixedLength("
+              + length
+              + ", "
+              + element.size
+              + ", \""
+              + elementName(type, element)
+              + "\");");
+    } else if (element.min >= 0) {
+      source.line(
+          "out.writeConstrainedLength("
+              + length
+              + ", "
+              + element.min
+              + ", "
+              + element.max
+              + ", \""
+              + elementName(type, element)
+              + "\");");
+    } else {
+      source.line("out.writeLengthDeterminant(" + length + ");");
+    }
+  }
+
+  private static void writeDecodeElement(Source source, Class<?> type, Element element) {
+    String setter = "value." + setter(element.field);
+    switch (element.kind) {
+      case BOOLEAN:
+        source.line(setter + "(in.readBit() != 0);");
+        break;
+      case INTEGER:
+        int bits = bitLength(element.max - element.min);
+        String decoded;
+        if (bits == 0) {
+          decoded = element.max + "L";
+        } else {
+          decoded = "in.readLong(" + bits + ")" + offset(element.min);
+        }
+        if (element.field.getType().equals(Integer.class)) {
+          decoded = "(int) " + (bits == 0 || element.min == 0 ? decoded : "(" + decoded + ")");
+        }
+        source.line(setter + "(" + decoded + ");");
+        break;
+      case ENUMERATED:
+      case SEQUENCE:
+        source.line(
+            setter
+                + "("
+                + source.codec(element.type)
+                + ".decode"
+                + element.type.getSimpleName()
+                + "(in));");
+        break;
+      case SEQUENCE_OF:
+        source.line(
+            "int length = in.checkCollectionSize("
+                + decodeLength(element, type)
+                + ", \""
+                + elementName(type, element)
+                + "\");");
+        source.line(
+            setter
+                + "(in.readSequenceOf(length, "
+                + source.name(element.type)
+                + ".class, "
+                + source.codec(element.type)
+                + "::decode"
+                + element.type.getSimpleName()
+                + "));");
+        break;
+      case OCTET_STRING:
+        source.line(
+            setter
+                + "(in.readOctetString("
+                + decodeLength(element, type)
+                + ", \""
+                + elementName(type, element)
+                + "\"));");
+        break;
+      case STRING:
+        source.line(
+            setter
+                + "(in.read7BitString("
+                + decodeLength(element, type)
+                + ", \""
+                + elementName(type, element)
+                + "\"));");
+        break;
+      case NUMERIC_STRING:
+        source.line(
+            setter
+                + "(in.readNumericString("
+                + decodeLength(element, type)
+                + ", \""
+                + elementName(type, element)
+                + "\"));");
+        break;
+      default:
+        throw new IllegalStateException("Unexpected kind: " + element.kind);
+    }
+  }
+
+  private static String decodeLength(Element element, Class<?> type) {
+    if (element.size != null) {
+      return String.valueOf(element.size);
+    } else if (element.min >= 0) {
+      return "in.readConstrainedLength("
+          + element.min
+          + ", "
+          + element.max
+          + ", \""
+          + elementName(type, element)
+          + "\")";
+    } else {
+      return "in.readLengthDeterminant()";
+    }
+  }
+
+  private static String offset(long value) {
+    if (value == 0) {
+      return "";
+    } else if (value > 0) {
+      return " + " + value + "L";
+    } else if (value == Long.MIN_VALUE) {
+      return " + " + Long.MIN_VALUE + "L";
+    } else {
+      return " - " + -value + "L";
+    }
+  }
+
+  private static int bitLength(long range) {
+    return 64 - Long.numberOfLeadingZeros(range);
+  }
+
+  private static String elementName(Class<?> type, Element element) {
+    return type.getSimpleName() + "." + element.field.getName();
+  }
+
+  private static String valuesConstant(Class<?> type) {
+    return type.getSimpleName()
+            .replaceAll("([a-z0-9])([A-Z])", "$1_$2")
+            .toUpperCase(Locale.ROOT)
+            .replaceAll("_+", "_")
+        + "_VALUES";
+  }
+
+  private static String getter(Field field) {
+    return "get" + capitalize(field.getName());
+  }
+
+  private static String setter(Field field) {
+    return "set" + capitalize(field.getName());
+  }
+
+  private static String capitalize(String name) {
+    return name.substring(0, 1).toUpperCase(Locale.ROOT) + name.substring(1);
+  }
+
+  /** Collects the lines of the generated source file. */
+  private static final class Source {
+    private final String packageName;
+    private final StringBuilder text = new StringBuilder();
+    private int indent;
+
+    private Source(String packageName) {
+      this.packageName = packageName;
+    }
+
+    private void line(String line) {
+      if (!line.isEmpty()) {
+        text.append("  ".repeat(indent)).append(line);
+      }
+      text.append('\n');
+    }
+
+    private void open(String line) {
+      line(line);
+      indent++;
+    }
+
+    private void close(String line) {
+      indent--;
+      if (!line.isEmpty()) {
+        line(line);
+      }
+    }
+
+    /** The name of the type, qualified if it is not in the package of the generated class. */
+    private String name(Class<?> type) {
+      return type.getPackageName().equals(packageName)
+          ? type.getCanonicalName().substring(packageName.length() + 1)
+          : type.getCanonicalName();
+    }
+
+    /** The generated class, that contains the codec of the type. */
+    private String codec(Class<?> type) {
+      return type.getPackageName().equals(packageName)
+          ? PerCodecs.REGISTRY_CLASS_NAME
+          : type.getPackageName() + "." + PerCodecs.REGISTRY_CLASS_NAME;
+    }
+
+    @Override
+    public String toString() {
+      return text.toString();
+    }
+  }
+}
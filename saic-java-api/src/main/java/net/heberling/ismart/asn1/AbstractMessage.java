@@ -3,9 +3,10 @@ package net.heberling.ismart.asn1;
 import org.bn.coders.IASN1PreparedElement;
 
 public class AbstractMessage<
-    H extends IASN1PreparedElement,
-    B extends IASN1PreparedElement,
-    E extends IASN1PreparedElement> {
+        H extends IASN1PreparedElement,
+        B extends IASN1PreparedElement,
+        E extends IASN1PreparedElement>
+    implements Cloneable {
   protected H header;
   protected B body;
   protected E applicationData;
@@ -27,4 +28,23 @@ public class AbstractMessage<
   public E getApplicationData() {
     return applicationData;
   }
+
+  /**
+   * @return the reserved bytes between the header and the body, or <code>null</code> if the
+   *     protocol version has none
+   */
+  protected byte[] reservedBytes() {
+    return null;
+  }
+
+  /** Returns a shallow copy, header, body and application data are shared with this message. */
+  @Override
+  @SuppressWarnings("unchecked")
+  protected AbstractMessage<H, B, E> clone() {
+    try {
+      return (AbstractMessage<H, B, E>) super.clone();
+    } catch (CloneNotSupportedException e) {
+      throw new AssertionError(e);
+    }
+  }
 }
@@ -1,18 +1,26 @@
 package net.heberling.ismart.asn1;
 
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import org.bn.annotations.constraints.ASN1SizeConstraint;
-import org.bn.annotations.constraints.ASN1ValueRangeConstraint;
-import org.bn.coders.CoderUtils;
+import java.lang.reflect.AnnotatedElement;
+import java.lang.reflect.Field;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
 import org.bn.coders.DecodedObject;
 import org.bn.coders.ElementInfo;
 import org.bn.coders.IASN1PreparedElement;
 import org.bn.coders.per.PERUnalignedDecoder;
 import org.bn.coders.per.PERUnalignedEncoder;
-import org.bn.metadata.constraints.ASN1SizeConstraintMetadata;
-import org.bn.metadata.constraints.ASN1ValueRangeConstraintMetadata;
-import org.bn.metadata.constraints.IASN1ConstraintMetadata;
 import org.bn.utils.BitArrayInputStream;
 import org.bn.utils.BitArrayOutputStream;
 
@@ -23,6 +31,17 @@ public abstract class AbstractMessageCoder<
     M extends AbstractMessage<H, B, E>> {
   private static final char[] HEX_ARRAY = "0123456789ABCDEF".toCharArray();
 
+  /** Number of characters in front of the hex encoded message, that contain the length. */
+  protected static final int LENGTH_PREFIX_LENGTH = 5;
+
+  /** Buffers that grew beyond this size are not kept for the next message. */
+  private static final int MAX_RETAINED_BUFFER_SIZE = 64 * 1024;
+
+  // the binarynotes coders don't have any state, so they can be shared between threads
+  private static final MyPERUnalignedEncoder ENCODER = new MyPERUnalignedEncoder();
+
+  private static final MyPERUnalignedDecoder DECODER = new MyPERUnalignedDecoder();
+
   private final Class<E> applicationDataClass;
 
   protected AbstractMessageCoder(Class<E> applicationDataClass) {
@@ -30,32 +49,475 @@ public abstract class AbstractMessageCoder<
   }
 
   public static byte[] hexStringToByteArray(String s) {
-    int len = s.length();
-    byte[] data = new byte[len / 2];
-    for (int i = 0; i < len; i += 2) {
-      data[i / 2] =
-          (byte) ((Character.digit(s.charAt(i), 16) << 4) + Character.digit(s.charAt(i + 1), 16));
-    }
+    byte[] data = new byte[s.length() / 2];
+    HexCodec.DEFAULT.decode(s, 0, data, 0, data.length);
     return data;
   }
 
   public static String bytesToHex(byte[] bytes) {
     char[] hexChars = new char[bytes.length * 2];
-    for (int j = 0; j < bytes.length; j++) {
-      int v = bytes[j] & 0xFF;
-      hexChars[j * 2] = HEX_ARRAY[v >>> 4];
-      hexChars[j * 2 + 1] = HEX_ARRAY[v & 0x0F];
-    }
+    HexCodec.DEFAULT.encode(bytes, 0, bytes.length, hexChars, 0);
     return new String(hexChars);
   }
 
+  private static int hexToByte(CharSequence s, int index) {
+    return HexCodec.value(s.charAt(index)) << 4 | HexCodec.value(s.charAt(index + 1));
+  }
+
+  /** Reads 4 hex digits, as written by {@link #writeHexLength}. */
+  protected static int readHexLength(CharSequence source, int index) {
+    return hexToByte(source, index) << 8 | hexToByte(source, index + 2);
+  }
+
+  /** Writes the value as 4 upper case hex digits into the target array. */
+  protected static void writeHexLength(int value, char[] target, int index) {
+    if (value < 0 || value > 0xFFFF) {
+      throw new IllegalArgumentException("Message length out of range: " + value);
+    }
+    target[index] = HEX_ARRAY[value >>> 12];
+    target[index + 1] = HEX_ARRAY[value >>> 8 & 0x0F];
+    target[index + 2] = HEX_ARRAY[value >>> 4 & 0x0F];
+    target[index + 3] = HEX_ARRAY[value & 0x0F];
+  }
+
   public static boolean isNumericString(ElementInfo elementInfo) {
-    return CoderUtils.getStringTagForElement(elementInfo) == 18;
+    return ElementMetadata.of(elementInfo).getStringTag() == 18;
+  }
+
+  public String encodeRequest(M message) {
+    try (MessageOutputStream outputStream = MessageOutputStream.acquire()) {
+      try {
+        encode(message, outputStream);
+      } catch (Exception e) {
+        throw new RuntimeException(e);
+      }
+      return outputStream.toHexString(this);
+    }
+  }
+
+  /**
+   * Writes the hex encoded message, including its length prefix, as ASCII characters to the stream.
+   */
+  public void writeRequest(M message, OutputStream outputStream) throws IOException {
+    try (MessageOutputStream binary = MessageOutputStream.acquire()) {
+      try {
+        encode(message, binary);
+      } catch (Exception e) {
+        throw new RuntimeException(e);
+      }
+      binary.writeHexTo(this, outputStream);
+    }
+  }
+
+  /**
+   * Returns the hex encoded message, including its length prefix, as ASCII characters. The array
+   * has exactly the size of the encoded message, so it can be sent without copying it.
+   */
+  public byte[] encodeRequestBytes(M message) {
+    try (MessageOutputStream outputStream = MessageOutputStream.acquire()) {
+      try {
+        encode(message, outputStream);
+      } catch (Exception e) {
+        throw new RuntimeException(e);
+      }
+      return outputStream.toHexBytes(this);
+    }
+  }
+
+  /**
+   * Encodes the message once for a polling loop, the event ID and the reserved bytes of following
+   * requests are patched into the encoded message.
+   */
+  public PreparedRequest<M> prepareRequest(M message) {
+    return new PreparedRequest<>(this, message);
+  }
+
+  /**
+   * Encodes the message in binary form, without the hex length prefix, into the remaining space of
+   * the buffer.
+   *
+   * @throws BufferOverflowException if the message does not fit into the buffer, the position of
+   *     the buffer is left unchanged in that case
+   */
+  public void encodeRequest(M message, ByteBuffer buffer) {
+    int position = buffer.position();
+    try {
+      encode(message, new ByteBufferOutputStream(buffer));
+    } catch (BufferOverflowException e) {
+      buffer.position(position);
+      throw e;
+    } catch (Exception e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  public M decodeResponse(String message) {
+    return decodeResponse((CharSequence) message);
+  }
+
+  /**
+   * Decodes a hex encoded message, including its length prefix. Characters after the length given
+   * by the prefix are not read.
+   *
+   * @throws RuntimeException if the message is shorter than given by its length prefix
+   */
+  public M decodeResponse(CharSequence message) {
+    return decodeResponse(message, DecodeLimits.DEFAULT);
   }
 
-  public abstract String encodeRequest(M message);
+  /**
+   * Decodes a hex encoded message, including its length prefix, within the given limits.
+   *
+   * @throws RuntimeException if the message is shorter than given by its length prefix or exceeds
+   *     the limits
+   */
+  public M decodeResponse(CharSequence message, DecodeLimits limits) {
+    return decodeHex(message, limits, null, null);
+  }
+
+  /**
+   * Decodes a hex encoded message like {@link #decodeResponse(CharSequence)}, but passes the items
+   * of all <code>SEQUENCE OF</code>s with the given item type one at a time to the visitor, instead
+   * of collecting them. The lists of these elements are left <code>null</code>.
+   *
+   * <p>Without a generated codec for the application data, it is decoded completely before its own
+   * lists are visited.
+   *
+   * @return the message, or <code>null</code> if the visitor stopped decoding
+   */
+  public <T> M decodeResponse(
+      CharSequence message, Class<T> itemType, SequenceOfVisitor<? super T> visitor) {
+    return decodeHex(message, DecodeLimits.DEFAULT, itemType, visitor);
+  }
+
+  private M decodeHex(
+      CharSequence message, DecodeLimits limits, Class<?> itemType, SequenceOfVisitor<?> visitor) {
+    try {
+      int end = frameLength(message, 0);
+      limits.checkMessageLength((end - LENGTH_PREFIX_LENGTH) / 2);
+      HexInputStream frame = new HexInputStream(message, LENGTH_PREFIX_LENGTH, end, limits);
+      frame.visitItems(itemType, visitor);
+      return decode(frame);
+    } catch (PerBitInputStream.Stopped e) {
+      return null;
+    } catch (Exception e) {
+      throw new RuntimeException("Could not decode: " + message, e);
+    }
+  }
+
+  /**
+   * Decodes a binary message, without the hex length prefix, starting at the position of the
+   * buffer. The position is advanced past the bytes that have been read.
+   */
+  public M decodeResponse(ByteBuffer message) {
+    return decodeResponse(message, DecodeLimits.DEFAULT);
+  }
+
+  /**
+   * Decodes a binary message, without the hex length prefix, starting at the position of the
+   * buffer, within the given limits. Only the first {@link DecodeLimits#getMaxBytes()} bytes of the
+   * buffer are read. The position is advanced past the bytes that have been read.
+   */
+  public M decodeResponse(ByteBuffer message, DecodeLimits limits) {
+    ByteBuffer original = message.duplicate();
+    try {
+      return decode(new ByteBufferInputStream(message, limits));
+    } catch (Exception e) {
+      byte[] bytes = new byte[original.remaining()];
+      original.get(bytes);
+      throw new RuntimeException("Could not decode: " + bytesToHex(bytes), e);
+    }
+  }
+
+  /**
+   * Decodes a message, that is read as hex encoded ASCII characters including its length prefix
+   * from the stream. Only the characters of the message are read, the stream is not closed.
+   */
+  public M readResponse(InputStream message) throws IOException {
+    return readResponse(message, null, null);
+  }
+
+  /**
+   * Decodes a message, that is read from the stream like {@link #readResponse(InputStream)}, and
+   * passes the items of all <code>SEQUENCE OF</code>s with the given item type to the visitor, like
+   * {@link #decodeResponse(CharSequence, Class, SequenceOfVisitor)}. If the visitor stops decoding,
+   * the rest of the message is skipped.
+   *
+   * @return the message, or <code>null</code> if the visitor stopped decoding
+   */
+  public <T> M readResponse(
+      InputStream message, Class<T> itemType, SequenceOfVisitor<? super T> visitor)
+      throws IOException {
+    HexStreamInputStream frame = nextFrame(message);
+    if (frame == null) {
+      throw new EOFException("No message in stream");
+    }
+    frame.visitItems(itemType, visitor);
+    return decodeFrame(frame);
+  }
+
+  /**
+   * Decodes all messages of a stream of concatenated hex encoded messages, e.g. a capture file.
+   * Whitespace between the messages is ignored.
+   */
+  public void readResponses(InputStream messages, Consumer<? super M> consumer) throws IOException {
+    HexStreamInputStream frame;
+    while ((frame = nextFrame(messages)) != null) {
+      consumer.accept(decodeFrame(frame));
+    }
+  }
 
-  public abstract M decodeResponse(String message);
+  /**
+   * Reads the length prefix of the next message in the stream.
+   *
+   * @return the message, or <code>null</code> at the end of the stream
+   */
+  private HexStreamInputStream nextFrame(InputStream message) throws IOException {
+    char[] prefix = new char[LENGTH_PREFIX_LENGTH];
+    int c = message.read();
+    while (c >= 0 && Character.isWhitespace(c)) {
+      c = message.read();
+    }
+    if (c < 0) {
+      return null;
+    }
+    prefix[0] = (char) c;
+    for (int i = 1; i < prefix.length; i++) {
+      c = message.read();
+      if (c < 0) {
+        throw new EOFException("Incomplete length prefix: " + new String(prefix, 0, i));
+      }
+      prefix[i] = (char) c;
+    }
+    int length;
+    try {
+      length = readLengthPrefix(CharBuffer.wrap(prefix), 0);
+      DecodeLimits.DEFAULT.checkMessageLength(length);
+    } catch (RuntimeException e) {
+      throw new RuntimeException("Could not decode response", e);
+    }
+    return new HexStreamInputStream(message, length, DecodeLimits.DEFAULT);
+  }
+
+  /**
+   * @return the message, or <code>null</code> if a visitor stopped decoding
+   */
+  private M decodeFrame(HexStreamInputStream frame) throws IOException {
+    try {
+      M response;
+      try {
+        response = decode(frame);
+      } catch (PerBitInputStream.Stopped e) {
+        response = null;
+      }
+      // the next message starts after the length given by the prefix
+      frame.skipRemaining();
+      return response;
+    } catch (IOException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new RuntimeException("Could not decode response", e);
+    }
+  }
+
+  /**
+   * Returns the number of characters of the hex encoded message, that starts at the index,
+   * including its length prefix.
+   *
+   * @throws IllegalArgumentException if the length prefix is invalid or the message needs more
+   *     characters than available
+   */
+  public int frameLength(CharSequence messages, int index) {
+    int available = messages.length() - index;
+    if (available < LENGTH_PREFIX_LENGTH) {
+      throw new IllegalArgumentException("Incomplete length prefix at index " + index);
+    }
+    int length = LENGTH_PREFIX_LENGTH + readLengthPrefix(messages, index) * 2;
+    if (available < length) {
+      throw new IllegalArgumentException(
+          "Message at index "
+              + index
+              + " has "
+              + length
+              + " characters, but only "
+              + available
+              + " are available");
+    }
+    return length;
+  }
+
+  /**
+   * Splits concatenated hex encoded messages by their length prefixes. Whitespace between the
+   * messages is ignored, the returned messages are views of the given characters.
+   */
+  public List<CharSequence> splitFrames(CharSequence messages) {
+    List<CharSequence> frames = new ArrayList<>();
+    int index = skipWhitespace(messages, 0);
+    while (index < messages.length()) {
+      int length = frameLength(messages, index);
+      frames.add(CharBuffer.wrap(messages, index, index + length));
+      index = skipWhitespace(messages, index + length);
+    }
+    return frames;
+  }
+
+  static int skipWhitespace(CharSequence messages, int index) {
+    while (index < messages.length() && Character.isWhitespace(messages.charAt(index))) {
+      index++;
+    }
+    return index;
+  }
+
+  /**
+   * Decodes only the dispatcher header and body of a hex encoded message, including its length
+   * prefix. The application data is neither decoded nor read.
+   */
+  public Routing peekRouting(CharSequence message) {
+    try {
+      int end = frameLength(message, 0);
+      DecodeLimits.DEFAULT.checkMessageLength((end - LENGTH_PREFIX_LENGTH) / 2);
+      return peek(new HexInputStream(message, LENGTH_PREFIX_LENGTH, end, DecodeLimits.DEFAULT));
+    } catch (Exception e) {
+      throw new RuntimeException("Could not decode: " + message, e);
+    }
+  }
+
+  /**
+   * Decodes only the dispatcher header and body of a binary message, without the hex length prefix,
+   * starting at the position of the buffer. The position of the buffer is not changed.
+   */
+  public Routing peekRouting(ByteBuffer message) {
+    try {
+      return peek(new ByteBufferInputStream(message.duplicate(), DecodeLimits.DEFAULT));
+    } catch (Exception e) {
+      byte[] bytes = new byte[message.remaining()];
+      message.duplicate().get(bytes);
+      throw new RuntimeException("Could not decode: " + bytesToHex(bytes), e);
+    }
+  }
+
+  /** Writes the binary representation of the message to the stream. */
+  protected abstract void encode(M message, OutputStream outputStream) throws Exception;
+
+  /** Reads a message in binary representation from the stream. */
+  protected abstract M decode(InputStream inputStream) throws Exception;
+
+  /**
+   * Reads the dispatcher header and body of a message in binary representation from the stream, the
+   * application data is left in the stream.
+   */
+  protected abstract Routing peek(InputStream inputStream) throws Exception;
+
+  /** Skips exactly <code>count</code> bytes of the stream. */
+  protected static void skipBytes(InputStream inputStream, int count) throws IOException {
+    for (int i = 0; i < count; i++) {
+      if (inputStream.read() < 0) {
+        throw new EOFException("Message ends after " + i + " of " + count + " bytes");
+      }
+    }
+  }
+
+  /** Reads the dispatcher body encoding of the header, only PER is supported. */
+  protected static int readBodyEncoding(InputStream inputStream) throws IOException {
+    int encoding = inputStream.read();
+    if (encoding < 0) {
+      throw new EOFException("Message ends in the dispatcher header");
+    }
+    if (encoding != 0) {
+      throw new IllegalArgumentException("Unsupported dispatcher body encoding: " + encoding);
+    }
+    return encoding;
+  }
+
+  /**
+   * Encodes a single ASN.1 element, using the generated codec if there is one. The stream is byte
+   * aligned afterwards.
+   */
+  @SuppressWarnings("unchecked")
+  protected static void encodeElement(Object element, PerBitOutputStream stream) throws Exception {
+    PerCodec<Object> codec = (PerCodec<Object>) PerCodecs.get(element.getClass());
+    if (codec == null) {
+      ENCODER.encode(element, stream);
+      return;
+    }
+    long start = stream.bitLength();
+    codec.encode(element, stream);
+    if (stream.bitLength() == start) {
+      throw new IllegalArgumentException(
+          "Unable to find any supported annotation for class type: " + element.getClass());
+    }
+    stream.align();
+  }
+
+  /**
+   * Decodes a single ASN.1 element, using the generated codec if there is one. Only the bytes of
+   * the element are taken from the stream. The {@link DecodeLimits} of the message are checked, if
+   * the stream was passed to {@link #decode} or {@link #peek}.
+   */
+  protected static <T> T decodeElement(InputStream stream, Class<T> type) throws Exception {
+    PerCodec<T> codec = PerCodecs.get(type);
+    if (!(stream instanceof FrameInputStream)) {
+      if (codec == null) {
+        return DECODER.decode(stream, type);
+      }
+      return codec.decode(new PerBitInputStream(stream));
+    }
+    FrameInputStream frame = (FrameInputStream) stream;
+    if (codec == null) {
+      T element = new MyPERUnalignedDecoder(frame).decode(stream, type);
+      if (frame.visitor != null) {
+        visitItems(element, frame.visitedType, frame.visitor);
+      }
+      return element;
+    }
+    PerBitInputStream in = new PerBitInputStream(stream, frame.limits, 8L * frame.remaining());
+    if (frame.visitor != null) {
+      in.visitItems(frame.visitedType, frame.visitor);
+    }
+    return codec.decode(in);
+  }
+
+  /**
+   * Passes the items of the lists of an element, that has been decoded by binarynotes, to the
+   * visitor and removes the lists from the element. Lists of nested elements are kept.
+   */
+  private static void visitItems(
+      Object element, Class<?> itemType, SequenceOfVisitor<Object> visitor)
+      throws IllegalAccessException {
+    for (Field field : element.getClass().getDeclaredFields()) {
+      Type listType = field.getGenericType();
+      if (!Collection.class.isAssignableFrom(field.getType())
+          || !(listType instanceof ParameterizedType)
+          || ((ParameterizedType) listType).getActualTypeArguments()[0] != itemType) {
+        continue;
+      }
+      field.setAccessible(true);
+      Collection<?> items = (Collection<?>) field.get(element);
+      field.set(element, null);
+      if (items != null) {
+        for (Object item : items) {
+          if (!visitor.visit(item)) {
+            throw PerBitInputStream.Stopped.INSTANCE;
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Writes the {@link #LENGTH_PREFIX_LENGTH} characters, that precede the hex encoded message with
+   * the given binary length, into the target array.
+   */
+  protected abstract void writeLengthPrefix(int length, char[] target);
+
+  /**
+   * Reads the {@link #LENGTH_PREFIX_LENGTH} characters at the index, that precede a hex encoded
+   * message.
+   *
+   * @return the binary length of the message
+   * @throws IllegalArgumentException if the characters are not a valid length prefix
+   */
+  protected abstract int readLengthPrefix(CharSequence source, int index);
 
   public abstract M initializeMessage(
       String uid,
@@ -66,14 +528,343 @@ public abstract class AbstractMessageCoder<
       int messageID,
       E applicationData);
 
+  /**
+   * Creates a message from parts, that were decoded from another encoding, like {@link JerCodec}.
+   *
+   * @param reserved the reserved bytes, ignored if the protocol version has none and generated if
+   *     <code>null</code>
+   */
+  protected abstract M createMessage(H header, byte[] reserved, B body, E applicationData);
+
+  /**
+   * @return the position of the reserved bytes in the binary message, or -1 if the protocol version
+   *     has none
+   */
+  protected int getReservedOffset() {
+    return -1;
+  }
+
+  protected abstract Class<H> getHeaderClass();
+
+  protected abstract Class<B> getBodyClass();
+
   public abstract String getVersion();
 
   public Class<E> getApplicationDataClass() {
     return applicationDataClass;
   }
 
+  /**
+   * Scratch streams for the application data and the body of a message in {@link #encode}. There is
+   * one instance per thread, that is reset before it is handed out again.
+   */
+  protected static final class EncodingBuffers implements AutoCloseable {
+    private static final ThreadLocal<EncodingBuffers> BUFFERS =
+        ThreadLocal.withInitial(EncodingBuffers::new);
+
+    private final PerBitOutputStream applicationData = new PerBitOutputStream();
+    private final PerBitOutputStream body = new PerBitOutputStream();
+    private boolean inUse;
+
+    private EncodingBuffers() {}
+
+    /** Returns the buffers of the current thread, or new ones if they are already in use. */
+    public static EncodingBuffers acquire() {
+      EncodingBuffers buffers = BUFFERS.get();
+      if (buffers.inUse) {
+        buffers = new EncodingBuffers();
+      }
+      buffers.inUse = true;
+      buffers.applicationData.reset();
+      buffers.body.reset();
+      return buffers;
+    }
+
+    public PerBitOutputStream getApplicationData() {
+      return applicationData;
+    }
+
+    public PerBitOutputStream getBody() {
+      return body;
+    }
+
+    @Override
+    public void close() {
+      inUse = false;
+      if (applicationData.size() > MAX_RETAINED_BUFFER_SIZE
+          || body.size() > MAX_RETAINED_BUFFER_SIZE) {
+        BUFFERS.remove();
+      }
+    }
+  }
+
+  /** Binary message and its hex representation, reused per thread like {@link EncodingBuffers}. */
+  private static final class MessageOutputStream extends ByteArrayOutputStream
+      implements AutoCloseable {
+    private static final ThreadLocal<MessageOutputStream> STREAMS =
+        ThreadLocal.withInitial(MessageOutputStream::new);
+
+    private char[] hexChars = new char[LENGTH_PREFIX_LENGTH + 2048];
+    private byte[] hexBytes = new byte[0];
+    private boolean inUse;
+
+    private MessageOutputStream() {
+      super(1024);
+    }
+
+    private static MessageOutputStream acquire() {
+      MessageOutputStream stream = STREAMS.get();
+      if (stream.inUse) {
+        stream = new MessageOutputStream();
+      }
+      stream.inUse = true;
+      stream.reset();
+      return stream;
+    }
+
+    private String toHexString(AbstractMessageCoder<?, ?, ?, ?> coder) {
+      int length = LENGTH_PREFIX_LENGTH + count * 2;
+      if (hexChars.length < length) {
+        hexChars = new char[length];
+      }
+      coder.writeLengthPrefix(count, hexChars);
+      HexCodec.DEFAULT.encode(buf, 0, count, hexChars, LENGTH_PREFIX_LENGTH);
+      return new String(hexChars, 0, length);
+    }
+
+    private byte[] toHexBytes(AbstractMessageCoder<?, ?, ?, ?> coder) {
+      byte[] hex = new byte[LENGTH_PREFIX_LENGTH + count * 2];
+      writeHex(coder, hex);
+      return hex;
+    }
+
+    private void writeHexTo(AbstractMessageCoder<?, ?, ?, ?> coder, OutputStream outputStream)
+        throws IOException {
+      int length = LENGTH_PREFIX_LENGTH + count * 2;
+      if (hexBytes.length < length) {
+        hexBytes = new byte[length];
+      }
+      writeHex(coder, hexBytes);
+      outputStream.write(hexBytes, 0, length);
+    }
+
+    private void writeHex(AbstractMessageCoder<?, ?, ?, ?> coder, byte[] target) {
+      coder.writeLengthPrefix(count, hexChars);
+      for (int i = 0; i < LENGTH_PREFIX_LENGTH; i++) {
+        target[i] = (byte) hexChars[i];
+      }
+      HexCodec.DEFAULT.encode(buf, 0, count, target, LENGTH_PREFIX_LENGTH);
+    }
+
+    @Override
+    public void close() {
+      inUse = false;
+      if (buf.length > MAX_RETAINED_BUFFER_SIZE || hexBytes.length > 2 * MAX_RETAINED_BUFFER_SIZE) {
+        STREAMS.remove();
+      }
+    }
+  }
+
+  private static class ByteBufferOutputStream extends OutputStream {
+    private final ByteBuffer buffer;
+
+    private ByteBufferOutputStream(ByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+
+    @Override
+    public void write(int b) {
+      buffer.put((byte) b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+      buffer.put(b, off, len);
+    }
+  }
+
+  /** The bytes of a single message, that are decoded within the {@link DecodeLimits}. */
+  abstract static class FrameInputStream extends InputStream {
+    final DecodeLimits limits;
+
+    Class<?> visitedType;
+
+    SequenceOfVisitor<Object> visitor;
+
+    FrameInputStream(DecodeLimits limits) {
+      this.limits = limits;
+    }
+
+    @SuppressWarnings("unchecked")
+    void visitItems(Class<?> itemType, SequenceOfVisitor<?> visitor) {
+      this.visitedType = itemType;
+      this.visitor = (SequenceOfVisitor<Object>) visitor;
+    }
+
+    /** Returns the number of bytes of the message, that have not been read yet. */
+    abstract int remaining();
+
+    @Override
+    public int available() {
+      return remaining();
+    }
+  }
+
+  private static class ByteBufferInputStream extends FrameInputStream {
+    private final ByteBuffer buffer;
+    private final int end;
+
+    private ByteBufferInputStream(ByteBuffer buffer, DecodeLimits limits) {
+      super(limits);
+      this.buffer = buffer;
+      this.end = buffer.position() + Math.min(buffer.remaining(), limits.getMaxBytes());
+    }
+
+    @Override
+    int remaining() {
+      return end - buffer.position();
+    }
+
+    @Override
+    public int read() {
+      return buffer.position() < end ? buffer.get() & 0xFF : -1;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+      if (len == 0) {
+        return 0;
+      }
+      if (buffer.position() >= end) {
+        return -1;
+      }
+      len = Math.min(len, end - buffer.position());
+      buffer.get(b, off, len);
+      return len;
+    }
+  }
+
+  /** Reads the bytes of a hex encoded character sequence, without copying it. */
+  private static class HexInputStream extends FrameInputStream {
+    private final CharSequence hex;
+    private final int end;
+    private int index;
+
+    private HexInputStream(CharSequence hex, int index, int end, DecodeLimits limits) {
+      super(limits);
+      this.hex = hex;
+      this.index = index;
+      this.end = end;
+    }
+
+    @Override
+    int remaining() {
+      return (end - index) / 2;
+    }
+
+    @Override
+    public int read() throws IOException {
+      if (index + 1 >= end) {
+        return -1;
+      }
+      int b = hexToByte(hex, index);
+      index += 2;
+      return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      if (len == 0) {
+        return 0;
+      }
+      len = Math.min(len, (end - index) / 2);
+      if (len <= 0) {
+        return -1;
+      }
+      HexCodec.DEFAULT.decode(hex, index, b, off, len);
+      index += len * 2;
+      return len;
+    }
+  }
+
+  /** Reads the bytes of hex encoded ASCII characters from another stream. */
+  private static class HexStreamInputStream extends FrameInputStream {
+    private final InputStream hex;
+    private final byte[] chars = new byte[1024];
+    private int remaining;
+
+    private HexStreamInputStream(InputStream hex, int length, DecodeLimits limits) {
+      super(limits);
+      this.hex = hex;
+      this.remaining = length;
+    }
+
+    @Override
+    int remaining() {
+      return remaining;
+    }
+
+    @Override
+    public int read() throws IOException {
+      if (remaining == 0) {
+        return -1;
+      }
+      remaining--;
+      int high = hex.read();
+      int low = hex.read();
+      if (low < 0) {
+        return -1;
+      }
+      return HexCodec.value(high) << 4 | HexCodec.value(low);
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      if (len == 0) {
+        return 0;
+      }
+      len = Math.min(len, Math.min(remaining, chars.length / 2));
+      if (len == 0) {
+        return -1;
+      }
+      int read = hex.readNBytes(chars, 0, len * 2) / 2;
+      if (read == 0) {
+        return -1;
+      }
+      remaining -= read;
+      HexCodec.DEFAULT.decode(chars, 0, b, off, read);
+      return read;
+    }
+
+    private void skipRemaining() throws IOException {
+      skipBytes(hex, remaining * 2);
+      remaining = 0;
+    }
+  }
+
   public static class MyPERUnalignedEncoder extends PERUnalignedEncoder {
 
+    /**
+     * Encodes the object directly into the given bit stream, upstream encodes into a temporary
+     * stream and copies it afterwards.
+     */
+    public void encode(Object object, BitArrayOutputStream stream) throws Exception {
+      ElementInfo elementInfo = new ElementInfo();
+      elementInfo.setAnnotatedClass(object.getClass());
+      int sizeOfEncodedBytes;
+      if (object instanceof IASN1PreparedElement) {
+        sizeOfEncodedBytes = encodePreparedElement(object, stream, elementInfo);
+      } else {
+        elementInfo.setASN1ElementInfoForClass(object.getClass());
+        sizeOfEncodedBytes = encodeClassType(object, stream, elementInfo);
+      }
+      if (sizeOfEncodedBytes == 0) {
+        throw new IllegalArgumentException(
+            "Unable to find any supported annotation for class type: " + object.getClass());
+      }
+      stream.align();
+    }
+
     @Override
     public int encodeString(Object obj, OutputStream outputStream, ElementInfo elementInfo)
         throws Exception {
@@ -107,48 +898,144 @@ public abstract class AbstractMessageCoder<
       return encodeLength;
     }
 
+    @Override
+    public int encodeEnum(Object object, OutputStream stream, ElementInfo elementInfo)
+        throws Exception {
+      ElementMetadata.EnumMetadata metadata = ElementMetadata.ofEnum(object.getClass());
+      if (metadata.size() == 0) {
+        throw new Exception("Unable to present any enum item!");
+      }
+      return encodeConstraintNumber(
+          metadata.indexOf(metadata.getValue(object)),
+          0,
+          metadata.size() - 1,
+          (BitArrayOutputStream) stream);
+    }
+
     public int encodeLength(int value, ElementInfo elementInfo, OutputStream stream)
         throws Exception {
-      int resultSize = 0;
       BitArrayOutputStream bitStream = (BitArrayOutputStream) stream;
-      CoderUtils.checkConstraints(value, elementInfo);
-      if (elementInfo.hasPreparedInfo()) {
-        if (elementInfo.getPreparedInfo().hasConstraint()) {
-          IASN1ConstraintMetadata constraint = elementInfo.getPreparedInfo().getConstraint();
-          if (constraint instanceof ASN1ValueRangeConstraintMetadata) {
-            resultSize +=
-                encodeConstraintLengthDeterminant(
-                    value,
-                    (int) ((ASN1ValueRangeConstraintMetadata) constraint).getMin(),
-                    (int) ((ASN1ValueRangeConstraintMetadata) constraint).getMax(),
-                    bitStream);
-          } else if (constraint instanceof ASN1SizeConstraintMetadata) {
-            // exact size, don't need to encode it in the stream
-            resultSize += (int) ((ASN1SizeConstraintMetadata) constraint).getMax();
-          }
-        } else {
-          resultSize += encodeLengthDeterminant(value, bitStream);
-        }
-      } else if (elementInfo
-          .getAnnotatedClass()
-          .isAnnotationPresent(ASN1ValueRangeConstraint.class)) {
-        ASN1ValueRangeConstraint constraint =
-            elementInfo.getAnnotatedClass().getAnnotation(ASN1ValueRangeConstraint.class);
-        resultSize +=
-            encodeConstraintLengthDeterminant(
-                value, (int) constraint.min(), (int) constraint.max(), bitStream);
-      } else if (elementInfo.getAnnotatedClass().isAnnotationPresent(ASN1SizeConstraint.class)) {
-        ASN1SizeConstraint constraint =
-            elementInfo.getAnnotatedClass().getAnnotation(ASN1SizeConstraint.class);
-        resultSize += (int) constraint.max();
-      } else {
-        resultSize += encodeLengthDeterminant(value, bitStream);
+      ElementMetadata metadata = ElementMetadata.of(elementInfo);
+      metadata.checkConstraints(value, elementInfo);
+      switch (metadata.getLengthEncoding()) {
+        case VALUE_RANGE:
+          return encodeConstraintLengthDeterminant(
+              value, (int) metadata.getMin(), (int) metadata.getMax(), bitStream);
+        case SIZE:
+          // exact size, don't need to encode it in the stream
+          return (int) metadata.getMax();
+        case UNCONSTRAINED:
+          return encodeLengthDeterminant(value, bitStream);
+        default:
+          return 0;
       }
-      return resultSize;
     }
   }
 
   public static class MyPERUnalignedDecoder extends PERUnalignedDecoder {
+    private final DecodeLimits limits;
+
+    /** The message, that is decoded, or <code>null</code> if its length is not known. */
+    private final FrameInputStream frame;
+
+    public MyPERUnalignedDecoder() {
+      this.limits = DecodeLimits.UNLIMITED;
+      this.frame = null;
+    }
+
+    MyPERUnalignedDecoder(FrameInputStream frame) {
+      this.limits = frame.limits;
+      this.frame = frame;
+    }
+
+    @Override
+    public <T> DecodedObject<T> decodeEnum(
+        DecodedObject<Integer> decodedTag,
+        Class<T> objectClass,
+        ElementInfo elementInfo,
+        InputStream stream)
+        throws Exception {
+      ElementMetadata.EnumMetadata metadata = ElementMetadata.ofEnum(objectClass);
+      if (metadata.size() == 0) {
+        throw new Exception("Unable to present any enum item!");
+      }
+      int index =
+          (int) decodeConstraintNumber(0, metadata.size() - 1, (BitArrayInputStream) stream);
+      T result = objectClass.getConstructor().newInstance();
+      metadata.setValue(result, metadata.itemAt(index));
+      return new DecodedObject<>(result, 0);
+    }
+
+    @Override
+    protected int decodeLength(ElementInfo elementInfo, InputStream stream) throws Exception {
+      BitArrayInputStream bitStream = (BitArrayInputStream) stream;
+      ElementMetadata metadata = ElementMetadata.of(elementInfo);
+      int result;
+      switch (metadata.getLengthEncoding()) {
+        case VALUE_RANGE:
+          result =
+              decodeConstraintLengthDeterminant(
+                  (int) metadata.getMin(), (int) metadata.getMax(), bitStream);
+          break;
+        case SIZE:
+          result = (int) metadata.getMax();
+          break;
+        case UNCONSTRAINED:
+          result = decodeLengthDeterminant(bitStream);
+          break;
+        default:
+          result = 0;
+      }
+      metadata.checkConstraints(result, elementInfo);
+      checkLimits(result, elementInfo);
+      return result;
+    }
+
+    /** Checks a length from the stream, before the string or collection is allocated. */
+    private void checkLimits(int length, ElementInfo elementInfo) {
+      AnnotatedElement annotated = elementInfo.getAnnotatedClass();
+      Class<?> type;
+      if (annotated instanceof Field) {
+        type = ((Field) annotated).getType();
+      } else if (annotated instanceof Class) {
+        type = (Class<?>) annotated;
+      } else {
+        return;
+      }
+      if (type == String.class) {
+        limits.checkStringLength(
+            length, isNumericString(elementInfo) ? 4 : 7, bitsLeft(), annotated);
+      } else if (type == byte[].class) {
+        limits.checkStringLength(length, 8, bitsLeft(), annotated);
+      } else if (Collection.class.isAssignableFrom(type)) {
+        limits.checkCollectionSize(length, annotated);
+      }
+    }
+
+    /** Binarynotes may still hold some bits of the last byte it took from the message. */
+    private long bitsLeft() {
+      return frame == null ? Long.MAX_VALUE : 8L * frame.remaining() + 7;
+    }
+
+    @Override
+    protected long decodeConstraintNumber(long min, long max, BitArrayInputStream stream)
+        throws Exception {
+      // upstream accumulates the value in an int, which breaks ranges with more than 31 bits
+      long valueRange = max - min;
+      if (valueRange == 0) {
+        return max;
+      }
+      int currentBit = 64 - Long.numberOfLeadingZeros(valueRange);
+      long result = 0;
+      while (currentBit > 7) {
+        currentBit -= 8;
+        result |= (long) stream.read() << currentBit;
+      }
+      if (currentBit > 0) {
+        result |= stream.readBits(currentBit);
+      }
+      return result + min;
+    }
 
     public DecodedObject<String> decodeString(
         DecodedObject<Integer> decodedTag2,
@@ -1,106 +1,277 @@
 package net.heberling.ismart.asn1;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
 import org.bn.coders.IASN1PreparedElement;
 
+/**
+ * Replaces identifying values of messages. The fields of each class, that need to be visited or
+ * redacted, are looked up once and cached as a plan.
+ */
 public class Anonymizer {
+  private static final ClassValue<Optional<VarHandle>> RESERVED =
+      new ClassValue<>() {
+        @Override
+        protected Optional<VarHandle> computeValue(Class<?> type) {
+          for (Field field : type.getDeclaredFields()) {
+            if (field.getName().equals("reserved") && field.getType() == byte[].class) {
+              return Optional.of(varHandle(field));
+            }
+          }
+          return Optional.empty();
+        }
+      };
+
+  private static final ClassValue<ElementPlan> PLANS =
+      new ClassValue<>() {
+        @Override
+        protected ElementPlan computeValue(Class<?> type) {
+          return new ElementPlan(type);
+        }
+      };
+
   public static void anonymize(AbstractMessage<?, ?, ?> message) {
+    Optional<VarHandle> reserved = RESERVED.get(message.getClass());
+    if (reserved.isPresent()) {
+      // Don't know what this is for, better redact
+      Arrays.fill((byte[]) reserved.get().get(message), (byte) 0);
+    }
+
+    anonymize(message.getBody());
+    if (message.getApplicationData() != null) {
+      anonymize(message.getApplicationData());
+    }
+  }
+
+  /** Returns an anonymized deep copy of the message, the message itself is not changed. */
+  public static <M extends AbstractMessage<?, ?, ?>> M anonymized(M message) {
+    M copy = MessageCopier.copy(message);
+    anonymize(copy);
+    return copy;
+  }
+
+  private static void anonymize(Object element) {
+    PLANS.get(element.getClass()).anonymize(element);
+  }
+
+  private static VarHandle varHandle(Field field) {
     try {
-      for (Field field : message.getClass().getDeclaredFields()) {
-        if (field.getName().equals("reserved")) {
-          field.setAccessible(true);
-          // Don't know what this is for, better redact
-          Arrays.fill((byte[]) field.get(message), (byte) 0);
+      return MethodHandles.privateLookupIn(field.getDeclaringClass(), MethodHandles.lookup())
+          .unreflectVarHandle(field);
+    } catch (IllegalAccessException e) {
+      throw new IllegalStateException("Can't access " + field, e);
+    }
+  }
+
+  /** Replace all letters with X and all numbers > 1 with 9, keep everything else. */
+  static String anonymizeString(String s) {
+    char[] chars = s.toCharArray();
+    for (int i = 0; i < chars.length; i++) {
+      char c = chars[i];
+      if (c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z') {
+        chars[i] = 'X';
+      } else if (c >= '1' && c <= '9') {
+        chars[i] = '9';
+      }
+    }
+    return new String(chars);
+  }
+
+  /** Replace every character with *, like <code>replaceAll(".", "*")</code>. */
+  static String mask(String s) {
+    StringBuilder masked = new StringBuilder(s.length());
+    for (int i = 0; i < s.length(); i += Character.charCount(s.codePointAt(i))) {
+      masked.append(isLineTerminator(s.charAt(i)) ? s.charAt(i) : '*');
+    }
+    return masked.toString();
+  }
+
+  /**
+   * Replace the 3 characters of <code>(***...)</code> with X, like <code>
+   * replaceAll("\\(\\*\\*\\*...\\)", "(***XXX)")</code>.
+   */
+  static String anonymizeContent(String s) {
+    char[] chars = null;
+    int i = s.indexOf("(***");
+    while (i >= 0) {
+      int next = i + 1;
+      if (i + 7 < s.length()
+          && s.charAt(i + 7) == ')'
+          && !isLineTerminator(s.charAt(i + 4))
+          && !isLineTerminator(s.charAt(i + 5))
+          && !isLineTerminator(s.charAt(i + 6))) {
+        if (chars == null) {
+          chars = s.toCharArray();
+        }
+        chars[i + 4] = 'X';
+        chars[i + 5] = 'X';
+        chars[i + 6] = 'X';
+        next = i + 8;
+      }
+      i = s.indexOf("(***", next);
+    }
+    return chars == null ? s : new String(chars);
+  }
+
+  private static boolean isLineTerminator(char c) {
+    return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+  }
+
+  private enum Kind {
+    ELEMENT,
+    COLLECTION,
+    BYTES,
+    VALUE
+  }
+
+  private enum Redaction {
+    MASK {
+      @Override
+      Object apply(Object value) {
+        return mask((String) value);
+      }
+    },
+    IDENTIFIER {
+      @Override
+      Object apply(Object value) {
+        return anonymizeString((String) value);
+      }
+    },
+    DEVICE_ID {
+      @Override
+      Object apply(Object value) {
+        // keep everything after ###
+        String deviceId = (String) value;
+        int separator = deviceId.indexOf("###");
+        return separator < 0
+            ? anonymizeString(deviceId)
+            : anonymizeString(deviceId.substring(0, separator)) + deviceId.substring(separator);
+      }
+    },
+    ROUND {
+      @Override
+      Object apply(Object value) {
+        if (value instanceof Long) {
+          return (Long) value / 100000 * 100000;
         }
+        return (Integer) value / 100000 * 100000;
       }
+    },
+    FIXED {
+      @Override
+      Object apply(Object value) {
+        return value instanceof Long ? (Object) 9999L : (Object) 9999;
+      }
+    },
+    CONTENT {
+      @Override
+      Object apply(Object value) {
+        String content = new String((byte[]) value, StandardCharsets.UTF_8);
+        String anonymized = anonymizeContent(content);
+        return anonymized == content ? value : anonymized.getBytes(StandardCharsets.UTF_8);
+      }
+    };
 
-      anonymize(message.getBody());
-      if (message.getApplicationData() != null) {
-        anonymize(message.getApplicationData());
+    abstract Object apply(Object value);
+
+    static Redaction of(String fieldName) {
+      switch (fieldName) {
+        case "password":
+          return MASK;
+        case "email":
+        case "uid":
+        case "pin":
+        case "token":
+        case "refreshToken":
+        case "vin":
+          return IDENTIFIER;
+        case "deviceId":
+          return DEVICE_ID;
+        case "seconds":
+        case "bindTime":
+        case "eventCreationTime":
+        case "latitude":
+        case "longitude":
+          return ROUND;
+        case "eventID":
+        case "lastKeySeen":
+          return FIXED;
+        case "content":
+          return CONTENT;
+        default:
+          return null;
       }
+    }
+  }
 
-    } catch (IllegalAccessException e) {
-      throw new RuntimeException(e);
+  private static final class FieldPlan {
+    private final VarHandle handle;
+    private final Kind kind;
+    private final Redaction redaction;
+
+    private FieldPlan(Field field) {
+      this.handle = varHandle(field);
+      Class<?> type = field.getType();
+      if (IASN1PreparedElement.class.isAssignableFrom(type)) {
+        kind = Kind.ELEMENT;
+      } else if (Collection.class.isAssignableFrom(type)) {
+        kind = Kind.COLLECTION;
+      } else if (type == byte[].class) {
+        kind = Kind.BYTES;
+      } else {
+        kind = Kind.VALUE;
+      }
+      // nested structures and collections are visited, not replaced
+      this.redaction =
+          kind == Kind.ELEMENT || kind == Kind.COLLECTION ? null : Redaction.of(field.getName());
     }
   }
 
-  private static void anonymize(IASN1PreparedElement element) throws IllegalAccessException {
-    for (Field field : element.getClass().getDeclaredFields()) {
-      // make all fields accessible
-      field.setAccessible(true);
-      if (field.get(element) != null) {
-        // only replace actually filled fields
-        if (IASN1PreparedElement.class.isAssignableFrom(field.getType())) {
-          // replace nested structures
-          anonymize((IASN1PreparedElement) field.get(element));
-        } else if (Collection.class.isAssignableFrom(field.getType())) {
-          // replace collections
-          Collection<?> c = (Collection<?>) field.get(element);
-          for (Object o : c) {
-            if (o instanceof IASN1PreparedElement) {
-              anonymize((IASN1PreparedElement) o);
-            }
-          }
-        } else {
-          // replace identifying values
-          switch (field.getName()) {
-            case "password":
-              // replace everything with *
-              field.set(element, ((String) field.get(element)).replaceAll(".", "*"));
-              break;
-            case "email":
-            case "uid":
-            case "pin":
-            case "token":
-            case "refreshToken":
-            case "vin":
-              // replace all letters with X and all numbers > 1 with 9, keep
-              // everything
-              field.set(element, anonymizeString((String) field.get(element)));
-              break;
-            case "deviceId":
-              // replace all letters with X and all numbers > 1 with 9, keep
-              // everything
-              // after ###
-              String[] s = ((String) field.get(element)).split("###");
-              field.set(element, anonymizeString(s[0]) + "###" + s[1]);
-              break;
-            case "seconds":
-            case "bindTime":
-            case "eventCreationTime":
-            case "latitude":
-            case "longitude":
-              if (field.get(element) instanceof Long) {
-                field.set(element, ((Long) field.get(element)) / 100000 * 100000);
-              } else {
-                field.set(element, ((Integer) field.get(element)) / 100000 * 100000);
-              }
-              break;
-            case "eventID":
-            case "lastKeySeen":
-              if (field.get(element) instanceof Long) {
-                field.set(element, 9999L);
-              } else {
-                field.set(element, 9999);
-              }
-              break;
-            case "content":
-              field.set(
-                  element,
-                  new String((byte[]) field.get(element), StandardCharsets.UTF_8)
-                      .replaceAll("\\(\\*\\*\\*...\\)", "(***XXX)")
-                      .getBytes(StandardCharsets.UTF_8));
-              break;
-          }
+  private static final class ElementPlan {
+    private final FieldPlan[] fields;
+
+    private ElementPlan(Class<?> type) {
+      List<FieldPlan> fields = new ArrayList<>();
+      for (Field field : type.getDeclaredFields()) {
+        if (!Modifier.isStatic(field.getModifiers())) {
+          fields.add(new FieldPlan(field));
         }
       }
+      this.fields = fields.toArray(new FieldPlan[0]);
     }
-  }
 
-  private static String anonymizeString(String s) {
-    return s.replaceAll("[a-zA-Z]", "X").replaceAll("[1-9]", "9");
+    private void anonymize(Object element) {
+      for (FieldPlan field : fields) {
+        Object value = field.handle.get(element);
+        if (value == null) {
+          // only replace actually filled fields
+          continue;
+        }
+        switch (field.kind) {
+          case ELEMENT:
+            Anonymizer.anonymize(value);
+            break;
+          case COLLECTION:
+            for (Object o : (Collection<?>) value) {
+              if (o instanceof IASN1PreparedElement) {
+                Anonymizer.anonymize(o);
+              }
+            }
+            break;
+          default:
+            if (field.redaction != null) {
+              field.handle.set(element, field.redaction.apply(value));
+            }
+        }
+      }
+    }
   }
 }
@@ -0,0 +1,132 @@
+package net.heberling.ismart.asn1;
+
+/**
+ * Limits for decoding messages, that can't be trusted, like responses of the SAIC API. Lengths read
+ * from the stream are checked against the limits and against the bits, that are left in the
+ * message, before anything is allocated. Violations throw an {@link IllegalArgumentException}.
+ *
+ * <p>The {@link #DEFAULT} limits are read from the system properties <code>
+ * ismart.decode.maxBytes</code>, <code>ismart.decode.maxStringLength</code>, <code>
+ * ismart.decode.maxCollectionSize</code> and <code>ismart.decode.maxDepth</code>. They don't reject
+ * any message, that fits into a length prefix.
+ *
+ * <p>The nesting depth is checked by the generated codecs, the binarynotes coders can only nest as
+ * deep as the ASN.1 types.
+ */
+public final class DecodeLimits {
+  /** Only checks lengths against the bits, that are left in the message. */
+  public static final DecodeLimits UNLIMITED =
+      new DecodeLimits(Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE);
+
+  public static final DecodeLimits DEFAULT =
+      new DecodeLimits(
+          Integer.getInteger("ismart.decode.maxBytes", 0xFFFF),
+          Integer.getInteger("ismart.decode.maxStringLength", 0xFFFF),
+          Integer.getInteger("ismart.decode.maxCollectionSize", 0xFFFF),
+          Integer.getInteger("ismart.decode.maxDepth", 32));
+
+  private final int maxBytes;
+  private final int maxStringLength;
+  private final int maxCollectionSize;
+  private final int maxDepth;
+
+  /**
+   * @param maxBytes the maximum length of a binary message
+   * @param maxStringLength the maximum number of characters of a string or bytes of an octet string
+   * @param maxCollectionSize the maximum number of items of a <code>SEQUENCE OF</code>
+   * @param maxDepth the maximum number of nested <code>SEQUENCE</code>s
+   */
+  public DecodeLimits(int maxBytes, int maxStringLength, int maxCollectionSize, int maxDepth) {
+    if (maxBytes < 0 || maxStringLength < 0 || maxCollectionSize < 0 || maxDepth < 1) {
+      throw new IllegalArgumentException("Invalid decode limits");
+    }
+    this.maxBytes = maxBytes;
+    this.maxStringLength = maxStringLength;
+    this.maxCollectionSize = maxCollectionSize;
+    this.maxDepth = maxDepth;
+  }
+
+  public int getMaxBytes() {
+    return maxBytes;
+  }
+
+  public int getMaxStringLength() {
+    return maxStringLength;
+  }
+
+  public int getMaxCollectionSize() {
+    return maxCollectionSize;
+  }
+
+  public int getMaxDepth() {
+    return maxDepth;
+  }
+
+  void checkMessageLength(int bytes) {
+    if (bytes > maxBytes) {
+      throw new IllegalArgumentException(
+          "Message length " + bytes + " exceeds the limit of " + maxBytes + " bytes");
+    }
+  }
+
+  /**
+   * @param bitsPerCharacter the smallest number of bits a character can be encoded with
+   * @param bitsLeft the number of bits, that are left in the message
+   * @param element the name of the element or its field, only used for the message
+   */
+  void checkStringLength(int length, int bitsPerCharacter, long bitsLeft, Object element) {
+    if (length > maxStringLength) {
+      throw new IllegalArgumentException(
+          "Length "
+              + length
+              + " of '"
+              + element
+              + "' exceeds the limit of "
+              + maxStringLength
+              + " characters");
+    }
+    if ((long) length * bitsPerCharacter > bitsLeft) {
+      throw new IllegalArgumentException(
+          "Length "
+              + length
+              + " of '"
+              + element
+              + "' needs more than the "
+              + bitsLeft
+              + " bits left in the message");
+    }
+  }
+
+  void checkCollectionSize(int size, Object element) {
+    if (size > maxCollectionSize) {
+      throw new IllegalArgumentException(
+          "Size "
+              + size
+              + " of '"
+              + element
+              + "' exceeds the limit of "
+              + maxCollectionSize
+              + " items");
+    }
+  }
+
+  void checkDepth(int depth, String element) {
+    if (depth > maxDepth) {
+      throw new IllegalArgumentException(
+          "Nesting depth " + depth + " of '" + element + "' exceeds the limit of " + maxDepth);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "DecodeLimits{maxBytes="
+        + maxBytes
+        + ", maxStringLength="
+        + maxStringLength
+        + ", maxCollectionSize="
+        + maxCollectionSize
+        + ", maxDepth="
+        + maxDepth
+        + '}';
+  }
+}
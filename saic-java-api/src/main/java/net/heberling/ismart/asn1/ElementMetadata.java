@@ -0,0 +1,266 @@
+package net.heberling.ismart.asn1;
+
+import java.lang.reflect.AnnotatedElement;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.bn.annotations.ASN1EnumItem;
+import org.bn.annotations.ASN1String;
+import org.bn.annotations.constraints.ASN1SizeConstraint;
+import org.bn.annotations.constraints.ASN1ValueRangeConstraint;
+import org.bn.coders.CoderUtils;
+import org.bn.coders.ElementInfo;
+import org.bn.coders.IASN1PreparedElementData;
+import org.bn.metadata.ASN1StringMetadata;
+import org.bn.metadata.constraints.ASN1SizeConstraintMetadata;
+import org.bn.metadata.constraints.ASN1ValueRangeConstraintMetadata;
+import org.bn.metadata.constraints.IASN1ConstraintMetadata;
+
+/**
+ * Length constraint and string type of an ASN.1 element, as used by {@link
+ * AbstractMessageCoder.MyPERUnalignedEncoder} and {@link
+ * AbstractMessageCoder.MyPERUnalignedDecoder}. They are resolved once per element and shared by all
+ * coders.
+ */
+final class ElementMetadata {
+  private static final Map<Object, ElementMetadata> CACHE = new ConcurrentHashMap<>();
+
+  private static final ClassValue<EnumMetadata> ENUMS =
+      new ClassValue<>() {
+        @Override
+        protected EnumMetadata computeValue(Class<?> type) {
+          try {
+            return new EnumMetadata(type);
+          } catch (NoSuchFieldException | NoSuchMethodException | IllegalAccessException e) {
+            throw new IllegalArgumentException("Not an ASN.1 enum: " + type, e);
+          }
+        }
+      };
+
+  enum LengthEncoding {
+    /** Length determinant in the stream. */
+    UNCONSTRAINED,
+    /** Constrained number in the stream. */
+    VALUE_RANGE,
+    /** Fixed size, not part of the stream. */
+    SIZE,
+    /** Some other constraint, not part of the stream. */
+    OTHER
+  }
+
+  private final LengthEncoding lengthEncoding;
+  private final long min;
+  private final long max;
+  private final IASN1ConstraintMetadata[] constraints;
+  private final int stringTag;
+
+  private ElementMetadata(
+      LengthEncoding lengthEncoding,
+      long min,
+      long max,
+      IASN1ConstraintMetadata[] constraints,
+      int stringTag) {
+    this.lengthEncoding = lengthEncoding;
+    this.min = min;
+    this.max = max;
+    this.constraints = constraints;
+    this.stringTag = stringTag;
+  }
+
+  static EnumMetadata ofEnum(Class<?> type) {
+    return ENUMS.get(type);
+  }
+
+  static ElementMetadata of(ElementInfo elementInfo) {
+    if (elementInfo.hasPreparedInfo()) {
+      IASN1PreparedElementData preparedInfo = elementInfo.getPreparedInfo();
+      ElementMetadata metadata = CACHE.get(preparedInfo);
+      if (metadata == null) {
+        metadata = ofPreparedInfo(preparedInfo);
+        CACHE.putIfAbsent(preparedInfo, metadata);
+      }
+      return metadata;
+    }
+    if (elementInfo.getParentAnnotated() != null) {
+      // the string type can depend on the parent, don't cache it
+      return ofAnnotated(elementInfo.getAnnotatedClass(), elementInfo.getParentAnnotated());
+    }
+    AnnotatedElement annotated = elementInfo.getAnnotatedClass();
+    ElementMetadata metadata = CACHE.get(annotated);
+    if (metadata == null) {
+      metadata = ofAnnotated(annotated, null);
+      CACHE.putIfAbsent(annotated, metadata);
+    }
+    return metadata;
+  }
+
+  private static ElementMetadata ofPreparedInfo(IASN1PreparedElementData preparedInfo) {
+    int stringTag =
+        preparedInfo.getTypeMetadata() instanceof ASN1StringMetadata
+            ? ((ASN1StringMetadata) preparedInfo.getTypeMetadata()).getStringType()
+            : -1;
+    if (!preparedInfo.hasConstraint()) {
+      return new ElementMetadata(
+          LengthEncoding.UNCONSTRAINED, 0, 0, new IASN1ConstraintMetadata[0], stringTag);
+    }
+    IASN1ConstraintMetadata constraint = preparedInfo.getConstraint();
+    IASN1ConstraintMetadata[] constraints = {constraint};
+    if (constraint instanceof ASN1ValueRangeConstraintMetadata) {
+      return new ElementMetadata(
+          LengthEncoding.VALUE_RANGE,
+          ((ASN1ValueRangeConstraintMetadata) constraint).getMin(),
+          ((ASN1ValueRangeConstraintMetadata) constraint).getMax(),
+          constraints,
+          stringTag);
+    } else if (constraint instanceof ASN1SizeConstraintMetadata) {
+      return new ElementMetadata(
+          LengthEncoding.SIZE,
+          0,
+          ((ASN1SizeConstraintMetadata) constraint).getMax(),
+          constraints,
+          stringTag);
+    }
+    return new ElementMetadata(LengthEncoding.OTHER, 0, 0, constraints, stringTag);
+  }
+
+  private static ElementMetadata ofAnnotated(AnnotatedElement annotated, AnnotatedElement parent) {
+    int stringTag = 19;
+    if (annotated.isAnnotationPresent(ASN1String.class)) {
+      stringTag = annotated.getAnnotation(ASN1String.class).stringType();
+    } else if (parent != null && parent.isAnnotationPresent(ASN1String.class)) {
+      stringTag = parent.getAnnotation(ASN1String.class).stringType();
+    }
+    ASN1ValueRangeConstraint valueRange = annotated.getAnnotation(ASN1ValueRangeConstraint.class);
+    ASN1SizeConstraint size = annotated.getAnnotation(ASN1SizeConstraint.class);
+    // without prepared info binarynotes checks both constraints
+    List<IASN1ConstraintMetadata> constraints = new ArrayList<>(2);
+    if (valueRange != null) {
+      constraints.add(new ASN1ValueRangeConstraintMetadata(valueRange));
+    }
+    if (size != null) {
+      constraints.add(new ASN1SizeConstraintMetadata(size));
+    }
+    IASN1ConstraintMetadata[] constraintArray = constraints.toArray(new IASN1ConstraintMetadata[0]);
+    if (valueRange != null) {
+      return new ElementMetadata(
+          LengthEncoding.VALUE_RANGE,
+          valueRange.min(),
+          valueRange.max(),
+          constraintArray,
+          stringTag);
+    } else if (size != null) {
+      return new ElementMetadata(LengthEncoding.SIZE, 0, size.max(), constraintArray, stringTag);
+    }
+    return new ElementMetadata(LengthEncoding.UNCONSTRAINED, 0, 0, constraintArray, stringTag);
+  }
+
+  LengthEncoding getLengthEncoding() {
+    return lengthEncoding;
+  }
+
+  long getMin() {
+    return min;
+  }
+
+  long getMax() {
+    return max;
+  }
+
+  /** Same as {@link org.bn.coders.CoderUtils#getStringTagForElement(ElementInfo)}. */
+  int getStringTag() {
+    return stringTag;
+  }
+
+  /** Same as {@link org.bn.coders.CoderUtils#checkConstraints(long, ElementInfo)}. */
+  void checkConstraints(long value, ElementInfo elementInfo) throws Exception {
+    for (IASN1ConstraintMetadata constraint : constraints) {
+      if (!constraint.checkValue(value)) {
+        throw new Exception(
+            "Value of '" + elementInfo.getAnnotatedClass().toString() + "' out of bounds");
+      }
+    }
+  }
+
+  /**
+   * The items of an ASN.1 enum, in the order binarynotes uses for the index in the stream, and the
+   * accessors of its <code>value</code> field.
+   */
+  static final class EnumMetadata {
+    private final Object[] items;
+    private final Map<Object, Integer> indexes = new HashMap<>();
+    private final Method getter;
+    private final Method setter;
+
+    private EnumMetadata(Class<?> type)
+        throws NoSuchFieldException, NoSuchMethodException, IllegalAccessException {
+      Field valueField = type.getDeclaredField("value");
+      Class<?> enumClass =
+          Arrays.stream(type.getDeclaredClasses()).filter(Class::isEnum).findFirst().orElse(null);
+      List<Field> itemFields = new ArrayList<>();
+      if (enumClass != null) {
+        for (Field field : enumClass.getDeclaredFields()) {
+          if (field.isAnnotationPresent(ASN1EnumItem.class)) {
+            itemFields.add(field);
+          }
+        }
+      }
+      items = new Object[itemFields.size()];
+      for (int i = 0; i < items.length; i++) {
+        int tag = itemFields.get(i).getAnnotation(ASN1EnumItem.class).tag();
+        // binarynotes uses the first constant with the tag of the decoded index ...
+        for (Field field : itemFields) {
+          if (field.getAnnotation(ASN1EnumItem.class).tag() == tag) {
+            items[i] = field.get(null);
+            break;
+          }
+        }
+        // ... and the last index with the tag of the encoded constant
+        for (int j = 0; j < itemFields.size(); j++) {
+          if (itemFields.get(j).getAnnotation(ASN1EnumItem.class).tag() == tag) {
+            indexes.put(itemFields.get(i).get(null), j);
+          }
+        }
+      }
+      getter = CoderUtils.findGetterMethodForField(valueField, type);
+      setter = CoderUtils.findSetterMethodForField(valueField, type, valueField.getType());
+    }
+
+    int size() {
+      return items.length;
+    }
+
+    Object getValue(Object object) throws ReflectiveOperationException {
+      return getter.invoke(object);
+    }
+
+    void setValue(Object object, Object value) throws ReflectiveOperationException {
+      setter.invoke(object, value);
+    }
+
+    /**
+     * @return the index of the enum constant in the stream
+     */
+    int indexOf(Object item) {
+      Integer index = indexes.get(item);
+      if (index == null) {
+        throw new IllegalArgumentException("Unknown enum item: " + item);
+      }
+      return index;
+    }
+
+    /**
+     * @return the enum constant for the index in the stream
+     */
+    Object itemAt(int index) {
+      if (index < 0 || index >= items.length) {
+        throw new IllegalArgumentException("Invalid enum index: " + index);
+      }
+      return items[index];
+    }
+  }
+}
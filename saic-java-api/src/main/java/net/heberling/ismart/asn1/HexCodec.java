@@ -0,0 +1,193 @@
+package net.heberling.ismart.asn1;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Converts between bytes and their upper case hex representation, as used for all messages of the
+ * SAIC API. Decoding accepts upper and lower case digits and throws an {@link
+ * IllegalArgumentException} for any other character.
+ *
+ * <p>The implementation is selected with the system property <code>ismart.hexCodec</code>, <code>
+ * swar</code> (the default) or <code>lookup</code>.
+ */
+abstract class HexCodec {
+  private static final char[] HEX_ARRAY = "0123456789ABCDEF".toCharArray();
+
+  private static final byte[] HEX_DIGITS = new byte[128];
+
+  static {
+    Arrays.fill(HEX_DIGITS, (byte) -1);
+    for (int i = 0; i < 10; i++) {
+      HEX_DIGITS['0' + i] = (byte) i;
+    }
+    for (int i = 0; i < 6; i++) {
+      HEX_DIGITS['A' + i] = (byte) (10 + i);
+      HEX_DIGITS['a' + i] = (byte) (10 + i);
+    }
+  }
+
+  /** One table lookup per character. */
+  static final HexCodec LOOKUP = new LookupHexCodec();
+
+  /** Eight ASCII characters at once in a <code>long</code>, SIMD within a register. */
+  static final HexCodec SWAR = new SwarHexCodec();
+
+  static final HexCodec DEFAULT = of(System.getProperty("ismart.hexCodec", "swar"));
+
+  static HexCodec of(String name) {
+    switch (name) {
+      case "lookup":
+        return LOOKUP;
+      case "swar":
+        return SWAR;
+      default:
+        throw new IllegalArgumentException("Unknown hex codec: " + name);
+    }
+  }
+
+  /** Writes two characters for each of the bytes. */
+  abstract void encode(byte[] bytes, int offset, int length, char[] target, int index);
+
+  /** Writes two ASCII characters for each of the bytes. */
+  abstract void encode(byte[] bytes, int offset, int length, byte[] target, int index);
+
+  /** Reads two characters for each of the bytes. */
+  abstract void decode(CharSequence hex, int index, byte[] target, int offset, int length);
+
+  /** Reads two ASCII characters for each of the bytes. */
+  abstract void decode(byte[] hex, int index, byte[] target, int offset, int length);
+
+  static int value(int c) {
+    int value = c >= 0 && c < HEX_DIGITS.length ? HEX_DIGITS[c] : -1;
+    if (value < 0) {
+      throw new IllegalArgumentException("Invalid hex character: " + (char) c);
+    }
+    return value;
+  }
+
+  private static final class LookupHexCodec extends HexCodec {
+    @Override
+    void encode(byte[] bytes, int offset, int length, char[] target, int index) {
+      for (int i = offset; i < offset + length; i++) {
+        int v = bytes[i] & 0xFF;
+        target[index++] = HEX_ARRAY[v >>> 4];
+        target[index++] = HEX_ARRAY[v & 0x0F];
+      }
+    }
+
+    @Override
+    void encode(byte[] bytes, int offset, int length, byte[] target, int index) {
+      for (int i = offset; i < offset + length; i++) {
+        int v = bytes[i] & 0xFF;
+        target[index++] = (byte) HEX_ARRAY[v >>> 4];
+        target[index++] = (byte) HEX_ARRAY[v & 0x0F];
+      }
+    }
+
+    @Override
+    void decode(CharSequence hex, int index, byte[] target, int offset, int length) {
+      for (int i = offset; i < offset + length; i++) {
+        target[i] = (byte) (value(hex.charAt(index)) << 4 | value(hex.charAt(index + 1)));
+        index += 2;
+      }
+    }
+
+    @Override
+    void decode(byte[] hex, int index, byte[] target, int offset, int length) {
+      for (int i = offset; i < offset + length; i++) {
+        target[i] = (byte) (value(hex[index] & 0xFF) << 4 | value(hex[index + 1] & 0xFF));
+        index += 2;
+      }
+    }
+  }
+
+  /**
+   * Converts four bytes to eight ASCII characters and back with arithmetic on a <code>long</code>.
+   * Blocks with invalid characters and the remaining bytes are handled by {@link #LOOKUP}. So are
+   * <code>char</code> sources and targets, as moving characters one by one between them and a
+   * register is slower than the table lookups.
+   */
+  private static final class SwarHexCodec extends HexCodec {
+    private static final VarHandle LONGS =
+        MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+    private static final VarHandle INTS =
+        MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+
+    private static final long ONES = 0x0101010101010101L;
+    private static final long HIGH_BITS = 0x8080808080808080L;
+    private static final long LOW_NIBBLES = 0x0F0F0F0F0F0F0F0FL;
+
+    @Override
+    void encode(byte[] bytes, int offset, int length, char[] target, int index) {
+      LOOKUP.encode(bytes, offset, length, target, index);
+    }
+
+    @Override
+    void encode(byte[] bytes, int offset, int length, byte[] target, int index) {
+      int end = offset + (length & ~3);
+      for (; offset < end; offset += 4, index += 8) {
+        LONGS.set(target, index, toChars((int) INTS.get(bytes, offset)));
+      }
+      LOOKUP.encode(bytes, offset, length & 3, target, index);
+    }
+
+    @Override
+    void decode(CharSequence hex, int index, byte[] target, int offset, int length) {
+      LOOKUP.decode(hex, index, target, offset, length);
+    }
+
+    @Override
+    void decode(byte[] hex, int index, byte[] target, int offset, int length) {
+      int end = offset + (length & ~3);
+      for (; offset < end; offset += 4, index += 8) {
+        long bytes = toBytes((long) LONGS.get(hex, index));
+        if (bytes < 0) {
+          LOOKUP.decode(hex, index, target, offset, 4);
+        } else {
+          INTS.set(target, offset, (int) bytes);
+        }
+      }
+      LOOKUP.decode(hex, index, target, offset, length & 3);
+    }
+
+    /** Returns eight upper case hex characters for the four bytes. */
+    private static long toChars(int bytes) {
+      // one nibble per byte, the high nibble of each byte first
+      long nibbles = bytes & 0xFFFFFFFFL;
+      nibbles = (nibbles << 16 | nibbles) & 0x0000FFFF0000FFFFL;
+      nibbles = (nibbles << 8 | nibbles) & 0x00FF00FF00FF00FFL;
+      nibbles = (nibbles << 4 | nibbles) & LOW_NIBBLES;
+      // nibbles above 9 get a carry into bit 4, they need another 7 to get from ':' to 'A'
+      long letters = (nibbles + 6 * ONES) >>> 4 & ONES;
+      return nibbles + '0' * ONES + letters * 7;
+    }
+
+    /** Returns the four bytes of eight hex characters, or -1 if any of them is not a hex digit. */
+    private static long toBytes(long chars) {
+      if ((chars & HIGH_BITS) != 0) {
+        return -1;
+      }
+      long digits = between(chars, '0', '9');
+      long letters = between(chars | 0x20 * ONES, 'a', 'f');
+      if ((digits | letters) != HIGH_BITS) {
+        return -1;
+      }
+      long nibbles = (chars & LOW_NIBBLES) + (letters >>> 7) * 9;
+      long bytes = (nibbles >>> 4 | nibbles) & 0x00FF00FF00FF00FFL;
+      bytes = (bytes >>> 8 | bytes) & 0x0000FFFF0000FFFFL;
+      return (bytes >>> 16 | bytes) & 0xFFFFFFFFL;
+    }
+
+    /**
+     * Sets the high bit of each byte between the low and high character, all bytes must be below
+     * 0x80.
+     */
+    private static long between(long chars, int low, int high) {
+      return (chars + (0x80 - low) * ONES) & ~(chars + (0x7F - high) * ONES) & HIGH_BITS;
+    }
+  }
+}
@@ -0,0 +1,507 @@
+package net.heberling.ismart.asn1;
+
+import com.owlike.genson.stream.JsonReader;
+import com.owlike.genson.stream.JsonStreamException;
+import com.owlike.genson.stream.JsonWriter;
+import com.owlike.genson.stream.ObjectReader;
+import com.owlike.genson.stream.ObjectWriter;
+import com.owlike.genson.stream.ValueType;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.VarHandle;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.bn.annotations.ASN1Element;
+import org.bn.annotations.ASN1Enum;
+import org.bn.annotations.ASN1EnumItem;
+import org.bn.annotations.ASN1Sequence;
+import org.bn.coders.IASN1PreparedElement;
+
+/**
+ * Encodes and decodes the ASN.1 elements and messages with the JSON encoding rules (JER, X.697).
+ *
+ * <p>Sequences are objects with the ASN.1 identifiers as member names, absent optional members are
+ * omitted. Sequence ofs are arrays, integers are numbers, booleans are <code>true</code> or <code>
+ * false</code>, character strings are strings, octet strings are hex strings and enums are the
+ * identifier of their item. Constraints are not checked, they are checked when the element is
+ * encoded with PER. The fields of each element class are looked up once and cached as a plan.
+ *
+ * <p>A message is an object with the members <code>header</code>, <code>reserved</code> for the
+ * protocol versions that have reserved bytes, <code>body</code> and, if the message has application
+ * data, <code>applicationData</code>.
+ */
+public final class JerCodec {
+  private static final ClassValue<TypePlan> PLANS =
+      new ClassValue<>() {
+        @Override
+        protected TypePlan computeValue(Class<?> type) {
+          if (type.isAnnotationPresent(ASN1Enum.class)) {
+            return new EnumPlan(type);
+          } else if (type.isAnnotationPresent(ASN1Sequence.class)) {
+            return new SequencePlan(type);
+          }
+          throw new IllegalArgumentException("Not an ASN.1 sequence or enum: " + type);
+        }
+      };
+
+  private JerCodec() {}
+
+  public static String encode(IASN1PreparedElement element) {
+    StringWriter writer = new StringWriter();
+    write(element, writer);
+    return writer.toString();
+  }
+
+  /** Writes the element to the writer, which is flushed, but not closed. */
+  public static void write(IASN1PreparedElement element, Writer writer) {
+    ObjectWriter objectWriter = new JsonWriter(writer);
+    PLANS.get(element.getClass()).write(element, objectWriter);
+    objectWriter.flush();
+  }
+
+  /**
+   * @throws IllegalArgumentException if the JSON is malformed or doesn't match the type
+   */
+  public static <T extends IASN1PreparedElement> T decode(CharSequence json, Class<T> type) {
+    return read(new StringReader(json.toString()), type);
+  }
+
+  /**
+   * Reads an element from the reader, which is not closed.
+   *
+   * @throws IllegalArgumentException if the JSON is malformed or doesn't match the type
+   */
+  public static <T extends IASN1PreparedElement> T read(Reader reader, Class<T> type) {
+    try {
+      return type.cast(PLANS.get(type).read(newReader(reader)));
+    } catch (JsonStreamException e) {
+      throw new IllegalArgumentException("Invalid JSON for " + type, e);
+    }
+  }
+
+  public static String encodeMessage(AbstractMessage<?, ?, ?> message) {
+    StringWriter writer = new StringWriter();
+    writeMessage(message, writer);
+    return writer.toString();
+  }
+
+  /** Writes the message to the writer, which is flushed, but not closed. */
+  public static void writeMessage(AbstractMessage<?, ?, ?> message, Writer writer) {
+    ObjectWriter objectWriter = new JsonWriter(writer);
+    objectWriter.beginObject();
+    objectWriter.writeName("header");
+    PLANS.get(message.getHeader().getClass()).write(message.getHeader(), objectWriter);
+    byte[] reserved = message.reservedBytes();
+    if (reserved != null) {
+      objectWriter.writeName("reserved");
+      objectWriter.writeString(AbstractMessageCoder.bytesToHex(reserved));
+    }
+    objectWriter.writeName("body");
+    PLANS.get(message.getBody().getClass()).write(message.getBody(), objectWriter);
+    if (message.getApplicationData() != null) {
+      objectWriter.writeName("applicationData");
+      PLANS
+          .get(message.getApplicationData().getClass())
+          .write(message.getApplicationData(), objectWriter);
+    }
+    objectWriter.endObject();
+    objectWriter.flush();
+  }
+
+  /**
+   * @throws IllegalArgumentException if the JSON is malformed or doesn't match the message types of
+   *     the coder
+   */
+  public static <
+          H extends IASN1PreparedElement,
+          B extends IASN1PreparedElement,
+          E extends IASN1PreparedElement,
+          M extends AbstractMessage<H, B, E>>
+      M decodeMessage(CharSequence json, AbstractMessageCoder<H, B, E, M> coder) {
+    return readMessage(new StringReader(json.toString()), coder);
+  }
+
+  /**
+   * Reads a message from the reader, which is not closed.
+   *
+   * @throws IllegalArgumentException if the JSON is malformed or doesn't match the message types of
+   *     the coder
+   */
+  public static <
+          H extends IASN1PreparedElement,
+          B extends IASN1PreparedElement,
+          E extends IASN1PreparedElement,
+          M extends AbstractMessage<H, B, E>>
+      M readMessage(Reader reader, AbstractMessageCoder<H, B, E, M> coder) {
+    H header = null;
+    byte[] reserved = null;
+    B body = null;
+    E applicationData = null;
+    try {
+      ObjectReader objectReader = newReader(reader);
+      expect(objectReader, ValueType.OBJECT, "message");
+      objectReader.beginObject();
+      while (objectReader.hasNext()) {
+        objectReader.next();
+        String name = objectReader.name();
+        switch (name) {
+          case "header":
+            header = readPart(objectReader, coder.getHeaderClass(), name);
+            break;
+          case "reserved":
+            expect(objectReader, ValueType.STRING, name);
+            reserved = hexToBytes(objectReader.valueAsString(), name);
+            break;
+          case "body":
+            body = readPart(objectReader, coder.getBodyClass(), name);
+            break;
+          case "applicationData":
+            applicationData = readPart(objectReader, coder.getApplicationDataClass(), name);
+            break;
+          default:
+            throw new IllegalArgumentException("Unknown member of message: " + name);
+        }
+      }
+      objectReader.endObject();
+    } catch (JsonStreamException e) {
+      throw new IllegalArgumentException("Invalid JSON for a message", e);
+    }
+    if (header == null || body == null) {
+      throw new IllegalArgumentException("A message needs a header and a body");
+    }
+    return coder.createMessage(header, reserved, body, applicationData);
+  }
+
+  private static <T> T readPart(ObjectReader reader, Class<T> type, String name) {
+    if (type == null || !type.isAnnotationPresent(ASN1Sequence.class)) {
+      throw new IllegalArgumentException("Can't decode " + name + " as " + type);
+    }
+    return type.cast(PLANS.get(type).read(reader));
+  }
+
+  private static ObjectReader newReader(Reader reader) {
+    return new JsonReader(reader, false, false);
+  }
+
+  private static void expect(ObjectReader reader, ValueType expected, String name) {
+    if (reader.getValueType() != expected) {
+      throw new IllegalArgumentException(
+          "Expected " + expected + " for " + name + ", got " + reader.getValueType());
+    }
+  }
+
+  private static byte[] hexToBytes(String hex, String name) {
+    if (hex.length() % 2 != 0) {
+      throw new IllegalArgumentException("Odd number of hex digits for " + name);
+    }
+    return AbstractMessageCoder.hexStringToByteArray(hex);
+  }
+
+  private enum Kind {
+    BOOLEAN,
+    INTEGER,
+    LONG,
+    STRING,
+    OCTET_STRING,
+    ELEMENT;
+
+    private static Kind of(Class<?> type) {
+      if (Boolean.class.equals(type)) {
+        return BOOLEAN;
+      } else if (Integer.class.equals(type)) {
+        return INTEGER;
+      } else if (Long.class.equals(type)) {
+        return LONG;
+      } else if (String.class.equals(type)) {
+        return STRING;
+      } else if (byte[].class.equals(type)) {
+        return OCTET_STRING;
+      } else if (type.isAnnotationPresent(ASN1Enum.class)
+          || type.isAnnotationPresent(ASN1Sequence.class)) {
+        return ELEMENT;
+      }
+      return null;
+    }
+
+    private void write(Object value, ObjectWriter writer) {
+      switch (this) {
+        case BOOLEAN:
+          writer.writeValue((boolean) (Boolean) value);
+          break;
+        case INTEGER:
+        case LONG:
+          writer.writeValue(((Number) value).longValue());
+          break;
+        case STRING:
+          writer.writeString((String) value);
+          break;
+        case OCTET_STRING:
+          writer.writeString(AbstractMessageCoder.bytesToHex((byte[]) value));
+          break;
+        default:
+          PLANS.get(value.getClass()).write(value, writer);
+          break;
+      }
+    }
+
+    private Object read(ObjectReader reader, Class<?> type, String name) {
+      switch (this) {
+        case BOOLEAN:
+          expect(reader, ValueType.BOOLEAN, name);
+          return reader.valueAsBoolean();
+        case INTEGER:
+          expect(reader, ValueType.INTEGER, name);
+          long value = reader.valueAsLong();
+          if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Value of " + name + " out of range: " + value);
+          }
+          return (int) value;
+        case LONG:
+          expect(reader, ValueType.INTEGER, name);
+          return reader.valueAsLong();
+        case STRING:
+          expect(reader, ValueType.STRING, name);
+          return reader.valueAsString();
+        case OCTET_STRING:
+          expect(reader, ValueType.STRING, name);
+          return hexToBytes(reader.valueAsString(), name);
+        default:
+          return PLANS.get(type).read(reader);
+      }
+    }
+  }
+
+  private abstract static class TypePlan {
+    final Class<?> type;
+
+    TypePlan(Class<?> type) {
+      this.type = type;
+    }
+
+    abstract void write(Object element, ObjectWriter writer);
+
+    abstract Object read(ObjectReader reader);
+
+    static MethodHandles.Lookup lookup(Class<?> type) {
+      try {
+        return MethodHandles.privateLookupIn(type, MethodHandles.lookup());
+      } catch (IllegalAccessException e) {
+        throw new IllegalStateException("Can't access " + type, e);
+      }
+    }
+
+    Object newInstance(MethodHandle constructor) {
+      try {
+        return constructor.invoke();
+      } catch (Throwable e) {
+        throw new IllegalStateException("Can't create " + type, e);
+      }
+    }
+  }
+
+  /** An enum is written as the identifier of its item. */
+  private static final class EnumPlan extends TypePlan {
+    private final MethodHandle constructor;
+    private final VarHandle value;
+    private final Map<String, Object> items = new HashMap<>();
+
+    private EnumPlan(Class<?> type) {
+      super(type);
+      constructor = constructor(type);
+      value = valueHandle(type);
+      try {
+        for (Field field : value.varType().getDeclaredFields()) {
+          if (field.isAnnotationPresent(ASN1EnumItem.class)) {
+            items.put(field.getName(), field.get(null));
+          }
+        }
+      } catch (IllegalAccessException e) {
+        throw new IllegalStateException("Can't access the items of " + type, e);
+      }
+    }
+
+    private static VarHandle valueHandle(Class<?> type) {
+      try {
+        Field field = type.getDeclaredField("value");
+        if (!field.getType().isEnum()) {
+          throw new IllegalArgumentException("Not an ASN.1 enum: " + type);
+        }
+        return lookup(type).unreflectVarHandle(field);
+      } catch (NoSuchFieldException | IllegalAccessException e) {
+        throw new IllegalArgumentException("Not an ASN.1 enum: " + type, e);
+      }
+    }
+
+    @Override
+    void write(Object element, ObjectWriter writer) {
+      Object item = value.get(element);
+      if (item == null) {
+        throw new IllegalArgumentException("No value for " + type);
+      }
+      writer.writeString(((Enum<?>) item).name());
+    }
+
+    @Override
+    Object read(ObjectReader reader) {
+      expect(reader, ValueType.STRING, type.getSimpleName());
+      String name = reader.valueAsString();
+      Object item = items.get(name);
+      if (item == null) {
+        throw new IllegalArgumentException("Unknown item of " + type + ": " + name);
+      }
+      Object element = newInstance(constructor);
+      value.set(element, item);
+      return element;
+    }
+  }
+
+  /** A sequence is written as an object with a member for each present element. */
+  private static final class SequencePlan extends TypePlan {
+    private final MethodHandle constructor;
+    private final Member[] members;
+    private final Map<String, Member> membersByName = new HashMap<>();
+
+    private SequencePlan(Class<?> type) {
+      super(type);
+      constructor = constructor(type);
+      MethodHandles.Lookup lookup = lookup(type);
+      List<Member> members = new ArrayList<>();
+      for (Field field : type.getDeclaredFields()) {
+        ASN1Element info = field.getAnnotation(ASN1Element.class);
+        if (info == null || Modifier.isStatic(field.getModifiers()) || field.isSynthetic()) {
+          continue;
+        }
+        Member member = new Member(lookup, field, info);
+        members.add(member);
+        membersByName.put(member.name, member);
+      }
+      this.members = members.toArray(new Member[0]);
+    }
+
+    @Override
+    void write(Object element, ObjectWriter writer) {
+      writer.beginObject();
+      for (Member member : members) {
+        Object value = member.handle.get(element);
+        if (value == null) {
+          if (!member.optional) {
+            throw new IllegalArgumentException(
+                "Missing mandatory element " + member.name + " of " + type);
+          }
+          continue;
+        }
+        writer.writeName(member.name);
+        if (member.itemType == null) {
+          member.kind.write(value, writer);
+        } else {
+          writer.beginArray();
+          for (Object item : (Collection<?>) value) {
+            member.kind.write(item, writer);
+          }
+          writer.endArray();
+        }
+      }
+      writer.endObject();
+    }
+
+    @Override
+    Object read(ObjectReader reader) {
+      expect(reader, ValueType.OBJECT, type.getSimpleName());
+      Object element = newInstance(constructor);
+      reader.beginObject();
+      while (reader.hasNext()) {
+        reader.next();
+        String name = reader.name();
+        Member member = membersByName.get(name);
+        if (member == null) {
+          throw new IllegalArgumentException("Unknown element of " + type + ": " + name);
+        }
+        if (member.itemType == null) {
+          member.handle.set(element, member.kind.read(reader, member.type, name));
+        } else {
+          expect(reader, ValueType.ARRAY, name);
+          List<Object> items = new ArrayList<>();
+          reader.beginArray();
+          while (reader.hasNext()) {
+            reader.next();
+            items.add(member.kind.read(reader, member.itemType, name));
+          }
+          reader.endArray();
+          member.handle.set(element, items);
+        }
+      }
+      reader.endObject();
+      for (Member member : members) {
+        if (!member.optional && member.handle.get(element) == null) {
+          throw new IllegalArgumentException(
+              "Missing mandatory element " + member.name + " of " + type);
+        }
+      }
+      return element;
+    }
+  }
+
+  /** An element of a sequence. */
+  private static final class Member {
+    private final String name;
+    private final VarHandle handle;
+    private final Class<?> type;
+
+    /** The type of the items of a sequence of, otherwise <code>null</code>. */
+    private final Class<?> itemType;
+
+    private final Kind kind;
+
+    /** Elements with a default value may be omitted like optional ones. */
+    private final boolean optional;
+
+    private Member(MethodHandles.Lookup lookup, Field field, ASN1Element info) {
+      this.name = info.name();
+      this.type = field.getType();
+      this.optional = info.isOptional() || info.hasDefaultValue();
+      try {
+        this.handle = lookup.unreflectVarHandle(field);
+      } catch (IllegalAccessException e) {
+        throw new IllegalStateException("Can't access " + field, e);
+      }
+      Class<?> itemType = null;
+      if (Collection.class.isAssignableFrom(type)) {
+        Type genericType = field.getGenericType();
+        if (genericType instanceof ParameterizedType) {
+          Type argument = ((ParameterizedType) genericType).getActualTypeArguments()[0];
+          if (argument instanceof Class) {
+            itemType = (Class<?>) argument;
+          }
+        }
+        if (itemType == null) {
+          throw new IllegalArgumentException("Unknown item type of " + field);
+        }
+      }
+      this.itemType = itemType;
+      this.kind = Kind.of(itemType == null ? type : itemType);
+      if (kind == null) {
+        throw new IllegalArgumentException("Unsupported type of " + field);
+      }
+    }
+  }
+
+  private static MethodHandle constructor(Class<?> type) {
+    try {
+      return TypePlan.lookup(type).findConstructor(type, MethodType.methodType(void.class));
+    } catch (NoSuchMethodException | IllegalAccessException e) {
+      throw new IllegalArgumentException(type + " has no default constructor", e);
+    }
+  }
+}
@@ -0,0 +1,235 @@
+package net.heberling.ismart.asn1;
+
+import com.owlike.genson.Context;
+import com.owlike.genson.Converter;
+import com.owlike.genson.Genson;
+import com.owlike.genson.GensonBuilder;
+import com.owlike.genson.convert.ChainedFactory;
+import com.owlike.genson.reflect.TypeUtil;
+import com.owlike.genson.stream.ObjectReader;
+import com.owlike.genson.stream.ObjectWriter;
+import com.owlike.genson.stream.ValueType;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Method;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import java.util.function.Consumer;
+import org.bn.annotations.ASN1Enum;
+import org.bn.annotations.ASN1Sequence;
+
+/**
+ * Serializes messages, their ASN.1 elements and any other objects to JSON.
+ *
+ * <p>ASN.1 enums are written as their value and sequences and enums get their ASN.1 type as
+ * {@code @ASN1Type} metadata. Byte arrays, that are really UTF-8 strings, are written a second time
+ * as text. The converters are resolved once per type and instances are thread safe, so they should
+ * be shared.
+ *
+ * <p>This is meant for humans and can't be decoded again, {@link JerCodec} encodes and decodes the
+ * ASN.1 elements and messages in the standard JSON format.
+ */
+public final class JsonSerializer {
+  private static final int MAX_RETAINED_BUFFER_SIZE = 64 * 1024;
+
+  private static final JsonSerializer COMPACT = new JsonSerializer(false, builder -> {});
+
+  private static final JsonSerializer INDENTED = new JsonSerializer(true, builder -> {});
+
+  private static final ClassValue<Optional<String>> ASN1_TYPES =
+      new ClassValue<>() {
+        @Override
+        protected Optional<String> computeValue(Class<?> type) {
+          if (type.isAnnotationPresent(ASN1Enum.class)) {
+            return Optional.of(type.getAnnotation(ASN1Enum.class).name());
+          } else if (type.isAnnotationPresent(ASN1Sequence.class)) {
+            return Optional.of(type.getAnnotation(ASN1Sequence.class).name());
+          }
+          return Optional.empty();
+        }
+      };
+
+  private static final ThreadLocal<JsonOutputStream> BUFFERS =
+      ThreadLocal.withInitial(JsonOutputStream::new);
+
+  private final Genson genson;
+
+  /**
+   * @param indentation whether objects and arrays are written on multiple, indented lines
+   * @param configuration additional configuration, like bundles for further types
+   */
+  public JsonSerializer(boolean indentation, Consumer<GensonBuilder> configuration) {
+    ChainedFactory chain = new MetadataFactory();
+    chain.withNext(new EnumFactory());
+    GensonBuilder builder =
+        new GensonBuilder()
+            .useIndentation(indentation)
+            .useRuntimeType(true)
+            .exclude("preparedData")
+            .withConverterFactory(chain);
+    configuration.accept(builder);
+    this.genson = builder.create();
+  }
+
+  /** Returns the shared serializer, that writes everything on a single line. */
+  public static JsonSerializer compact() {
+    return COMPACT;
+  }
+
+  /** Returns the shared serializer, that writes indented JSON. */
+  public static JsonSerializer indented() {
+    return INDENTED;
+  }
+
+  public String toJSON(Object object) {
+    try (JsonOutputStream buffer = JsonOutputStream.acquire()) {
+      writeJSON(object, buffer);
+      return buffer.toString(StandardCharsets.UTF_8);
+    }
+  }
+
+  /** Returns the UTF-8 encoded JSON. */
+  public byte[] toJSONBytes(Object object) {
+    try (JsonOutputStream buffer = JsonOutputStream.acquire()) {
+      writeJSON(object, buffer);
+      return buffer.toByteArray();
+    }
+  }
+
+  /** Writes the UTF-8 encoded JSON to the stream, which is flushed, but not closed. */
+  public void writeJSON(Object object, OutputStream outputStream) {
+    ObjectWriter writer = genson.createWriter(outputStream);
+    if (object == null) {
+      writer.writeNull();
+    } else {
+      genson.serialize(object, writer, new Context(genson));
+    }
+    writer.flush();
+  }
+
+  /** Adds the ASN.1 type as metadata and the text of UTF-8 encoded byte arrays. */
+  private static class MetadataFactory extends ChainedFactory {
+    @Override
+    protected Converter<?> create(Type type, Genson genson, Converter<?> nextConverter) {
+      @SuppressWarnings("unchecked")
+      Converter<Object> next = (Converter<Object>) nextConverter;
+      return new Converter<>() {
+        @Override
+        public void serialize(Object object, ObjectWriter writer, Context ctx) throws Exception {
+          if (object != null) {
+            writer.beginNextObjectMetadata();
+            Optional<String> asn1Type = ASN1_TYPES.get(object.getClass());
+            if (asn1Type.isPresent()) {
+              writer.writeMetadata("ASN1Type", asn1Type.get());
+            }
+          }
+
+          if (!(writer instanceof UTF8StringObjectWriter)) {
+            writer = new UTF8StringObjectWriter(writer);
+          }
+          next.serialize(object, writer, ctx);
+        }
+
+        @Override
+        public Object deserialize(ObjectReader reader, Context ctx) throws Exception {
+          return next.deserialize(reader, ctx);
+        }
+      };
+    }
+  }
+
+  /** Reads and writes ASN.1 enums as their value. */
+  private static class EnumFactory extends ChainedFactory {
+    @Override
+    protected Converter<?> create(Type type, Genson genson, Converter<?> converter) {
+      final Class<?> clazz = TypeUtil.getRawClass(type);
+      if (!clazz.isAnnotationPresent(ASN1Enum.class)) {
+        return converter;
+      }
+      MethodHandle constructor;
+      MethodHandle getValue;
+      MethodHandle setValue;
+      Class<? extends Enum> valueType;
+      try {
+        Method getter = clazz.getMethod("getValue");
+        valueType = getter.getReturnType().asSubclass(Enum.class);
+        constructor = MethodHandles.publicLookup().unreflectConstructor(clazz.getConstructor());
+        getValue = MethodHandles.publicLookup().unreflect(getter);
+        setValue = MethodHandles.publicLookup().unreflect(clazz.getMethod("setValue", valueType));
+      } catch (NoSuchMethodException | IllegalAccessException | ClassCastException e) {
+        throw new IllegalStateException("Can't access the value of " + clazz, e);
+      }
+      return new Converter<>() {
+        @Override
+        public void serialize(Object o, ObjectWriter objectWriter, Context context)
+            throws Exception {
+          Object value;
+          try {
+            value = getValue.invoke(o);
+          } catch (Throwable e) {
+            throw new IllegalStateException("Can't get the value of " + o, e);
+          }
+          if (value == null) {
+            objectWriter.writeNull();
+          } else {
+            objectWriter.writeString(String.valueOf(value));
+          }
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Object deserialize(ObjectReader objectReader, Context context) {
+          if (objectReader.getValueType() == ValueType.NULL) {
+            return null;
+          }
+          String name = objectReader.valueAsString();
+          Object value;
+          try {
+            value = Enum.valueOf(valueType, name);
+          } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(
+                "Unknown value '" + name + "' of the ASN.1 enum " + clazz.getName(), e);
+          }
+          try {
+            Object o = constructor.invoke();
+            setValue.invoke(o, value);
+            return o;
+          } catch (Throwable e) {
+            throw new IllegalStateException("Can't set the value of " + clazz, e);
+          }
+        }
+      };
+    }
+  }
+
+  /** UTF-8 encoded JSON, reused per thread. */
+  private static final class JsonOutputStream extends ByteArrayOutputStream
+      implements AutoCloseable {
+    private boolean inUse;
+
+    private JsonOutputStream() {
+      super(1024);
+    }
+
+    private static JsonOutputStream acquire() {
+      JsonOutputStream stream = BUFFERS.get();
+      if (stream.inUse) {
+        stream = new JsonOutputStream();
+      }
+      stream.inUse = true;
+      stream.reset();
+      return stream;
+    }
+
+    @Override
+    public void close() {
+      inUse = false;
+      if (buf.length > MAX_RETAINED_BUFFER_SIZE) {
+        BUFFERS.remove();
+      }
+    }
+  }
+}
@@ -0,0 +1,255 @@
+package net.heberling.ismart.asn1;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import org.bn.coders.IASN1PreparedElement;
+
+/**
+ * Decodes messages without knowing their protocol version and application data class up front. The
+ * protocol version is detected from the first header byte, the application data class is looked up
+ * by the application id and application data protocol version of the dispatcher body.
+ *
+ * <p>Application data of unknown messages is not decoded.
+ */
+public final class MessageCoderRegistry {
+
+  private static final Version V1_1 =
+      new Version(
+          new net.heberling.ismart.asn1.v1_1.MessageCoder<>(null),
+          net.heberling.ismart.asn1.v1_1.MessageCoder::of);
+
+  private static final Version V2_1 =
+      new Version(
+          new net.heberling.ismart.asn1.v2_1.MessageCoder<>(null),
+          net.heberling.ismart.asn1.v2_1.MessageCoder::of);
+
+  private static final Version V3_0 =
+      new Version(
+          new net.heberling.ismart.asn1.v3_0.MessageCoder<>(null),
+          net.heberling.ismart.asn1.v3_0.MessageCoder::of);
+
+  /** Indexed by the upper 4 bits of the protocol version in the dispatcher header. */
+  private static final Version[] VERSIONS = new Version[16];
+
+  static {
+    VERSIONS[1] = V1_1;
+    VERSIONS[2] = V2_1;
+    VERSIONS[3] = V3_0;
+
+    V1_1.register(
+        "5D6",
+        513,
+        IASN1PreparedElement.class,
+        net.heberling.ismart.asn1.v1_1.entity.MPAppAttributeResp.class);
+    V1_1.register(
+        "5D5",
+        513,
+        net.heberling.ismart.asn1.v1_1.entity.APPUpgradeInfoReq.class,
+        net.heberling.ismart.asn1.v1_1.entity.APPUpgradeInfoResp.class);
+    V1_1.register(
+        "5D7",
+        513,
+        IASN1PreparedElement.class,
+        net.heberling.ismart.asn1.v1_1.entity.AdvertiseResp.class);
+    V1_1.register(
+        "501",
+        513,
+        net.heberling.ismart.asn1.v1_1.entity.MP_UserLoggingInReq.class,
+        net.heberling.ismart.asn1.v1_1.entity.MP_UserLoggingInResp.class);
+    V1_1.register(
+        "531",
+        513,
+        net.heberling.ismart.asn1.v1_1.entity.MessageListReq.class,
+        net.heberling.ismart.asn1.v1_1.entity.MessageListResp.class);
+    V1_1.register(
+        "533",
+        513,
+        IASN1PreparedElement.class,
+        net.heberling.ismart.asn1.v1_1.entity.GetUnreadMessageCountResp.class);
+    V1_1.register(
+        "535",
+        513,
+        net.heberling.ismart.asn1.v1_1.entity.SetNotificationCountReq.class,
+        IASN1PreparedElement.class);
+    V1_1.register(
+        "506",
+        513,
+        IASN1PreparedElement.class,
+        net.heberling.ismart.asn1.v1_1.entity.MPUserInfoResp.class);
+    V1_1.register(
+        "521",
+        513,
+        net.heberling.ismart.asn1.v1_1.entity.AlarmSwitchReq.class,
+        IASN1PreparedElement.class);
+    V1_1.register(
+        "615",
+        513,
+        net.heberling.ismart.asn1.v1_1.entity.AbortSendMessageReq.class,
+        IASN1PreparedElement.class);
+    V1_1.register(
+        "313",
+        513,
+        net.heberling.ismart.asn1.v1_1.entity.PINVerificationReq.class,
+        IASN1PreparedElement.class);
+
+    V2_1.register(
+        "5BD",
+        25857,
+        IASN1PreparedElement.class,
+        net.heberling.ismart.asn1.v2_1.entity.MP_SecurityAlarmResp.class);
+    V2_1.register(
+        "511",
+        25857,
+        net.heberling.ismart.asn1.v2_1.entity.OTA_RVMVehicleStatusReq.class,
+        net.heberling.ismart.asn1.v2_1.entity.OTA_RVMVehicleStatusResp25857.class);
+    V2_1.register(
+        "510",
+        25857,
+        net.heberling.ismart.asn1.v2_1.entity.OTA_RVCReq.class,
+        net.heberling.ismart.asn1.v2_1.entity.OTA_RVCStatus25857.class);
+
+    V3_0.register(
+        "516",
+        768,
+        IASN1PreparedElement.class,
+        net.heberling.ismart.asn1.v3_0.entity.OTA_ChrgMangDataResp.class);
+    // charging control shares the application id with the charging status
+    V3_0.register(
+        "516_768_7",
+        net.heberling.ismart.asn1.v3_0.entity.OTA_ChrgCtrlReq.class,
+        net.heberling.ismart.asn1.v3_0.entity.OTA_ChrgCtrlStsResp.class);
+  }
+
+  private MessageCoderRegistry() {}
+
+  /**
+   * @return the version of the coder, that can decode the hex encoded message, e.g. "2.1"
+   * @throws IllegalArgumentException if the protocol version is not supported
+   */
+  public static String detectVersion(CharSequence message) {
+    return version(message).headerOnly.getVersion();
+  }
+
+  /** Decodes a hex encoded request, including its length prefix. */
+  public static AbstractMessage<?, ?, ?> decodeRequest(CharSequence message) {
+    Version version = version(message);
+    return version.coder(version.headerOnly.peekRouting(message), false).decodeResponse(message);
+  }
+
+  /** Decodes a hex encoded response, including its length prefix. */
+  public static AbstractMessage<?, ?, ?> decodeResponse(CharSequence message) {
+    Version version = version(message);
+    return version.coder(version.headerOnly.peekRouting(message), true).decodeResponse(message);
+  }
+
+  /**
+   * Decodes a binary response, without the hex length prefix, starting at the position of the
+   * buffer. The position is advanced past the bytes that have been read.
+   */
+  public static AbstractMessage<?, ?, ?> decodeResponse(ByteBuffer message) {
+    Version version = version(message.get(message.position()) & 0xFF);
+    return version.coder(version.headerOnly.peekRouting(message), true).decodeResponse(message);
+  }
+
+  /**
+   * @return the application data class of a request or response with the given routing information
+   *     or <code>null</code>, if the message is not known
+   */
+  public static Class<? extends IASN1PreparedElement> getApplicationDataClass(
+      String version, Routing routing, boolean response) {
+    for (Version v : VERSIONS) {
+      if (v != null && v.headerOnly.getVersion().equals(version)) {
+        return v.applicationDataClass(routing, response);
+      }
+    }
+    throw new IllegalArgumentException("Unsupported version: " + version);
+  }
+
+  /**
+   * Splits concatenated hex encoded messages of any version by their length prefixes. Whitespace
+   * between the messages is ignored, the returned messages are views of the given characters.
+   */
+  public static List<CharSequence> splitFrames(CharSequence messages) {
+    List<CharSequence> frames = new ArrayList<>();
+    int index = AbstractMessageCoder.skipWhitespace(messages, 0);
+    while (index < messages.length()) {
+      int length = version(messages, index).headerOnly.frameLength(messages, index);
+      frames.add(CharBuffer.wrap(messages, index, index + length));
+      index = AbstractMessageCoder.skipWhitespace(messages, index + length);
+    }
+    return frames;
+  }
+
+  private static Version version(CharSequence message) {
+    return version(message, 0);
+  }
+
+  private static Version version(CharSequence messages, int index) {
+    int versionIndex = index + AbstractMessageCoder.LENGTH_PREFIX_LENGTH;
+    if (messages.length() <= versionIndex) {
+      throw new IllegalArgumentException("Incomplete message at index " + index);
+    }
+    // the first hex digit after the length prefix is the major protocol version
+    return version(Character.digit(messages.charAt(versionIndex), 16) << 4);
+  }
+
+  private static Version version(int protocolVersion) {
+    Version version = protocolVersion < 0 ? null : VERSIONS[protocolVersion >>> 4 & 0x0F];
+    if (version == null) {
+      throw new IllegalArgumentException("Unsupported protocol version: " + protocolVersion);
+    }
+    return version;
+  }
+
+  private static final class Version {
+    /** Coder without application data class, that only decodes the header and body. */
+    private final AbstractMessageCoder<?, ?, ?, ?> headerOnly;
+
+    private final Function<Class<? extends IASN1PreparedElement>, AbstractMessageCoder<?, ?, ?, ?>>
+        coders;
+
+    private final Map<String, Class<? extends IASN1PreparedElement>> requests = new HashMap<>();
+    private final Map<String, Class<? extends IASN1PreparedElement>> responses = new HashMap<>();
+
+    private Version(
+        AbstractMessageCoder<?, ?, ?, ?> headerOnly,
+        Function<Class<? extends IASN1PreparedElement>, AbstractMessageCoder<?, ?, ?, ?>> coders) {
+      this.headerOnly = headerOnly;
+      this.coders = coders;
+    }
+
+    private void register(
+        String applicationID,
+        int applicationDataProtocolVersion,
+        Class<? extends IASN1PreparedElement> request,
+        Class<? extends IASN1PreparedElement> response) {
+      register(applicationID + "_" + applicationDataProtocolVersion, request, response);
+    }
+
+    private void register(
+        String key,
+        Class<? extends IASN1PreparedElement> request,
+        Class<? extends IASN1PreparedElement> response) {
+      requests.put(key, request);
+      responses.put(key, response);
+    }
+
+    private Class<? extends IASN1PreparedElement> applicationDataClass(
+        Routing routing, boolean response) {
+      Map<String, Class<? extends IASN1PreparedElement>> classes = response ? responses : requests;
+      String key = routing.getApplicationID() + "_" + routing.getApplicationDataProtocolVersion();
+      Class<? extends IASN1PreparedElement> type = classes.get(key + "_" + routing.getMessageID());
+      return type != null ? type : classes.get(key);
+    }
+
+    private AbstractMessageCoder<?, ?, ?, ?> coder(Routing routing, boolean response) {
+      Class<? extends IASN1PreparedElement> type = applicationDataClass(routing, response);
+      return type != null ? coders.apply(type) : headerOnly;
+    }
+  }
+}
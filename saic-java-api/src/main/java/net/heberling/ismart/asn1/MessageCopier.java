@@ -0,0 +1,141 @@
+package net.heberling.ismart.asn1;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.VarHandle;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import org.bn.coders.IASN1PreparedElement;
+
+/**
+ * Deep copies messages and their ASN.1 elements without encoding and decoding them. The constructor
+ * and fields of each element class are looked up once and cached as a plan.
+ *
+ * <p>Nested elements, collections and byte arrays are copied, all other values are immutable and
+ * shared with the original.
+ */
+public final class MessageCopier {
+  private static final ClassValue<CopyPlan> PLANS =
+      new ClassValue<>() {
+        @Override
+        protected CopyPlan computeValue(Class<?> type) {
+          return new CopyPlan(type);
+        }
+      };
+
+  private MessageCopier() {}
+
+  /** Returns a deep copy of the message, including its header, body and application data. */
+  @SuppressWarnings("unchecked")
+  public static <M extends AbstractMessage<?, ?, ?>> M copy(M message) {
+    return (M) copyParts(message.clone());
+  }
+
+  /** Returns a deep copy of the element. */
+  public static <T extends IASN1PreparedElement> T copy(T element) {
+    return copyElement(element);
+  }
+
+  private static <
+          H extends IASN1PreparedElement,
+          B extends IASN1PreparedElement,
+          E extends IASN1PreparedElement>
+      AbstractMessage<H, B, E> copyParts(AbstractMessage<H, B, E> message) {
+    message.header = copyElement(message.header);
+    message.body = copyElement(message.body);
+    message.applicationData = copyElement(message.applicationData);
+    return message;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <T> T copyElement(T element) {
+    return element == null ? null : (T) PLANS.get(element.getClass()).copy(element);
+  }
+
+  private static final class CopyPlan {
+    private final Class<?> type;
+    private final MethodHandle constructor;
+    private final VarHandle[] elements;
+    private final VarHandle[] collections;
+    private final VarHandle[] bytes;
+    private final VarHandle[] values;
+
+    private CopyPlan(Class<?> type) {
+      this.type = type;
+      List<VarHandle> elements = new ArrayList<>();
+      List<VarHandle> collections = new ArrayList<>();
+      List<VarHandle> bytes = new ArrayList<>();
+      List<VarHandle> values = new ArrayList<>();
+      try {
+        MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(type, MethodHandles.lookup());
+        MethodHandle constructor;
+        try {
+          constructor = lookup.findConstructor(type, MethodType.methodType(void.class));
+        } catch (NoSuchMethodException e) {
+          constructor = null;
+        }
+        this.constructor = constructor;
+        for (Field field : type.getDeclaredFields()) {
+          if (Modifier.isStatic(field.getModifiers())) {
+            continue;
+          }
+          VarHandle handle = lookup.unreflectVarHandle(field);
+          if (IASN1PreparedElement.class.isAssignableFrom(field.getType())) {
+            elements.add(handle);
+          } else if (Collection.class.isAssignableFrom(field.getType())) {
+            collections.add(handle);
+          } else if (field.getType() == byte[].class) {
+            bytes.add(handle);
+          } else {
+            values.add(handle);
+          }
+        }
+      } catch (IllegalAccessException e) {
+        throw new IllegalStateException("Can't access " + type, e);
+      }
+      this.elements = elements.toArray(new VarHandle[0]);
+      this.collections = collections.toArray(new VarHandle[0]);
+      this.bytes = bytes.toArray(new VarHandle[0]);
+      this.values = values.toArray(new VarHandle[0]);
+    }
+
+    private Object copy(Object element) {
+      if (constructor == null) {
+        throw new IllegalStateException("Can't copy " + type + ", it has no default constructor");
+      }
+      Object copy;
+      try {
+        copy = constructor.invoke();
+      } catch (Throwable e) {
+        throw new IllegalStateException("Can't copy " + type, e);
+      }
+      for (VarHandle handle : values) {
+        handle.set(copy, handle.get(element));
+      }
+      for (VarHandle handle : elements) {
+        handle.set(copy, copyElement(handle.get(element)));
+      }
+      for (VarHandle handle : bytes) {
+        byte[] value = (byte[]) handle.get(element);
+        handle.set(copy, value == null ? null : value.clone());
+      }
+      for (VarHandle handle : collections) {
+        Collection<?> value = (Collection<?>) handle.get(element);
+        if (value == null) {
+          handle.set(copy, null);
+          continue;
+        }
+        List<Object> list = new ArrayList<>(value.size());
+        for (Object o : value) {
+          list.add(o instanceof IASN1PreparedElement ? copyElement(o) : o);
+        }
+        handle.set(copy, list);
+      }
+      return copy;
+    }
+  }
+}
@@ -0,0 +1,236 @@
+package net.heberling.ismart.asn1;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import org.bn.utils.BitArrayInputStream;
+
+/**
+ * Unaligned PER bit stream used by the generated codecs. Bytes are only taken from the underlying
+ * stream when they are needed, so after decoding an element the underlying stream is positioned at
+ * the next byte boundary.
+ *
+ * <p>Lengths and the nesting depth are checked against the {@link DecodeLimits} and the bit budget
+ * of the stream.
+ */
+public class PerBitInputStream extends BitArrayInputStream {
+  private final InputStream in;
+
+  private final DecodeLimits limits;
+
+  /** Number of bits, that can be read from the underlying stream. */
+  private final long bitBudget;
+
+  private int currentByte;
+
+  /** Number of bits of the current byte, that have not been read yet. */
+  private int remainingBits;
+
+  /** Number of bytes taken from the underlying stream. */
+  private long bytesRead;
+
+  private int depth;
+
+  private Class<?> visitedType;
+
+  private SequenceOfVisitor<Object> visitor;
+
+  public PerBitInputStream(InputStream in) {
+    this(in, DecodeLimits.UNLIMITED, Long.MAX_VALUE);
+  }
+
+  /**
+   * @param bitBudget the number of bits, that are left in the message
+   */
+  public PerBitInputStream(InputStream in, DecodeLimits limits, long bitBudget) {
+    super(in);
+    this.in = in;
+    this.limits = limits;
+    this.bitBudget = bitBudget;
+  }
+
+  /** Returns the number of bits, that are left in the message. */
+  public long bitsLeft() {
+    return bitBudget - (bytesRead * 8 - remainingBits);
+  }
+
+  /** Called before decoding the members of a sequence. */
+  public void enter(String element) {
+    limits.checkDepth(++depth, element);
+  }
+
+  /** Called after decoding the members of a sequence. */
+  public void exit() {
+    depth--;
+  }
+
+  /** Checks the number of items of a sequence of, before they are decoded. */
+  public int checkCollectionSize(int size, String element) {
+    limits.checkCollectionSize(size, element);
+    return size;
+  }
+
+  /**
+   * Passes the items of all sequence ofs with the item type to the visitor, instead of collecting
+   * them.
+   */
+  void visitItems(Class<?> itemType, SequenceOfVisitor<Object> visitor) {
+    this.visitedType = itemType;
+    this.visitor = visitor;
+  }
+
+  /**
+   * Decodes the items of a sequence of, after its size has been read.
+   *
+   * @return the items, or <code>null</code> if they have been passed to the visitor
+   * @throws Stopped if the visitor stopped decoding
+   */
+  public <T> List<T> readSequenceOf(int size, Class<T> itemType, PerCodec.Decoder<T> decoder)
+      throws IOException {
+    if (itemType == visitedType) {
+      for (int i = 0; i < size; i++) {
+        if (!visitor.visit(decoder.decode(this))) {
+          throw Stopped.INSTANCE;
+        }
+      }
+      return null;
+    }
+    List<T> items = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      items.add(decoder.decode(this));
+    }
+    return items;
+  }
+
+  /** Reads up to 64 bits, most significant bit first. */
+  public long readLong(int bits) throws IOException {
+    long result = 0;
+    while (bits > 0) {
+      if (remainingBits == 0) {
+        currentByte = in.read();
+        if (currentByte < 0) {
+          throw new EOFException("Unexpected EOF when decoding!");
+        }
+        bytesRead++;
+        remainingBits = 8;
+      }
+      int take = Math.min(bits, remainingBits);
+      remainingBits -= take;
+      bits -= take;
+      result = result << take | (currentByte >>> remainingBits) & ((1 << take) - 1);
+    }
+    return result;
+  }
+
+  @Override
+  public int readBits(int bits) throws IOException {
+    return (int) readLong(bits);
+  }
+
+  @Override
+  public int readBit() throws IOException {
+    return (int) readLong(1);
+  }
+
+  @Override
+  public int read() throws IOException {
+    if (remainingBits == 0) {
+      int b = in.read();
+      if (b >= 0) {
+        bytesRead++;
+      }
+      return b;
+    }
+    return (int) readLong(8);
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    if (len == 0) {
+      return 0;
+    }
+    if (remainingBits == 0) {
+      int read = in.readNBytes(b, off, len);
+      bytesRead += read;
+      return read == 0 ? -1 : read;
+    }
+    for (int i = off; i < off + len; i++) {
+      b[i] = (byte) readLong(8);
+    }
+    return len;
+  }
+
+  @Override
+  public void skipUnreadedBits() {
+    remainingBits = 0;
+  }
+
+  public int readLengthDeterminant() throws IOException {
+    int result = (int) readLong(8);
+    if ((result & 0x80) == 0) {
+      return result;
+    }
+    return (result & 0x3F) << 8 | (int) readLong(8);
+  }
+
+  /** Reads a length that is constrained by a value range. */
+  public int readConstrainedLength(int min, int max, String element) throws IOException {
+    int length;
+    if (max <= 65535) {
+      length = (int) (readLong(64 - Long.numberOfLeadingZeros((long) max - min)) + min);
+    } else {
+      length = readLengthDeterminant();
+    }
+    if (length < min || length > max) {
+      throw new IllegalArgumentException("Value of '" + element + "' out of bounds");
+    }
+    return length;
+  }
+
+  public byte[] readOctetString(int length, String element) throws IOException {
+    limits.checkStringLength(length, 8, bitsLeft(), element);
+    byte[] value = new byte[length];
+    if (length > 0 && read(value, 0, length) < length) {
+      throw new EOFException("Unexpected EOF when decoding!");
+    }
+    return value;
+  }
+
+  /** Reads an IA5String or similar string with 7 bits per character. */
+  public String read7BitString(int length, String element) throws IOException {
+    if (length <= 0) {
+      return "";
+    }
+    limits.checkStringLength(length, 7, bitsLeft(), element);
+    byte[] value = new byte[length];
+    for (int i = 0; i < length; i++) {
+      value[i] = (byte) readLong(7);
+    }
+    return new String(value);
+  }
+
+  /** Reads a NumericString with 4 bits per character. */
+  public String readNumericString(int length, String element) throws IOException {
+    if (length <= 0) {
+      return "";
+    }
+    limits.checkStringLength(length, 4, bitsLeft(), element);
+    byte[] value = new byte[length];
+    for (int i = 0; i < length; i++) {
+      int digit = (int) readLong(4);
+      value[i] = (byte) (digit > 0 && digit <= 10 ? digit + 47 : ' ');
+    }
+    return new String(value);
+  }
+
+  /** Thrown when a {@link SequenceOfVisitor} stopped decoding. */
+  static final class Stopped extends RuntimeException {
+    static final Stopped INSTANCE = new Stopped();
+
+    private Stopped() {
+      super("The visitor stopped decoding", null, false, false);
+    }
+  }
+}
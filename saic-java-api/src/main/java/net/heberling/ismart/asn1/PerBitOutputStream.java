@@ -0,0 +1,146 @@
+package net.heberling.ismart.asn1;
+
+import java.util.Arrays;
+import org.bn.utils.BitArrayOutputStream;
+
+/**
+ * Unaligned PER bit stream used by the generated codecs. It can also be passed to the binarynotes
+ * encoders, so generated and reflective encoding can be mixed.
+ */
+public class PerBitOutputStream extends BitArrayOutputStream {
+
+  /** Number of bits that are already used in the last byte, 0 if the stream is byte aligned. */
+  private int trailBits;
+
+  public PerBitOutputStream() {
+    super(256);
+  }
+
+  public PerBitOutputStream(int initialSize) {
+    super(initialSize);
+  }
+
+  /** Writes the lowest <code>bits</code> bits of the value, most significant bit first. */
+  public void writeBits(long value, int bits) {
+    while (bits > 0) {
+      if (trailBits == 0) {
+        ensureCapacity(count + 1);
+        buf[count++] = 0;
+      }
+      int free = 8 - trailBits;
+      int take = Math.min(free, bits);
+      bits -= take;
+      int chunk = (int) (value >>> bits) & ((1 << take) - 1);
+      buf[count - 1] |= (byte) (chunk << (free - take));
+      trailBits = (trailBits + take) & 7;
+    }
+  }
+
+  @Override
+  public void writeBits(int value, int bits) {
+    writeBits((long) value, bits);
+  }
+
+  @Override
+  public void writeBit(int bit) {
+    writeBits(bit == 0 ? 0 : 1, 1);
+  }
+
+  @Override
+  public void writeBit(boolean value) {
+    writeBits(value ? 1 : 0, 1);
+  }
+
+  @Override
+  public void write(int b) {
+    writeBits(b & 0xFF, 8);
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) {
+    if (trailBits == 0) {
+      ensureCapacity(count + len);
+      System.arraycopy(b, off, buf, count, len);
+      count += len;
+    } else {
+      for (int i = off; i < off + len; i++) {
+        writeBits(b[i] & 0xFF, 8);
+      }
+    }
+  }
+
+  public void writeLengthDeterminant(int length) {
+    if (length >= 0 && length < 128) {
+      writeBits(length, 8);
+    } else if (length < 16384) {
+      writeBits(length >>> 8 & 0x3F | 0x80, 8);
+      writeBits(length & 0xFF, 8);
+    } else {
+      throw new IllegalArgumentException("Length too big: " + length);
+    }
+  }
+
+  /** Writes a length that is constrained by a value range. */
+  public void writeConstrainedLength(int length, int min, int max, String element) {
+    if (length < min || length > max) {
+      throw new IllegalArgumentException("Value of '" + element + "' out of bounds");
+    }
+    if (max <= 65535) {
+      writeBits(length - min, 64 - Long.numberOfLeadingZeros((long) max - min));
+    } else {
+      writeLengthDeterminant(length);
+    }
+  }
+
+  /** Checks a length that is constrained by a fixed size, these are not part of the stream. */
+  public void checkFixedLength(int length, int size, String element) {
+    if (length != size) {
+      throw new IllegalArgumentException("Value of '" + element + "' out of bounds");
+    }
+  }
+
+  /** Writes the characters of an IA5String or similar string with 7 bits each. */
+  public void write7BitString(byte[] value) {
+    for (byte b : value) {
+      writeBits(b, 7);
+    }
+  }
+
+  /** Writes the characters of a NumericString with 4 bits each, other characters are ignored. */
+  public void writeNumericString(byte[] value) {
+    for (int b : value) {
+      if (b == ' ') {
+        writeBits(0, 4);
+      } else if (b >= '0' && b <= '9') {
+        writeBits(b - 47, 4);
+      }
+    }
+  }
+
+  /** Returns the number of bits written so far. */
+  public long bitLength() {
+    return trailBits == 0 ? count * 8L : (count - 1) * 8L + trailBits;
+  }
+
+  @Override
+  public void align() {
+    trailBits = 0;
+  }
+
+  @Override
+  public void reset() {
+    trailBits = 0;
+    count = 0;
+  }
+
+  @Override
+  public int getTrailBitsCnt() {
+    return trailBits;
+  }
+
+  private void ensureCapacity(int minCapacity) {
+    if (minCapacity > buf.length) {
+      buf = Arrays.copyOf(buf, Math.max(buf.length * 2, minCapacity));
+    }
+  }
+}
@@ -0,0 +1,40 @@
+package net.heberling.ismart.asn1;
+
+import java.io.IOException;
+
+/**
+ * Encodes and decodes one ASN.1 type with unaligned PER. Implementations are generated during the
+ * build by <code>PerCodecGenerator</code>, use {@link PerCodecs#get(Class)} to look them up.
+ *
+ * @param <T> the ASN.1 type
+ */
+public interface PerCodec<T> {
+
+  void encode(T value, PerBitOutputStream out);
+
+  T decode(PerBitInputStream in) throws IOException;
+
+  static <T> PerCodec<T> of(Encoder<T> encoder, Decoder<T> decoder) {
+    return new PerCodec<>() {
+      @Override
+      public void encode(T value, PerBitOutputStream out) {
+        encoder.encode(value, out);
+      }
+
+      @Override
+      public T decode(PerBitInputStream in) throws IOException {
+        return decoder.decode(in);
+      }
+    };
+  }
+
+  @FunctionalInterface
+  interface Encoder<T> {
+    void encode(T value, PerBitOutputStream out);
+  }
+
+  @FunctionalInterface
+  interface Decoder<T> {
+    T decode(PerBitInputStream in) throws IOException;
+  }
+}
@@ -0,0 +1,61 @@
+package net.heberling.ismart.asn1;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Looks up the generated {@link PerCodec} of an ASN.1 type. The codecs of a package are registered
+ * in the class <code>GeneratedPerCodecs</code> of that package. Types without a generated codec are
+ * handled by the binarynotes coders.
+ *
+ * <p>The generated codecs can be disabled with <code>
+ * -Dnet.heberling.ismart.asn1.generatedCodecs=false</code>.
+ */
+public final class PerCodecs {
+  static final String REGISTRY_CLASS_NAME = "GeneratedPerCodecs";
+
+  private static final boolean ENABLED =
+      Boolean.parseBoolean(
+          System.getProperty("net.heberling.ismart.asn1.generatedCodecs", Boolean.TRUE.toString()));
+
+  private static final Map<String, Map<Class<?>, PerCodec<?>>> PACKAGES = new ConcurrentHashMap<>();
+
+  private static final ClassValue<Optional<PerCodec<?>>> CODECS =
+      new ClassValue<>() {
+        @Override
+        protected Optional<PerCodec<?>> computeValue(Class<?> type) {
+          if (!ENABLED || type.isPrimitive() || type.isArray()) {
+            return Optional.empty();
+          }
+          return Optional.ofNullable(
+              PACKAGES
+                  .computeIfAbsent(
+                      type.getPackageName(), p -> loadRegistry(p, type.getClassLoader()))
+                  .get(type));
+        }
+      };
+
+  private PerCodecs() {}
+
+  /**
+   * @return the generated codec or <code>null</code>, if there is none for this type
+   */
+  @SuppressWarnings("unchecked")
+  public static <T> PerCodec<T> get(Class<T> type) {
+    return (PerCodec<T>) CODECS.get(type).orElse(null);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Map<Class<?>, PerCodec<?>> loadRegistry(
+      String packageName, ClassLoader classLoader) {
+    try {
+      Class<?> registry = Class.forName(packageName + "." + REGISTRY_CLASS_NAME, true, classLoader);
+      return (Map<Class<?>, PerCodec<?>>) registry.getField("CODECS").get(null);
+    } catch (ClassNotFoundException e) {
+      return Map.of();
+    } catch (ReflectiveOperationException e) {
+      throw new IllegalStateException("Could not load generated codecs of " + packageName, e);
+    }
+  }
+}
@@ -0,0 +1,273 @@
+package net.heberling.ismart.asn1;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Objects;
+import org.bn.annotations.constraints.ASN1ValueRangeConstraint;
+
+/**
+ * A request, that is encoded once and then patched for the retries of a polling loop. Changes of
+ * the event ID and the reserved bytes of the message are written into the encoded request directly.
+ * If the uid or the token change, or the event ID is added or removed, the whole message is encoded
+ * again. Other changes of the message are not picked up.
+ *
+ * <p>The position of the event ID is found by encoding the message with the smallest and the
+ * largest event ID and checked against the real encoding. If that doesn't match, the whole message
+ * is encoded for every change of the event ID.
+ *
+ * <p>Instances are not thread safe.
+ *
+ * @see AbstractMessageCoder#prepareRequest(AbstractMessage)
+ */
+public final class PreparedRequest<M extends AbstractMessage<?, ?, ?>> {
+  private static final ClassValue<BodyFields> BODY_FIELDS =
+      new ClassValue<>() {
+        @Override
+        protected BodyFields computeValue(Class<?> type) {
+          return new BodyFields(type);
+        }
+      };
+
+  private final AbstractMessageCoder<?, ?, ?, M> coder;
+  private final M message;
+  private final BodyFields fields;
+
+  /** The binary message without the length prefix. */
+  private byte[] data;
+
+  /** The hex encoded message with the length prefix as ASCII characters. */
+  private byte[] hex;
+
+  // the values in the encoded message
+  private Object uid;
+  private Object token;
+  private Long eventID;
+  private byte[] reserved;
+
+  /** The position of the event ID in bits, or -1 if it can't be patched. */
+  private long eventIDOffset;
+
+  PreparedRequest(AbstractMessageCoder<?, ?, ?, M> coder, M message) {
+    this.coder = coder;
+    this.message = message;
+    this.fields = BODY_FIELDS.get(message.getBody().getClass());
+    prepare();
+  }
+
+  public M getMessage() {
+    return message;
+  }
+
+  /** Returns the hex encoded message, including its length prefix. */
+  public String encodeRequest() {
+    update();
+    return new String(hex, StandardCharsets.US_ASCII);
+  }
+
+  /**
+   * Returns the hex encoded message, including its length prefix, as ASCII characters. The array is
+   * a copy, because the prepared message is patched in place for the next request.
+   */
+  public byte[] encodeRequestBytes() {
+    update();
+    return hex.clone();
+  }
+
+  /**
+   * Writes the hex encoded message, including its length prefix, as ASCII characters to the stream.
+   */
+  public void writeRequest(OutputStream outputStream) throws IOException {
+    update();
+    outputStream.write(hex);
+  }
+
+  private void prepare() {
+    Object body = message.getBody();
+    Long current = fields.getEventID(body);
+    eventIDOffset = -1;
+    if (current != null && fields.eventIDWidth > 0) {
+      byte[] low;
+      byte[] high;
+      try {
+        fields.setEventID(body, fields.eventIDMin);
+        low = toBinary(coder.encodeRequest(message));
+        fields.setEventID(body, fields.eventIDMax);
+        high = toBinary(coder.encodeRequest(message));
+      } finally {
+        fields.setEventID(body, current);
+      }
+      String encoded = coder.encodeRequest(message);
+      data = toBinary(encoded);
+      hex = encoded.getBytes(StandardCharsets.US_ASCII);
+      long offset = firstDifference(low, high);
+      if (offset >= 0 && offset + fields.eventIDWidth <= data.length * 8L) {
+        writeBits(low, offset, fields.eventIDWidth, current - fields.eventIDMin);
+        if (Arrays.equals(low, data)) {
+          eventIDOffset = offset;
+        }
+      }
+    } else {
+      String encoded = coder.encodeRequest(message);
+      data = toBinary(encoded);
+      hex = encoded.getBytes(StandardCharsets.US_ASCII);
+    }
+    uid = fields.uid == null ? null : fields.uid.get(body);
+    token = fields.token == null ? null : fields.token.get(body);
+    eventID = current;
+    byte[] reservedBytes = message.reservedBytes();
+    reserved = reservedBytes == null ? null : reservedBytes.clone();
+  }
+
+  private void update() {
+    Object body = message.getBody();
+    Long current = fields.getEventID(body);
+    byte[] reservedBytes = message.reservedBytes();
+    if ((fields.uid != null && !Objects.equals(uid, fields.uid.get(body)))
+        || (fields.token != null && !Objects.equals(token, fields.token.get(body)))
+        || (current == null) != (eventID == null)
+        || (reservedBytes == null) != (reserved == null)
+        || (reservedBytes != null && reservedBytes.length != reserved.length)) {
+      prepare();
+      return;
+    }
+    if (current != null && !current.equals(eventID)) {
+      if (eventIDOffset < 0 || current < fields.eventIDMin || current > fields.eventIDMax) {
+        // let the coder encode or reject it
+        prepare();
+        return;
+      }
+      writeBits(data, eventIDOffset, fields.eventIDWidth, current - fields.eventIDMin);
+      updateHex(
+          (int) (eventIDOffset >>> 3), (int) ((eventIDOffset + fields.eventIDWidth - 1) >>> 3));
+      eventID = current;
+    }
+    if (reservedBytes != null && !Arrays.equals(reservedBytes, reserved)) {
+      int offset = coder.getReservedOffset();
+      if (offset < 0) {
+        prepare();
+        return;
+      }
+      System.arraycopy(reservedBytes, 0, data, offset, reservedBytes.length);
+      updateHex(offset, offset + reservedBytes.length - 1);
+      reserved = reservedBytes.clone();
+    }
+  }
+
+  /** Updates the hex characters of the bytes between the indexes, both inclusive. */
+  private void updateHex(int from, int to) {
+    HexCodec.DEFAULT.encode(
+        data, from, to - from + 1, hex, AbstractMessageCoder.LENGTH_PREFIX_LENGTH + from * 2);
+  }
+
+  private static byte[] toBinary(String encoded) {
+    return AbstractMessageCoder.hexStringToByteArray(
+        encoded.substring(AbstractMessageCoder.LENGTH_PREFIX_LENGTH));
+  }
+
+  /**
+   * @return the position of the first differing bit, or -1 if the arrays are equal or have
+   *     different lengths
+   */
+  private static long firstDifference(byte[] a, byte[] b) {
+    if (a.length != b.length) {
+      return -1;
+    }
+    for (int i = 0; i < a.length; i++) {
+      int difference = (a[i] ^ b[i]) & 0xFF;
+      if (difference != 0) {
+        return i * 8L + Integer.numberOfLeadingZeros(difference) - 24;
+      }
+    }
+    return -1;
+  }
+
+  /** Writes the lowest bits of the value, most significant first, like PER. */
+  private static void writeBits(byte[] target, long offset, int width, long value) {
+    for (int i = 0; i < width; i++) {
+      long bit = offset + i;
+      int index = (int) (bit >>> 3);
+      int mask = 0x80 >>> (int) (bit & 7);
+      if ((value >>> (width - 1 - i) & 1) != 0) {
+        target[index] |= (byte) mask;
+      } else {
+        target[index] &= (byte) ~mask;
+      }
+    }
+  }
+
+  /** The fields of a dispatcher body, that change between the retries of a request. */
+  private static final class BodyFields {
+    private final VarHandle uid;
+    private final VarHandle token;
+    private final VarHandle eventID;
+    private final long eventIDMin;
+    private final long eventIDMax;
+
+    /** The number of bits of the event ID, or 0 if it can't be patched. */
+    private final int eventIDWidth;
+
+    private BodyFields(Class<?> type) {
+      MethodHandles.Lookup lookup;
+      try {
+        lookup = MethodHandles.privateLookupIn(type, MethodHandles.lookup());
+      } catch (IllegalAccessException e) {
+        throw new IllegalStateException("Can't access " + type, e);
+      }
+      uid = handle(lookup, type, "uid");
+      token = handle(lookup, type, "token");
+      eventID = handle(lookup, type, "eventID");
+      ASN1ValueRangeConstraint range = null;
+      if (eventID != null) {
+        try {
+          range = type.getDeclaredField("eventID").getAnnotation(ASN1ValueRangeConstraint.class);
+        } catch (NoSuchFieldException e) {
+          throw new AssertionError(e);
+        }
+      }
+      if (range != null && range.min() < range.max()) {
+        eventIDMin = range.min();
+        eventIDMax = range.max();
+        eventIDWidth = 64 - Long.numberOfLeadingZeros(range.max() - range.min());
+      } else {
+        eventIDMin = 0;
+        eventIDMax = 0;
+        eventIDWidth = 0;
+      }
+    }
+
+    private static VarHandle handle(MethodHandles.Lookup lookup, Class<?> type, String name) {
+      Field field;
+      try {
+        field = type.getDeclaredField(name);
+      } catch (NoSuchFieldException e) {
+        return null;
+      }
+      try {
+        return lookup.unreflectVarHandle(field);
+      } catch (IllegalAccessException e) {
+        throw new IllegalStateException("Can't access " + field, e);
+      }
+    }
+
+    private Long getEventID(Object body) {
+      if (eventID == null) {
+        return null;
+      }
+      Number value = (Number) eventID.get(body);
+      return value == null ? null : value.longValue();
+    }
+
+    private void setEventID(Object body, long value) {
+      if (eventID.varType() == Integer.class) {
+        eventID.set(body, (Integer) (int) value);
+      } else {
+        eventID.set(body, (Long) value);
+      }
+    }
+  }
+}
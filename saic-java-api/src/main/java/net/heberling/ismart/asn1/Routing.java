@@ -0,0 +1,94 @@
+package net.heberling.ismart.asn1;
+
+/**
+ * The fields of a dispatcher body, that are needed to decide what to do with a message. It is
+ * created by {@link AbstractMessageCoder#peekRouting}, without decoding the application data.
+ */
+public final class Routing {
+  private final String applicationID;
+  private final int applicationDataProtocolVersion;
+  private final int messageID;
+  private final Long eventID;
+  private final Integer result;
+  private final boolean errorMessagePresent;
+  private final long applicationDataLength;
+
+  public Routing(
+      String applicationID,
+      int applicationDataProtocolVersion,
+      int messageID,
+      Long eventID,
+      Integer result,
+      boolean errorMessagePresent,
+      long applicationDataLength) {
+    this.applicationID = applicationID;
+    this.applicationDataProtocolVersion = applicationDataProtocolVersion;
+    this.messageID = messageID;
+    this.eventID = eventID;
+    this.result = result;
+    this.errorMessagePresent = errorMessagePresent;
+    this.applicationDataLength = applicationDataLength;
+  }
+
+  public String getApplicationID() {
+    return applicationID;
+  }
+
+  public int getApplicationDataProtocolVersion() {
+    return applicationDataProtocolVersion;
+  }
+
+  public int getMessageID() {
+    return messageID;
+  }
+
+  /**
+   * @return the event id or <code>null</code>, if the message has none
+   */
+  public Long getEventID() {
+    return eventID;
+  }
+
+  /**
+   * @return the result code or <code>null</code>, if the message has none
+   */
+  public Integer getResult() {
+    return result;
+  }
+
+  public boolean isErrorMessagePresent() {
+    return errorMessagePresent;
+  }
+
+  public long getApplicationDataLength() {
+    return applicationDataLength;
+  }
+
+  /**
+   * @return <code>true</code>, if application data follows the dispatcher body
+   */
+  public boolean hasApplicationData() {
+    return applicationDataLength > 0;
+  }
+
+  @Override
+  public String toString() {
+    return "Routing{"
+        + "applicationID='"
+        + applicationID
+        + '\''
+        + ", applicationDataProtocolVersion="
+        + applicationDataProtocolVersion
+        + ", messageID="
+        + messageID
+        + ", eventID="
+        + eventID
+        + ", result="
+        + result
+        + ", errorMessagePresent="
+        + errorMessagePresent
+        + ", applicationDataLength="
+        + applicationDataLength
+        + '}';
+  }
+}
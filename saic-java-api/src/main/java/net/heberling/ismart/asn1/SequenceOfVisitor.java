@@ -0,0 +1,18 @@
+package net.heberling.ismart.asn1;
+
+/**
+ * Receives the items of a <code>SEQUENCE OF</code> one at a time while a message is decoded,
+ * instead of collecting all of them in a list first. Octet strings of the items are passed as they
+ * are, converting them to text is left to the visitor.
+ *
+ * @param <T> the ASN.1 type of the items
+ * @see AbstractMessageCoder#decodeResponse(CharSequence, Class, SequenceOfVisitor)
+ */
+@FunctionalInterface
+public interface SequenceOfVisitor<T> {
+
+  /**
+   * @return <code>false</code> to stop decoding the message
+   */
+  boolean visit(T item);
+}
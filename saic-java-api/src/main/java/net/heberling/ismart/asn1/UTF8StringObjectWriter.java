@@ -1,15 +1,15 @@
-package net.heberling.ismart.cli;
+package net.heberling.ismart.asn1;
 
 import com.owlike.genson.stream.JsonType;
 import com.owlike.genson.stream.ObjectWriter;
 import java.nio.charset.StandardCharsets;
 
-public class UTF8StringObjectWriter implements ObjectWriter {
+class UTF8StringObjectWriter implements ObjectWriter {
   private final ObjectWriter delegate;
 
   private String utf8EncodedByteArrayName;
 
-  public UTF8StringObjectWriter(ObjectWriter delegate) {
+  UTF8StringObjectWriter(ObjectWriter delegate) {
     this.delegate = delegate;
   }
 
@@ -7,12 +7,17 @@ public final class Util {
 
   public static byte[] generateReservedBytes() {
     byte[] reservedBytes = new byte[16];
+    fillReserved(reservedBytes);
+    return reservedBytes;
+  }
+
+  /** Overwrites the 16 reserved bytes of a message with new random digits. */
+  public static void fillReserved(byte[] reservedBytes) {
     System.arraycopy(
         (ThreadLocalRandom.current().nextLong() + "1111111111111111").getBytes(),
         0,
         reservedBytes,
         0,
         16);
-    return reservedBytes;
   }
 }
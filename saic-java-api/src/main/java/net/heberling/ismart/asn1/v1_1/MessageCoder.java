@@ -1,46 +1,55 @@
 package net.heberling.ismart.asn1.v1_1;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.time.Instant;
 import net.heberling.ismart.asn1.AbstractMessageCoder;
+import net.heberling.ismart.asn1.PerBitOutputStream;
+import net.heberling.ismart.asn1.Routing;
 import org.bn.coders.IASN1PreparedElement;
-import org.bn.coders.per.PERUnalignedDecoder;
 
 public class MessageCoder<E extends IASN1PreparedElement>
     extends AbstractMessageCoder<MP_DispatcherHeader, MP_DispatcherBody, E, Message<E>> {
 
+  private static final ClassValue<MessageCoder<?>> CODERS =
+      new ClassValue<>() {
+        @Override
+        protected MessageCoder<?> computeValue(Class<?> type) {
+          return new MessageCoder<>(type.asSubclass(IASN1PreparedElement.class));
+        }
+      };
+
   public MessageCoder(Class<E> applicationDataClass) {
     super(applicationDataClass);
   }
 
+  /**
+   * @return the shared coder for the application data class, coders are thread safe
+   */
+  @SuppressWarnings("unchecked")
+  public static <E extends IASN1PreparedElement> MessageCoder<E> of(Class<E> applicationDataClass) {
+    return (MessageCoder<E>) CODERS.get(applicationDataClass);
+  }
+
   @Override
-  public String encodeRequest(Message<E> message) {
+  protected void encode(Message<E> message, OutputStream outputStream) throws Exception {
+    try (EncodingBuffers buffers = EncodingBuffers.acquire()) {
+      PerBitOutputStream applicationData = buffers.getApplicationData();
+      PerBitOutputStream bodyData = buffers.getBody();
 
-    E request = message.getApplicationData();
+      E request = message.getApplicationData();
 
-    try {
-      ByteArrayOutputStream bos;
-      byte[] applicationData;
-      MyPERUnalignedEncoder encoder = new MyPERUnalignedEncoder();
       if (request != null) {
-        bos = new ByteArrayOutputStream();
-        encoder.encode(request, bos);
-        applicationData = bos.toByteArray();
-      } else {
-        applicationData = new byte[0];
+        encodeElement(request, applicationData);
       }
 
       MP_DispatcherBody body = message.getBody();
       final DataEncodingType dataEncoding = new DataEncodingType();
       dataEncoding.setValue(DataEncodingType.EnumType.perUnaligned);
       body.setApplicationDataEncoding(dataEncoding);
-      body.setApplicationDataLength((long) applicationData.length);
+      body.setApplicationDataLength((long) applicationData.size());
 
-      bos = new ByteArrayOutputStream();
-      encoder.encode(body, bos);
-      final byte[] bodyData = bos.toByteArray();
+      encodeElement(body, bodyData);
 
       MP_DispatcherHeader header = message.getHeader();
       if (header.getProtocolVersion() == null) {
@@ -49,51 +58,75 @@ public class MessageCoder<E extends IASN1PreparedElement>
       if (header.getSecurityContext() == null) {
         header.setSecurityContext(0);
       }
-      header.setDispatcherMessageLength(bodyData.length + 4 /*header length*/);
+      header.setDispatcherMessageLength(bodyData.size() + 4 /*header length*/);
       header.setDispatcherBodyEncoding(0); // PER
 
-      bos = new ByteArrayOutputStream();
-      bos.write(header.getProtocolVersion());
-      bos.write(header.getSecurityContext());
-      bos.write(header.getDispatcherMessageLength());
-      bos.write(header.getDispatcherBodyEncoding());
+      outputStream.write(header.getProtocolVersion());
+      outputStream.write(header.getSecurityContext());
+      outputStream.write(header.getDispatcherMessageLength());
+      outputStream.write(header.getDispatcherBodyEncoding());
 
-      bos.write(bodyData);
+      bodyData.writeTo(outputStream);
+
+      applicationData.writeTo(outputStream);
+    }
+  }
 
-      bos.write(applicationData);
+  @Override
+  protected void writeLengthPrefix(int length, char[] target) {
+    writeHexLength(length * 2 + LENGTH_PREFIX_LENGTH, target, 0);
+    target[4] = '1';
+  }
 
-      byte[] bytes = bos.toByteArray();
-      return String.format("%04X", bytes.length * 2 + 5) + "1" + bytesToHex(bytes);
-    } catch (Exception e) {
-      throw new RuntimeException(e);
+  @Override
+  protected int readLengthPrefix(CharSequence source, int index) {
+    if (source.charAt(index + 4) != '1') {
+      throw new IllegalArgumentException(
+          "Invalid length prefix: " + source.subSequence(index, index + LENGTH_PREFIX_LENGTH));
     }
+    // the length is given in characters, including the prefix
+    int length = readHexLength(source, index) - LENGTH_PREFIX_LENGTH;
+    if (length < 0 || length % 2 != 0) {
+      throw new IllegalArgumentException(
+          "Invalid length prefix: " + source.subSequence(index, index + LENGTH_PREFIX_LENGTH));
+    }
+    return length / 2;
   }
 
   @Override
-  public Message<E> decodeResponse(String message) {
-    try {
-      // TODO: check for message encoding and length
-      byte[] bytes = hexStringToByteArray(message.substring(5));
-      InputStream inputStream = new ByteArrayInputStream(bytes);
-      // not asn.1 encoded
-      MP_DispatcherHeader header = new MP_DispatcherHeader();
-      header.setProtocolVersion(inputStream.read());
-      header.setSecurityContext(inputStream.read());
-      // messages can be longer than 256 bytes, so this value can be wrong!
-      header.setDispatcherMessageLength(inputStream.read());
-      header.setDispatcherBodyEncoding(inputStream.read());
-
-      final PERUnalignedDecoder decoder = new MyPERUnalignedDecoder();
-      MP_DispatcherBody body = decoder.decode(inputStream, MP_DispatcherBody.class);
-
-      E e = null;
-      if (getApplicationDataClass() != null && body.getApplicationDataLength() > 0) {
-        e = decoder.decode(inputStream, getApplicationDataClass());
-      }
-      return new Message<>(header, body, e);
-    } catch (Exception e) {
-      throw new RuntimeException("Could not decode: " + message, e);
+  protected Message<E> decode(InputStream inputStream) throws Exception {
+    // not asn.1 encoded
+    MP_DispatcherHeader header = new MP_DispatcherHeader();
+    header.setProtocolVersion(inputStream.read());
+    header.setSecurityContext(inputStream.read());
+    // only the lowest byte of the length, the length prefix has the whole message length
+    header.setDispatcherMessageLength(inputStream.read());
+    header.setDispatcherBodyEncoding(readBodyEncoding(inputStream));
+
+    MP_DispatcherBody body = decodeElement(inputStream, MP_DispatcherBody.class);
+
+    E e = null;
+    if (getApplicationDataClass() != null && body.getApplicationDataLength() > 0) {
+      e = decodeElement(inputStream, getApplicationDataClass());
     }
+    return new Message<>(header, body, e);
+  }
+
+  @Override
+  protected Routing peek(InputStream inputStream) throws Exception {
+    // protocol version, security context, message length and body encoding
+    skipBytes(inputStream, 4);
+
+    MP_DispatcherBody body = decodeElement(inputStream, MP_DispatcherBody.class);
+
+    return new Routing(
+        body.getApplicationID(),
+        body.getApplicationDataProtocolVersion(),
+        body.getMessageID(),
+        body.getEventID(),
+        body.getResult(),
+        body.isErrorMessagePresent(),
+        body.getApplicationDataLength());
   }
 
   @Override
@@ -128,6 +161,22 @@ public class MessageCoder<E extends IASN1PreparedElement>
     return message;
   }
 
+  @Override
+  protected Message<E> createMessage(
+      MP_DispatcherHeader header, byte[] reserved, MP_DispatcherBody body, E applicationData) {
+    return new Message<>(header, body, applicationData);
+  }
+
+  @Override
+  protected Class<MP_DispatcherHeader> getHeaderClass() {
+    return MP_DispatcherHeader.class;
+  }
+
+  @Override
+  protected Class<MP_DispatcherBody> getBodyClass() {
+    return MP_DispatcherBody.class;
+  }
+
   @Override
   public String getVersion() {
     return "1.1";
@@ -6,7 +6,7 @@ import org.bn.coders.IASN1PreparedElement;
 public class Message<E extends IASN1PreparedElement>
     extends AbstractMessage<MP_DispatcherHeader, MP_DispatcherBody, E> {
 
-  private final byte[] reserved;
+  private byte[] reserved;
 
   Message(MP_DispatcherHeader header, byte[] reserved, MP_DispatcherBody body, E applicationData) {
     super(header, body, applicationData);
@@ -16,4 +16,16 @@ public class Message<E extends IASN1PreparedElement>
   public byte[] getReserved() {
     return reserved;
   }
+
+  @Override
+  protected byte[] reservedBytes() {
+    return reserved;
+  }
+
+  @Override
+  protected Message<E> clone() {
+    Message<E> message = (Message<E>) super.clone();
+    message.reserved = reserved.clone();
+    return message;
+  }
 }
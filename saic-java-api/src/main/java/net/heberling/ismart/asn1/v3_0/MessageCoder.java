@@ -1,101 +1,131 @@
 package net.heberling.ismart.asn1.v3_0;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.time.Instant;
 import net.heberling.ismart.asn1.AbstractMessageCoder;
+import net.heberling.ismart.asn1.PerBitOutputStream;
+import net.heberling.ismart.asn1.Routing;
 import net.heberling.ismart.asn1.Util;
 import org.bn.coders.IASN1PreparedElement;
-import org.bn.coders.per.PERUnalignedDecoder;
 
 public class MessageCoder<E extends IASN1PreparedElement>
     extends AbstractMessageCoder<MP_DispatcherHeader, MP_DispatcherBody, E, Message<E>> {
 
+  private static final ClassValue<MessageCoder<?>> CODERS =
+      new ClassValue<>() {
+        @Override
+        protected MessageCoder<?> computeValue(Class<?> type) {
+          return new MessageCoder<>(type.asSubclass(IASN1PreparedElement.class));
+        }
+      };
+
   public MessageCoder(Class<E> applicationDataClass) {
     super(applicationDataClass);
   }
 
+  /**
+   * @return the shared coder for the application data class, coders are thread safe
+   */
+  @SuppressWarnings("unchecked")
+  public static <E extends IASN1PreparedElement> MessageCoder<E> of(Class<E> applicationDataClass) {
+    return (MessageCoder<E>) CODERS.get(applicationDataClass);
+  }
+
   @Override
-  public String encodeRequest(Message<E> message) {
+  protected void encode(Message<E> message, OutputStream outputStream) throws Exception {
+    try (EncodingBuffers buffers = EncodingBuffers.acquire()) {
+      PerBitOutputStream applicationData = buffers.getApplicationData();
+      PerBitOutputStream bodyData = buffers.getBody();
 
-    E request = message.getApplicationData();
+      E request = message.getApplicationData();
 
-    try {
-      ByteArrayOutputStream bos;
-      byte[] applicationData;
-      MyPERUnalignedEncoder encoder = new MyPERUnalignedEncoder();
       if (request != null) {
-        bos = new ByteArrayOutputStream();
-        encoder.encode(request, bos);
-        applicationData = bos.toByteArray();
-      } else {
-        applicationData = new byte[0];
+        encodeElement(request, applicationData);
       }
 
       MP_DispatcherBody body = message.getBody();
       final DataEncodingType dataEncoding = new DataEncodingType();
       dataEncoding.setValue(DataEncodingType.EnumType.perUnaligned);
       body.setApplicationDataEncoding(dataEncoding);
-      body.setApplicationDataLength(applicationData.length);
+      body.setApplicationDataLength(applicationData.size());
 
-      bos = new ByteArrayOutputStream();
-      encoder.encode(body, bos);
-      final byte[] bodyData = bos.toByteArray();
+      encodeElement(body, bodyData);
 
       MP_DispatcherHeader header = message.getHeader();
       if (header.getProtocolVersion() == null) {
         header.setProtocolVersion(48);
       }
-      header.setDispatcherMessageLength(bodyData.length + 3 /*header length*/);
+      header.setDispatcherMessageLength(bodyData.size() + 3 /*header length*/);
       header.setDispatcherBodyEncoding(0); // PER
 
-      bos = new ByteArrayOutputStream();
-      bos.write(header.getProtocolVersion());
-      bos.write(header.getDispatcherMessageLength());
-      bos.write(header.getDispatcherBodyEncoding());
+      outputStream.write(header.getProtocolVersion());
+      outputStream.write(header.getDispatcherMessageLength());
+      outputStream.write(header.getDispatcherBodyEncoding());
 
-      bos.write(message.getReserved());
+      outputStream.write(message.getReserved());
 
-      bos.write(bodyData);
+      bodyData.writeTo(outputStream);
 
-      bos.write(applicationData);
+      applicationData.writeTo(outputStream);
+    }
+  }
 
-      byte[] bytes = bos.toByteArray();
-      return "1" + String.format("%04X", bytes.length + 3) + bytesToHex(bytes);
-    } catch (Exception e) {
-      throw new RuntimeException(e);
+  @Override
+  protected void writeLengthPrefix(int length, char[] target) {
+    target[0] = '1';
+    writeHexLength(length + 3, target, 1);
+  }
+
+  @Override
+  protected int readLengthPrefix(CharSequence source, int index) {
+    int length = readHexLength(source, index + 1) - 3;
+    if (source.charAt(index) != '1' || length < 0) {
+      throw new IllegalArgumentException(
+          "Invalid length prefix: " + source.subSequence(index, index + LENGTH_PREFIX_LENGTH));
     }
+    return length;
   }
 
   @Override
-  public Message<E> decodeResponse(String message) {
-    try {
-      // TODO: check for message encoding and length
-      byte[] bytes = hexStringToByteArray(message.substring(5));
-      InputStream inputStream = new ByteArrayInputStream(bytes);
-      // not asn.1 encoded
-      MP_DispatcherHeader header = new MP_DispatcherHeader();
-      header.setProtocolVersion(inputStream.read());
-      // messages can be longer than 256 bytes, so this value can be wrong!
-      header.setDispatcherMessageLength(inputStream.read());
-      header.setDispatcherBodyEncoding(inputStream.read());
-
-      // TODO: whats this?
-      byte[] reserved = new byte[16];
-      inputStream.read(reserved);
-
-      final PERUnalignedDecoder decoder = new MyPERUnalignedDecoder();
-      MP_DispatcherBody body = decoder.decode(inputStream, MP_DispatcherBody.class);
-
-      E e = null;
-      if (getApplicationDataClass() != null && body.getApplicationDataLength() > 0) {
-        e = decoder.decode(inputStream, getApplicationDataClass());
-      }
-      return new Message<>(header, reserved, body, e);
-    } catch (Exception e) {
-      throw new RuntimeException("Could not decode: " + message, e);
+  protected Message<E> decode(InputStream inputStream) throws Exception {
+    // not asn.1 encoded
+    MP_DispatcherHeader header = new MP_DispatcherHeader();
+    header.setProtocolVersion(inputStream.read());
+    // only the lowest byte of the length, the length prefix has the whole message length
+    header.setDispatcherMessageLength(inputStream.read());
+    header.setDispatcherBodyEncoding(readBodyEncoding(inputStream));
+
+    // TODO: whats this?
+    byte[] reserved = new byte[16];
+    inputStream.read(reserved);
+
+    MP_DispatcherBody body = decodeElement(inputStream, MP_DispatcherBody.class);
+
+    E e = null;
+    if (getApplicationDataClass() != null && body.getApplicationDataLength() > 0) {
+      e = decodeElement(inputStream, getApplicationDataClass());
     }
+    return new Message<>(header, reserved, body, e);
+  }
+
+  @Override
+  protected Routing peek(InputStream inputStream) throws Exception {
+    // protocol version, message length, body encoding and the reserved bytes
+    skipBytes(inputStream, 3 + 16);
+
+    MP_DispatcherBody body = decodeElement(inputStream, MP_DispatcherBody.class);
+
+    return new Routing(
+        body.getApplicationID(),
+        body.isApplicationDataProtocolVersionPresent()
+            ? body.getApplicationDataProtocolVersion()
+            : 0,
+        body.getMessageID(),
+        body.isEventIDPresent() ? Long.valueOf(body.getEventID()) : null,
+        body.getResult(),
+        body.isErrorMessagePresent(),
+        body.isApplicationDataLengthPresent() ? body.getApplicationDataLength() : 0);
   }
 
   @Override
@@ -127,6 +157,33 @@ public class MessageCoder<E extends IASN1PreparedElement>
     return message;
   }
 
+  @Override
+  protected Message<E> createMessage(
+      MP_DispatcherHeader header, byte[] reserved, MP_DispatcherBody body, E applicationData) {
+    if (reserved == null) {
+      reserved = Util.generateReservedBytes();
+    } else if (reserved.length != 16) {
+      throw new IllegalArgumentException("Expected 16 reserved bytes, got " + reserved.length);
+    }
+    return new Message<>(header, reserved, body, applicationData);
+  }
+
+  @Override
+  protected int getReservedOffset() {
+    // after the protocol version, message length and body encoding
+    return 3;
+  }
+
+  @Override
+  protected Class<MP_DispatcherHeader> getHeaderClass() {
+    return MP_DispatcherHeader.class;
+  }
+
+  @Override
+  protected Class<MP_DispatcherBody> getBodyClass() {
+    return MP_DispatcherBody.class;
+  }
+
   @Override
   public String getVersion() {
     return "3.0";
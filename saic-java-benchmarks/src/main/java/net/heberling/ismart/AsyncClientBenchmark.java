@@ -0,0 +1,181 @@
+package net.heberling.ismart;
+
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import net.heberling.ismart.asn1.v1_1.Message;
+import net.heberling.ismart.asn1.v1_1.MessageCoder;
+import net.heberling.ismart.asn1.v1_1.entity.MP_UserLoggingInReq;
+import net.heberling.ismart.asn1.v1_1.entity.MP_UserLoggingInResp;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Lets every simulated vehicle send one request to a local stand-in for the SAIC API, that answers
+ * after a fixed latency. The blocking {@link Client} needs a thread per vehicle, like the MQTT
+ * gateway, the {@link AsyncClient} only its I/O threads.
+ *
+ * <p>The connection pools are large enough for a connection per vehicle, so both clients are only
+ * limited by their threads.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(
+    value = 1,
+    jvmArgsAppend = {
+      "-Dismart.http.maxConnections=1000",
+      "-Dismart.http.maxConnectionsPerRoute=1000"
+    })
+@State(Scope.Benchmark)
+public class AsyncClientBenchmark {
+
+  @Param({"100", "500"})
+  public int vehicles;
+
+  /** The latency of the stand-in server in milliseconds. */
+  @Param({"20"})
+  public int latency;
+
+  private HttpServer server;
+
+  private ExecutorService serverThreads;
+
+  private ExecutorService vehicleThreads;
+
+  private URI endpoint;
+
+  private MessageCoder<MP_UserLoggingInReq> requestCoder;
+
+  private MessageCoder<MP_UserLoggingInResp> responseCoder;
+
+  private Message<MP_UserLoggingInReq> request;
+
+  @Setup
+  public void setup() throws IOException {
+    requestCoder = MessageCoder.of(MP_UserLoggingInReq.class);
+    responseCoder = MessageCoder.of(MP_UserLoggingInResp.class);
+    MP_UserLoggingInReq loginRequest = new MP_UserLoggingInReq();
+    loginRequest.setPassword("password");
+    request =
+        requestCoder.initializeMessage(
+            "0000000000000000000000000000000000000000000000000#",
+            null,
+            null,
+            "501",
+            513,
+            1,
+            loginRequest);
+    MP_UserLoggingInResp loginResponse = new MP_UserLoggingInResp();
+    loginResponse.setUserName("username");
+    byte[] response =
+        responseCoder
+            .encodeRequest(
+                responseCoder.initializeMessage(
+                    "0000000000000000000000000000000000000000000000000#",
+                    null,
+                    null,
+                    "501",
+                    513,
+                    2,
+                    loginResponse))
+            .getBytes(StandardCharsets.US_ASCII);
+
+    server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1000);
+    serverThreads = Executors.newCachedThreadPool();
+    server.setExecutor(serverThreads);
+    server.createContext(
+        "/TAP.Web/ota.mp",
+        exchange -> {
+          try (InputStream in = exchange.getRequestBody()) {
+            in.transferTo(OutputStream.nullOutputStream());
+          }
+          try {
+            Thread.sleep(latency);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+          exchange.sendResponseHeaders(200, response.length);
+          try (OutputStream out = exchange.getResponseBody()) {
+            out.write(response);
+          }
+        });
+    server.start();
+    endpoint = URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/TAP.Web/ota.mp");
+
+    vehicleThreads = Executors.newFixedThreadPool(vehicles);
+  }
+
+  @TearDown
+  public void tearDown() {
+    vehicleThreads.shutdownNow();
+    server.stop(0);
+    serverThreads.shutdownNow();
+  }
+
+  @Benchmark
+  public int blockingClient() throws InterruptedException, ExecutionException {
+    List<Future<Message<MP_UserLoggingInResp>>> responses = new ArrayList<>(vehicles);
+    for (int i = 0; i < vehicles; i++) {
+      responses.add(
+          vehicleThreads.submit(
+              () -> Client.sendRequest(endpoint, request, requestCoder, responseCoder)));
+    }
+    int received = 0;
+    for (Future<Message<MP_UserLoggingInResp>> response : responses) {
+      if (response.get().getApplicationData() != null) {
+        received++;
+      }
+    }
+    return received;
+  }
+
+  @Benchmark
+  public int asyncClient() {
+    List<CompletableFuture<Message<MP_UserLoggingInResp>>> responses = new ArrayList<>(vehicles);
+    for (int i = 0; i < vehicles; i++) {
+      responses.add(AsyncClient.sendRequest(endpoint, request, requestCoder, responseCoder));
+    }
+    int received = 0;
+    for (CompletableFuture<Message<MP_UserLoggingInResp>> response : responses) {
+      if (response.join().getApplicationData() != null) {
+        received++;
+      }
+    }
+    return received;
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    Options options =
+        new OptionsBuilder().include(AsyncClientBenchmark.class.getSimpleName()).build();
+    new Runner(options).run();
+  }
+}
@@ -0,0 +1,165 @@
+package net.heberling.ismart;
+
+import com.sun.net.httpserver.HttpsConfigurator;
+import com.sun.net.httpserver.HttpsServer;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import javax.net.ssl.SSLContext;
+import org.apache.hc.client5.http.classic.methods.HttpPost;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.ssl.SSLConnectionSocketFactoryBuilder;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.io.entity.EntityUtils;
+import org.apache.hc.core5.http.io.entity.StringEntity;
+import org.apache.hc.core5.ssl.SSLContexts;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures the latency of a poll, a POST of a hex encoded message, against a local HTTPS stand-in
+ * for the SAIC API. A client created and closed for every request, like before, pays for the TCP
+ * and TLS handshake every time, the shared pooled client only once.
+ *
+ * <p>The self-signed certificate of the server is created with the <code>keytool</code> of the JVM.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HttpClientBenchmark {
+  private static final char[] PASSWORD = "benchmark".toCharArray();
+
+  private static final String REQUEST = "1000" + "00".repeat(100);
+
+  private Path keyStore;
+
+  private HttpsServer server;
+
+  private SSLContext clientContext;
+
+  private CloseableHttpClient sharedClient;
+
+  private URI endpoint;
+
+  @Setup
+  public void setup() throws Exception {
+    keyStore = Files.createTempFile("benchmark", ".p12");
+    Files.delete(keyStore);
+    Process keytool =
+        new ProcessBuilder(
+                Path.of(System.getProperty("java.home"), "bin", "keytool").toString(),
+                "-genkeypair",
+                "-alias",
+                "localhost",
+                "-keyalg",
+                "EC",
+                "-dname",
+                "CN=localhost",
+                "-ext",
+                "SAN=dns:localhost,ip:127.0.0.1",
+                "-validity",
+                "1",
+                "-storetype",
+                "PKCS12",
+                "-keystore",
+                keyStore.toString(),
+                "-storepass",
+                new String(PASSWORD))
+            .inheritIO()
+            .start();
+    if (keytool.waitFor() != 0) {
+      throw new IOException("Could not create the certificate of the server");
+    }
+    File keyStoreFile = keyStore.toFile();
+
+    server = HttpsServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+    server.setHttpsConfigurator(
+        new HttpsConfigurator(
+            SSLContexts.custom().loadKeyMaterial(keyStoreFile, PASSWORD, PASSWORD).build()));
+    server.createContext(
+        "/TAP.Web/ota.mp",
+        exchange -> {
+          try (InputStream in = exchange.getRequestBody()) {
+            in.transferTo(OutputStream.nullOutputStream());
+          }
+          byte[] response = REQUEST.getBytes(StandardCharsets.US_ASCII);
+          exchange.sendResponseHeaders(200, response.length);
+          try (OutputStream out = exchange.getResponseBody()) {
+            out.write(response);
+          }
+        });
+    server.start();
+    endpoint = URI.create("https://127.0.0.1:" + server.getAddress().getPort() + "/TAP.Web/ota.mp");
+
+    clientContext = SSLContexts.custom().loadTrustMaterial(keyStoreFile, PASSWORD).build();
+    sharedClient = HttpClientSettings.DEFAULT.createClient(clientContext);
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    sharedClient.close();
+    server.stop(0);
+    Files.deleteIfExists(keyStore);
+  }
+
+  /** A new client for every request, like <code>HttpClients.createDefault()</code> did. */
+  @Benchmark
+  public String perRequestClient() throws IOException {
+    try (CloseableHttpClient client =
+        HttpClients.custom()
+            .setConnectionManager(
+                PoolingHttpClientConnectionManagerBuilder.create()
+                    .setSSLSocketFactory(
+                        SSLConnectionSocketFactoryBuilder.create()
+                            .setSslContext(clientContext)
+                            .build())
+                    .build())
+            .build()) {
+      return poll(client);
+    }
+  }
+
+  /** The pooled client, that keeps its connection alive between requests. */
+  @Benchmark
+  public String sharedClient() throws IOException {
+    return poll(sharedClient);
+  }
+
+  private String poll(CloseableHttpClient client) throws IOException {
+    HttpPost post = new HttpPost(endpoint);
+    post.setEntity(new StringEntity(REQUEST, ContentType.TEXT_HTML));
+    return client.execute(post, response -> EntityUtils.toString(response.getEntity()));
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    Options options =
+        new OptionsBuilder().include(HttpClientBenchmark.class.getSimpleName()).build();
+    new Runner(options).run();
+  }
+}
@@ -0,0 +1,74 @@
+package net.heberling.ismart.asn1;
+
+import java.util.concurrent.TimeUnit;
+import net.heberling.ismart.asn1.v1_1.Message;
+import net.heberling.ismart.asn1.v1_1.MessageCoder;
+import net.heberling.ismart.asn1.v1_1.entity.MessageListResp;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures the overhead of the {@link DecodeLimits} for a well-formed <code>MessageListResp</code>
+ * with strings, octet strings and nested sequences. The limits of <code>tight</code> are just large
+ * enough for the message.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DecodeLimitsBenchmark {
+
+  @Param({"unlimited", "default", "tight"})
+  public String limitsName;
+
+  private MessageCoder<MessageListResp> coder;
+
+  private DecodeLimits limits;
+
+  private String encoded;
+
+  @Setup
+  public void setup() {
+    switch (limitsName) {
+      case "unlimited":
+        limits = DecodeLimits.UNLIMITED;
+        break;
+      case "default":
+        limits = DecodeLimits.DEFAULT;
+        break;
+      case "tight":
+        limits = new DecodeLimits(4096, 128, 32, 3);
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown limits: " + limitsName);
+    }
+    coder = MessageCoder.of(MessageListResp.class);
+    encoded = SequenceOfVisitorBenchmark.encodeMessageList(32);
+  }
+
+  @Benchmark
+  public Message<MessageListResp> decodeResponse() {
+    return coder.decodeResponse(encoded, limits);
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    Options options =
+        new OptionsBuilder().include(DecodeLimitsBenchmark.class.getSimpleName()).build();
+    new Runner(options).run();
+  }
+}
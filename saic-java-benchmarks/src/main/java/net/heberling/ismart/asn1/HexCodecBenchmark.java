@@ -0,0 +1,92 @@
+package net.heberling.ismart.asn1;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the {@link HexCodec} implementations with message sized data, as characters of a string
+ * like {@link AbstractMessageCoder#decodeResponse(String)} and as ASCII bytes of a stream.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HexCodecBenchmark {
+
+  @Param({"lookup", "swar"})
+  public String codecName;
+
+  @Param({"64", "1024"})
+  public int size;
+
+  private HexCodec codec;
+
+  private byte[] bytes;
+
+  private String hex;
+
+  private byte[] asciiHex;
+
+  private char[] chars;
+
+  @Setup
+  public void setup() {
+    codec = HexCodec.of(codecName);
+    bytes = new byte[size];
+    new Random(42).nextBytes(bytes);
+    chars = new char[size * 2];
+    HexCodec.LOOKUP.encode(bytes, 0, size, chars, 0);
+    hex = new String(chars);
+    asciiHex = hex.getBytes(StandardCharsets.US_ASCII);
+  }
+
+  @Benchmark
+  public char[] encodeChars() {
+    codec.encode(bytes, 0, size, chars, 0);
+    return chars;
+  }
+
+  @Benchmark
+  public byte[] encodeAscii() {
+    byte[] target = new byte[size * 2];
+    codec.encode(bytes, 0, size, target, 0);
+    return target;
+  }
+
+  @Benchmark
+  public byte[] decodeString() {
+    byte[] target = new byte[size];
+    codec.decode(hex, 0, target, 0, size);
+    return target;
+  }
+
+  @Benchmark
+  public byte[] decodeAscii() {
+    byte[] target = new byte[size];
+    codec.decode(asciiHex, 0, target, 0, size);
+    return target;
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    Options options = new OptionsBuilder().include(HexCodecBenchmark.class.getSimpleName()).build();
+    new Runner(options).run();
+  }
+}
@@ -0,0 +1,84 @@
+package net.heberling.ismart.asn1;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/** Encodes and decodes the example messages with {@link JerCodec}, compared to PER. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JerCodecBenchmark {
+
+  @Param({
+    "v1_1/501_513_response",
+    "v1_1/531_513_response",
+    "v2_1/511_25857_response",
+    "v3_0/516_768_response"
+  })
+  public String example;
+
+  private AbstractMessageCoder<?, ?, ?, AbstractMessage<?, ?, ?>> coder;
+
+  private AbstractMessage<?, ?, ?> message;
+
+  private String per;
+
+  private String jer;
+
+  @Setup
+  public void setup() {
+    coder = MessageCoderBenchmark.coderFor(example);
+    per = MessageCoderBenchmark.readExample(example);
+    message = coder.decodeResponse(per);
+    jer = JerCodec.encodeMessage(message);
+  }
+
+  @Benchmark
+  public String encodeJer() {
+    return JerCodec.encodeMessage(message);
+  }
+
+  @Benchmark
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  public AbstractMessage<?, ?, ?> decodeJer() {
+    // the wildcards of the coder can't be captured for decodeMessage
+    return JerCodec.decodeMessage(jer, (AbstractMessageCoder) coder);
+  }
+
+  @Benchmark
+  public String encodePer() {
+    return coder.encodeRequest(message);
+  }
+
+  @Benchmark
+  public AbstractMessage<?, ?, ?> decodePer() {
+    return coder.decodeResponse(per);
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    Options options =
+        new OptionsBuilder()
+            .include(JerCodecBenchmark.class.getSimpleName())
+            .addProfiler(GCProfiler.class)
+            .build();
+    new Runner(options).run();
+  }
+}
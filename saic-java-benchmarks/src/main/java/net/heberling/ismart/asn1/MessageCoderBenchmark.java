@@ -0,0 +1,129 @@
+package net.heberling.ismart.asn1;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import net.heberling.ismart.asn1.v1_1.entity.MP_UserLoggingInResp;
+import net.heberling.ismart.asn1.v1_1.entity.MessageListResp;
+import net.heberling.ismart.asn1.v2_1.entity.OTA_RVMVehicleStatusResp25857;
+import net.heberling.ismart.asn1.v3_0.entity.OTA_ChrgMangDataResp;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures {@link AbstractMessageCoder#encodeRequest} and {@link
+ * AbstractMessageCoder#decodeResponse} for the captured messages in <code>docs/examples</code>.
+ *
+ * <p>Run with <code>java -jar saic-java-benchmarks/target/saic-ismart-benchmarks-*-full.jar
+ * </code> or via {@link #main(String[])}, which adds the GC profiler to report the allocation rate
+ * per operation. The examples directory can be overridden with <code>-Dexamples.dir=...</code>.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MessageCoderBenchmark {
+
+  @Param({
+    "v1_1/501_513_response",
+    "v1_1/531_513_response",
+    "v2_1/511_25857_response",
+    "v3_0/516_768_response"
+  })
+  public String example;
+
+  private AbstractMessageCoder<?, ?, ?, AbstractMessage<?, ?, ?>> coder;
+
+  private String encoded;
+
+  private AbstractMessage<?, ?, ?> decoded;
+
+  @Setup
+  public void setup() {
+    coder = coderFor(example);
+    encoded = readExample(example);
+    decoded = coder.decodeResponse(encoded);
+  }
+
+  @Benchmark
+  public AbstractMessage<?, ?, ?> decodeResponse() {
+    return coder.decodeResponse(encoded);
+  }
+
+  @Benchmark
+  public String encodeRequest() {
+    return coder.encodeRequest(decoded);
+  }
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  static AbstractMessageCoder<?, ?, ?, AbstractMessage<?, ?, ?>> coderFor(String example) {
+    switch (example) {
+      case "v1_1/501_513_response":
+        return (AbstractMessageCoder)
+            new net.heberling.ismart.asn1.v1_1.MessageCoder<>(MP_UserLoggingInResp.class);
+      case "v1_1/531_513_response":
+        return (AbstractMessageCoder)
+            new net.heberling.ismart.asn1.v1_1.MessageCoder<>(MessageListResp.class);
+      case "v2_1/511_25857_response":
+        return (AbstractMessageCoder)
+            new net.heberling.ismart.asn1.v2_1.MessageCoder<>(OTA_RVMVehicleStatusResp25857.class);
+      case "v3_0/516_768_response":
+        return (AbstractMessageCoder)
+            new net.heberling.ismart.asn1.v3_0.MessageCoder<>(OTA_ChrgMangDataResp.class);
+      default:
+        throw new IllegalArgumentException("Unknown example: " + example);
+    }
+  }
+
+  static String readExample(String example) {
+    File file = new File(examplesDirectory(), example + ".per");
+    try {
+      return Files.readString(file.toPath()).trim();
+    } catch (IOException e) {
+      throw new UncheckedIOException("Could not read example " + file, e);
+    }
+  }
+
+  static File examplesDirectory() {
+    String configured = System.getProperty("examples.dir");
+    if (configured != null) {
+      return new File(configured);
+    }
+    File directory = new File(System.getProperty("user.dir")).getAbsoluteFile();
+    while (directory != null && !new File(directory, "docs/examples").isDirectory()) {
+      directory = directory.getParentFile();
+    }
+    if (directory == null) {
+      throw new IllegalStateException(
+          "Could not find docs/examples, please set -Dexamples.dir=<path to docs/examples>");
+    }
+    return new File(directory, "docs/examples");
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    Options options =
+        new OptionsBuilder()
+            .include(MessageCoderBenchmark.class.getSimpleName())
+            .addProfiler(GCProfiler.class)
+            .build();
+    new Runner(options).run();
+  }
+}
@@ -0,0 +1,74 @@
+package net.heberling.ismart.asn1;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares a {@link MessageCopier#copy(AbstractMessage)} with the encode and decode round trip,
+ * that was used to copy messages before they are anonymized for logging.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MessageCopyBenchmark {
+
+  @Param({
+    "v1_1/501_513_response",
+    "v1_1/531_513_response",
+    "v2_1/511_25857_response",
+    "v3_0/516_768_response"
+  })
+  public String example;
+
+  private AbstractMessageCoder<?, ?, ?, AbstractMessage<?, ?, ?>> coder;
+
+  private AbstractMessage<?, ?, ?> message;
+
+  @Setup
+  public void setup() {
+    coder = MessageCoderBenchmark.coderFor(example);
+    message = coder.decodeResponse(MessageCoderBenchmark.readExample(example));
+  }
+
+  @Benchmark
+  public AbstractMessage<?, ?, ?> copy() {
+    return MessageCopier.copy(message);
+  }
+
+  @Benchmark
+  public AbstractMessage<?, ?, ?> encodeDecode() {
+    return coder.decodeResponse(coder.encodeRequest(message));
+  }
+
+  @Benchmark
+  public AbstractMessage<?, ?, ?> anonymized() {
+    return Anonymizer.anonymized(message);
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    Options options =
+        new OptionsBuilder()
+            .include(MessageCopyBenchmark.class.getSimpleName())
+            .addProfiler(GCProfiler.class)
+            .build();
+    new Runner(options).run();
+  }
+}
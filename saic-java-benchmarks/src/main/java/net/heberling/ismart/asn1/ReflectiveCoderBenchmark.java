@@ -0,0 +1,83 @@
+package net.heberling.ismart.asn1;
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.TimeUnit;
+import net.heberling.ismart.asn1.v1_1.DataEncodingType;
+import net.heberling.ismart.asn1.v1_1.MP_DispatcherBody;
+import net.heberling.ismart.asn1.v1_1.MessageCoder;
+import net.heberling.ismart.asn1.v1_1.entity.MP_UserLoggingInReq;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures the reflective binarynotes coders, that are used for types without a generated {@link
+ * PerCodec}, with a string heavy <code>MP_DispatcherBody</code> (uid, token, vin, iccID, ...).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ReflectiveCoderBenchmark {
+
+  private MP_DispatcherBody body;
+
+  private byte[] encoded;
+
+  @Setup
+  public void setup() throws Exception {
+    body =
+        new MessageCoder<>(MP_UserLoggingInReq.class)
+            .initializeMessage(
+                "0000000000000000000000000000000000000000000000#1234",
+                "0000000000000000000000000000000000000000",
+                "LSJA0000000000000",
+                "501",
+                513,
+                1,
+                null)
+            .getBody();
+    body.setUid(body.getUid().substring(0, 50));
+    body.setApplicationDataLength(0L);
+    DataEncodingType dataEncoding = new DataEncodingType();
+    dataEncoding.setValue(DataEncodingType.EnumType.perUnaligned);
+    body.setApplicationDataEncoding(dataEncoding);
+    encoded = encodeDispatcherBody();
+  }
+
+  @Benchmark
+  public byte[] encodeDispatcherBody() throws Exception {
+    PerBitOutputStream stream = new PerBitOutputStream();
+    new AbstractMessageCoder.MyPERUnalignedEncoder().encode(body, stream);
+    return stream.toByteArray();
+  }
+
+  @Benchmark
+  public MP_DispatcherBody decodeDispatcherBody() throws Exception {
+    return new AbstractMessageCoder.MyPERUnalignedDecoder()
+        .decode(new ByteArrayInputStream(encoded), MP_DispatcherBody.class);
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    Options options =
+        new OptionsBuilder()
+            .include(ReflectiveCoderBenchmark.class.getSimpleName())
+            .addProfiler(GCProfiler.class)
+            .build();
+    new Runner(options).run();
+  }
+}
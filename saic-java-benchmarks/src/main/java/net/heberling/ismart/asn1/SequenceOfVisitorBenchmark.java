@@ -0,0 +1,132 @@
+package net.heberling.ismart.asn1;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import net.heberling.ismart.asn1.v1_1.Message;
+import net.heberling.ismart.asn1.v1_1.MessageCoder;
+import net.heberling.ismart.asn1.v1_1.entity.MessageListResp;
+import net.heberling.ismart.asn1.v1_1.entity.Timestamp;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares decoding a <code>MessageListResp</code> into a list with visiting its messages one at a
+ * time, like the message poller of the MQTT gateway does.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SequenceOfVisitorBenchmark {
+
+  @Param({"5", "64"})
+  public int messages;
+
+  private MessageCoder<MessageListResp> coder;
+
+  private String encoded;
+
+  @Setup
+  public void setup() {
+    coder = MessageCoder.of(MessageListResp.class);
+    encoded = encodeMessageList(messages);
+  }
+
+  /** Decodes the list and converts the text of every message, like the poller used to. */
+  @Benchmark
+  public void decodeList(Blackhole blackhole) {
+    for (net.heberling.ismart.asn1.v1_1.entity.Message message :
+        coder.decodeResponse(encoded).getApplicationData().getMessages()) {
+      blackhole.consume(new String(message.getTitle(), StandardCharsets.UTF_8));
+      blackhole.consume(new String(message.getContent(), StandardCharsets.UTF_8));
+    }
+  }
+
+  /** Visits all messages, but only converts the text of the first one. */
+  @Benchmark
+  public Message<MessageListResp> visitItems(Blackhole blackhole) {
+    return coder.decodeResponse(
+        encoded,
+        net.heberling.ismart.asn1.v1_1.entity.Message.class,
+        message -> {
+          if (message.getMessageId() == 0) {
+            blackhole.consume(new String(message.getTitle(), StandardCharsets.UTF_8));
+            blackhole.consume(new String(message.getContent(), StandardCharsets.UTF_8));
+          }
+          return true;
+        });
+  }
+
+  /** Stops after the first message. */
+  @Benchmark
+  public Message<MessageListResp> stopAfterFirst(Blackhole blackhole) {
+    return coder.decodeResponse(
+        encoded,
+        net.heberling.ismart.asn1.v1_1.entity.Message.class,
+        message -> {
+          blackhole.consume(message);
+          return false;
+        });
+  }
+
+  /** Returns a hex encoded <code>MessageListResp</code> with the given number of messages. */
+  static String encodeMessageList(int count) {
+    List<net.heberling.ismart.asn1.v1_1.entity.Message> messages = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      net.heberling.ismart.asn1.v1_1.entity.Message message =
+          new net.heberling.ismart.asn1.v1_1.entity.Message();
+      message.setMessageId((long) i);
+      message.setMessageType("323");
+      message.setTitle(("Title " + i).getBytes(StandardCharsets.UTF_8));
+      Timestamp time = new Timestamp();
+      time.setSeconds(1700000000L + i);
+      message.setMessageTime(time);
+      message.setSender("Sender".getBytes(StandardCharsets.UTF_8));
+      message.setContent(("Content of message " + i).getBytes(StandardCharsets.UTF_8));
+      message.setVin("LSJA0000000000000");
+      messages.add(message);
+    }
+    MessageListResp response = new MessageListResp();
+    response.setRecordsNumber((long) messages.size());
+    response.setMessages(messages);
+
+    MessageCoder<MessageListResp> coder = MessageCoder.of(MessageListResp.class);
+    return coder.encodeRequest(
+        coder.initializeMessage(
+            "0000000000000000000000000000000000000000000000000#",
+            null,
+            null,
+            "531",
+            513,
+            2,
+            response));
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    Options options =
+        new OptionsBuilder()
+            .include(SequenceOfVisitorBenchmark.class.getSimpleName())
+            .addProfiler(GCProfiler.class)
+            .build();
+    new Runner(options).run();
+  }
+}
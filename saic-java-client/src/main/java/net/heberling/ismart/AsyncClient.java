@@ -0,0 +1,131 @@
+package net.heberling.ismart;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.util.concurrent.CompletableFuture;
+import net.heberling.ismart.asn1.AbstractMessage;
+import net.heberling.ismart.asn1.AbstractMessageCoder;
+import net.heberling.ismart.asn1.PreparedRequest;
+import org.apache.hc.client5.http.ClientProtocolException;
+import org.apache.hc.client5.http.async.methods.SimpleHttpResponse;
+import org.apache.hc.client5.http.async.methods.SimpleResponseConsumer;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.HttpStatus;
+import org.apache.hc.core5.http.nio.AsyncRequestProducer;
+import org.apache.hc.core5.http.nio.entity.AsyncEntityProducers;
+import org.apache.hc.core5.http.nio.support.AsyncRequestBuilder;
+
+/**
+ * Non-blocking variant of {@link Client}. Requests are sent by a few I/O threads, so many requests
+ * can be in flight without a thread waiting for each of them.
+ *
+ * <p>The responses are decoded on the I/O threads, that complete the futures. Blocking work should
+ * be chained with the async methods of {@link CompletableFuture} and an executor.
+ */
+public class AsyncClient {
+  /**
+   * Returns the async HTTP client, that is shared by all requests. It is created and started with
+   * the {@link HttpClientSettings#DEFAULT} settings on first use and runs until the JVM exits.
+   */
+  public static CloseableHttpAsyncClient getHttpAsyncClient() {
+    return SharedHttpAsyncClient.INSTANCE;
+  }
+
+  /**
+   * Sends the request and decodes the response.
+   *
+   * @return a future of the decoded response or <code>null</code>, if the response has no entity
+   */
+  public static <Q extends AbstractMessage<?, ?, ?>, R extends AbstractMessage<?, ?, ?>>
+      CompletableFuture<R> sendRequest(
+          URI endpoint,
+          Q request,
+          AbstractMessageCoder<?, ?, ?, Q> requestCoder,
+          AbstractMessageCoder<?, ?, ?, R> responseCoder) {
+    byte[] hex;
+    try {
+      hex = requestCoder.encodeRequestBytes(request);
+    } catch (RuntimeException e) {
+      return CompletableFuture.failedFuture(e);
+    }
+    return execute(endpoint, hex, responseCoder);
+  }
+
+  /**
+   * Sends the prepared request and decodes the response, like {@link #sendRequest(URI,
+   * AbstractMessage, AbstractMessageCoder, AbstractMessageCoder)}. Use this in polling loops, so
+   * the request is not encoded again for every retry.
+   */
+  public static <Q extends AbstractMessage<?, ?, ?>, R extends AbstractMessage<?, ?, ?>>
+      CompletableFuture<R> sendRequest(
+          URI endpoint,
+          PreparedRequest<Q> request,
+          AbstractMessageCoder<?, ?, ?, R> responseCoder) {
+    byte[] hex;
+    try {
+      hex = request.encodeRequestBytes();
+    } catch (RuntimeException e) {
+      return CompletableFuture.failedFuture(e);
+    }
+    return execute(endpoint, hex, responseCoder);
+  }
+
+  private static <R extends AbstractMessage<?, ?, ?>> CompletableFuture<R> execute(
+      URI endpoint, byte[] request, AbstractMessageCoder<?, ?, ?, R> responseCoder) {
+    AsyncRequestProducer producer =
+        AsyncRequestBuilder.post(endpoint)
+            .setEntity(AsyncEntityProducers.create(request, ContentType.TEXT_HTML))
+            .build();
+    CompletableFuture<R> result = new CompletableFuture<>();
+    CloseableHttpAsyncClient httpclient = getHttpAsyncClient();
+    httpclient.execute(
+        producer,
+        SimpleResponseConsumer.create(),
+        new FutureCallback<>() {
+          @Override
+          public void completed(SimpleHttpResponse response) {
+            try {
+              result.complete(read(response, responseCoder));
+            } catch (IOException | RuntimeException e) {
+              result.completeExceptionally(e);
+            }
+          }
+
+          @Override
+          public void failed(Exception e) {
+            result.completeExceptionally(e);
+          }
+
+          @Override
+          public void cancelled() {
+            result.cancel(false);
+          }
+        });
+    return result;
+  }
+
+  private static <R extends AbstractMessage<?, ?, ?>> R read(
+      SimpleHttpResponse response, AbstractMessageCoder<?, ?, ?, R> responseCoder)
+      throws IOException {
+    final int status = response.getCode();
+    if (status < HttpStatus.SC_SUCCESS || status >= HttpStatus.SC_REDIRECTION) {
+      throw new ClientProtocolException("Unexpected response status: " + status);
+    }
+    byte[] body = response.getBodyBytes();
+    return body != null ? responseCoder.readResponse(new ByteArrayInputStream(body)) : null;
+  }
+
+  /** Creates and starts the shared client when it is first used. */
+  private static final class SharedHttpAsyncClient {
+    private static final CloseableHttpAsyncClient INSTANCE = start();
+
+    private static CloseableHttpAsyncClient start() {
+      CloseableHttpAsyncClient client = HttpClientSettings.DEFAULT.createAsyncClient();
+      client.start();
+      return client;
+    }
+  }
+}
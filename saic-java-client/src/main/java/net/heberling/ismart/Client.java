@@ -1,43 +1,149 @@
 package net.heberling.ismart;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
+import net.heberling.ismart.asn1.AbstractMessage;
+import net.heberling.ismart.asn1.AbstractMessageCoder;
+import net.heberling.ismart.asn1.PreparedRequest;
+import net.heberling.ismart.asn1.SequenceOfVisitor;
 import org.apache.hc.client5.http.ClientProtocolException;
 import org.apache.hc.client5.http.classic.methods.HttpPost;
 import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
-import org.apache.hc.client5.http.impl.classic.HttpClients;
 import org.apache.hc.core5.http.ContentType;
 import org.apache.hc.core5.http.HttpEntity;
 import org.apache.hc.core5.http.HttpStatus;
 import org.apache.hc.core5.http.ParseException;
 import org.apache.hc.core5.http.io.HttpClientResponseHandler;
+import org.apache.hc.core5.http.io.entity.ByteArrayEntity;
 import org.apache.hc.core5.http.io.entity.EntityUtils;
 import org.apache.hc.core5.http.io.entity.StringEntity;
 
 public class Client {
+  /**
+   * Returns the HTTP client, that is shared by all requests to the SAIC API and ABRP. It is created
+   * with the {@link HttpClientSettings#DEFAULT} settings on first use and keeps its connections
+   * alive until the JVM exits.
+   */
+  public static CloseableHttpClient getHttpClient() {
+    return SharedHttpClient.INSTANCE;
+  }
+
   public static String sendRequest(URI endpoint, String request) throws IOException {
-    try (CloseableHttpClient httpclient = HttpClients.createDefault()) {
-      HttpPost httppost = new HttpPost(endpoint);
-      // Request parameters and other properties.
-      httppost.setEntity(new StringEntity(request, ContentType.TEXT_HTML));
-
-      // Execute and get the response.
-      // Create a custom response handler
-      HttpClientResponseHandler<String> responseHandler =
-          response -> {
-            final int status = response.getCode();
-            if (status >= HttpStatus.SC_SUCCESS && status < HttpStatus.SC_REDIRECTION) {
-              final HttpEntity entity = response.getEntity();
-              try {
-                return entity != null ? EntityUtils.toString(entity) : null;
-              } catch (final ParseException ex) {
-                throw new ClientProtocolException(ex);
-              }
-            } else {
-              throw new ClientProtocolException("Unexpected response status: " + status);
-            }
-          };
-      return httpclient.execute(httppost, responseHandler);
-    }
+    return execute(
+        endpoint,
+        new StringEntity(request, ContentType.TEXT_HTML),
+        entity -> {
+          try {
+            return EntityUtils.toString(entity);
+          } catch (final ParseException ex) {
+            throw new ClientProtocolException(ex);
+          }
+        });
+  }
+
+  /**
+   * Sends the request and decodes the response. The request is encoded once into its hex
+   * representation, the response is decoded while it is read from the HTTP entity.
+   *
+   * @return the decoded response or <code>null</code>, if the response has no entity
+   */
+  public static <Q extends AbstractMessage<?, ?, ?>, R extends AbstractMessage<?, ?, ?>>
+      R sendRequest(
+          URI endpoint,
+          Q request,
+          AbstractMessageCoder<?, ?, ?, Q> requestCoder,
+          AbstractMessageCoder<?, ?, ?, R> responseCoder)
+          throws IOException {
+    return execute(
+        endpoint,
+        messageEntity(requestCoder.encodeRequestBytes(request)),
+        entity -> {
+          try (InputStream content = entity.getContent()) {
+            return responseCoder.readResponse(content);
+          }
+        });
+  }
+
+  /**
+   * Sends the request and decodes the response, like {@link #sendRequest(URI, AbstractMessage,
+   * AbstractMessageCoder, AbstractMessageCoder)}, but passes the items of all <code>SEQUENCE OF
+   * </code>s with the given item type one at a time to the visitor.
+   *
+   * @return the decoded response or <code>null</code>, if the response has no entity or the visitor
+   *     stopped decoding
+   * @see AbstractMessageCoder#readResponse(InputStream, Class, SequenceOfVisitor)
+   */
+  public static <Q extends AbstractMessage<?, ?, ?>, R extends AbstractMessage<?, ?, ?>, T>
+      R sendRequest(
+          URI endpoint,
+          Q request,
+          AbstractMessageCoder<?, ?, ?, Q> requestCoder,
+          AbstractMessageCoder<?, ?, ?, R> responseCoder,
+          Class<T> itemType,
+          SequenceOfVisitor<? super T> visitor)
+          throws IOException {
+    return execute(
+        endpoint,
+        messageEntity(requestCoder.encodeRequestBytes(request)),
+        entity -> {
+          try (InputStream content = entity.getContent()) {
+            return responseCoder.readResponse(content, itemType, visitor);
+          }
+        });
+  }
+
+  /**
+   * Sends the prepared request and decodes the response, like {@link #sendRequest(URI,
+   * AbstractMessage, AbstractMessageCoder, AbstractMessageCoder)}. Use this in polling loops, so
+   * the request is not encoded again for every retry.
+   */
+  public static <Q extends AbstractMessage<?, ?, ?>, R extends AbstractMessage<?, ?, ?>>
+      R sendRequest(
+          URI endpoint, PreparedRequest<Q> request, AbstractMessageCoder<?, ?, ?, R> responseCoder)
+          throws IOException {
+    return execute(
+        endpoint,
+        messageEntity(request.encodeRequestBytes()),
+        entity -> {
+          try (InputStream content = entity.getContent()) {
+            return responseCoder.readResponse(content);
+          }
+        });
+  }
+
+  private static <T> T execute(URI endpoint, HttpEntity request, EntityReader<T> reader)
+      throws IOException {
+    HttpPost httppost = new HttpPost(endpoint);
+    // Request parameters and other properties.
+    httppost.setEntity(request);
+
+    // Execute and get the response.
+    // Create a custom response handler, the connection is released to the pool after it returns
+    HttpClientResponseHandler<T> responseHandler =
+        response -> {
+          final int status = response.getCode();
+          if (status >= HttpStatus.SC_SUCCESS && status < HttpStatus.SC_REDIRECTION) {
+            final HttpEntity entity = response.getEntity();
+            return entity != null ? reader.read(entity) : null;
+          } else {
+            throw new ClientProtocolException("Unexpected response status: " + status);
+          }
+        };
+    return getHttpClient().execute(httppost, responseHandler);
+  }
+
+  /** Creates the shared client when it is first used. */
+  private static final class SharedHttpClient {
+    private static final CloseableHttpClient INSTANCE = HttpClientSettings.DEFAULT.createClient();
+  }
+
+  private interface EntityReader<T> {
+    T read(HttpEntity entity) throws IOException;
+  }
+
+  /** The entity sends the encoded message without copying it. */
+  private static HttpEntity messageEntity(byte[] hex) {
+    return new ByteArrayEntity(hex, ContentType.TEXT_HTML);
   }
 }
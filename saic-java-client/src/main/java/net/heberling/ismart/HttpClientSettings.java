@@ -0,0 +1,169 @@
+package net.heberling.ismart;
+
+import javax.net.ssl.SSLContext;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.client5.http.impl.async.HttpAsyncClients;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.ssl.ClientTlsStrategyBuilder;
+import org.apache.hc.client5.http.ssl.SSLConnectionSocketFactoryBuilder;
+import org.apache.hc.core5.ssl.SSLContexts;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+
+/**
+ * Settings of the pooled HTTP clients, that keep connections to the SAIC API and ABRP alive between
+ * requests, so only the first request to a host pays for the TCP and TLS handshake.
+ *
+ * <p>The {@link #DEFAULT} settings are read from the system properties <code>
+ * ismart.http.maxConnections</code>, <code>ismart.http.maxConnectionsPerRoute</code>, <code>
+ * ismart.http.connectTimeout</code>, <code>ismart.http.responseTimeout</code> and <code>
+ * ismart.http.keepAlive</code>, all durations in milliseconds.
+ *
+ * @see Client#getHttpClient()
+ * @see AsyncClient#getHttpAsyncClient()
+ */
+public final class HttpClientSettings {
+  public static final HttpClientSettings DEFAULT =
+      new HttpClientSettings(
+          Integer.getInteger("ismart.http.maxConnections", 20),
+          Integer.getInteger("ismart.http.maxConnectionsPerRoute", 5),
+          Long.getLong("ismart.http.connectTimeout", 10_000),
+          Long.getLong("ismart.http.responseTimeout", 60_000),
+          Long.getLong("ismart.http.keepAlive", 60_000));
+
+  private final int maxConnections;
+  private final int maxConnectionsPerRoute;
+  private final long connectTimeout;
+  private final long responseTimeout;
+  private final long keepAlive;
+
+  /**
+   * @param maxConnections the maximum number of open connections to all hosts
+   * @param maxConnectionsPerRoute the maximum number of open connections to a single host
+   * @param connectTimeout the timeout for establishing a connection in milliseconds
+   * @param responseTimeout the timeout for waiting for a response in milliseconds
+   * @param keepAlive how long an idle connection is kept open in milliseconds, if the server
+   *     doesn't send a shorter <code>Keep-Alive</code> header
+   */
+  public HttpClientSettings(
+      int maxConnections,
+      int maxConnectionsPerRoute,
+      long connectTimeout,
+      long responseTimeout,
+      long keepAlive) {
+    if (maxConnections < 1
+        || maxConnectionsPerRoute < 1
+        || connectTimeout < 0
+        || responseTimeout < 0
+        || keepAlive < 0) {
+      throw new IllegalArgumentException("Invalid HTTP client settings");
+    }
+    this.maxConnections = maxConnections;
+    this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+    this.connectTimeout = connectTimeout;
+    this.responseTimeout = responseTimeout;
+    this.keepAlive = keepAlive;
+  }
+
+  public int getMaxConnections() {
+    return maxConnections;
+  }
+
+  public int getMaxConnectionsPerRoute() {
+    return maxConnectionsPerRoute;
+  }
+
+  public long getConnectTimeout() {
+    return connectTimeout;
+  }
+
+  public long getResponseTimeout() {
+    return responseTimeout;
+  }
+
+  public long getKeepAlive() {
+    return keepAlive;
+  }
+
+  /** Creates a client, that trusts the default certificates of the JVM. */
+  public CloseableHttpClient createClient() {
+    return createClient(SSLContexts.createSystemDefault());
+  }
+
+  /**
+   * Creates a client with its own connection pool. Idle connections are closed by a daemon thread
+   * after the keep alive time.
+   */
+  public CloseableHttpClient createClient(SSLContext sslContext) {
+    return HttpClients.custom()
+        .setConnectionManager(
+            PoolingHttpClientConnectionManagerBuilder.create()
+                .setSSLSocketFactory(
+                    SSLConnectionSocketFactoryBuilder.create().setSslContext(sslContext).build())
+                .setMaxConnTotal(maxConnections)
+                .setMaxConnPerRoute(maxConnectionsPerRoute)
+                .setDefaultConnectionConfig(connectionConfig())
+                .build())
+        .setDefaultRequestConfig(requestConfig())
+        .evictIdleConnections(TimeValue.ofMilliseconds(keepAlive))
+        .build();
+  }
+
+  /** Creates an async client, that trusts the default certificates of the JVM. */
+  public CloseableHttpAsyncClient createAsyncClient() {
+    return createAsyncClient(SSLContexts.createSystemDefault());
+  }
+
+  /**
+   * Creates an async client with its own connection pool and one I/O thread per processor. The
+   * client still has to be started.
+   */
+  public CloseableHttpAsyncClient createAsyncClient(SSLContext sslContext) {
+    return HttpAsyncClients.custom()
+        .setConnectionManager(
+            PoolingAsyncClientConnectionManagerBuilder.create()
+                .setTlsStrategy(ClientTlsStrategyBuilder.create().setSslContext(sslContext).build())
+                .setMaxConnTotal(maxConnections)
+                .setMaxConnPerRoute(maxConnectionsPerRoute)
+                .setDefaultConnectionConfig(connectionConfig())
+                .build())
+        .setDefaultRequestConfig(requestConfig())
+        .evictIdleConnections(TimeValue.ofMilliseconds(keepAlive))
+        .build();
+  }
+
+  private ConnectionConfig connectionConfig() {
+    return ConnectionConfig.custom()
+        .setConnectTimeout(Timeout.ofMilliseconds(connectTimeout))
+        .setSocketTimeout(Timeout.ofMilliseconds(responseTimeout))
+        .setValidateAfterInactivity(TimeValue.ofSeconds(2))
+        .build();
+  }
+
+  private RequestConfig requestConfig() {
+    return RequestConfig.custom()
+        .setResponseTimeout(Timeout.ofMilliseconds(responseTimeout))
+        .setConnectionKeepAlive(TimeValue.ofMilliseconds(keepAlive))
+        .build();
+  }
+
+  @Override
+  public String toString() {
+    return "HttpClientSettings{maxConnections="
+        + maxConnections
+        + ", maxConnectionsPerRoute="
+        + maxConnectionsPerRoute
+        + ", connectTimeout="
+        + connectTimeout
+        + ", responseTimeout="
+        + responseTimeout
+        + ", keepAlive="
+        + keepAlive
+        + '}';
+  }
+}
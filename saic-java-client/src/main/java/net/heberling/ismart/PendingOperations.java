@@ -0,0 +1,251 @@
+package net.heberling.ismart;
+
+import java.net.URI;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import net.heberling.ismart.asn1.AbstractMessage;
+import net.heberling.ismart.asn1.AbstractMessageCoder;
+import net.heberling.ismart.asn1.PreparedRequest;
+
+/**
+ * Polls the SAIC API for the results of operations, that are not ready yet, like the vehicle status
+ * while the car wakes up. The API answers such requests with an event ID and no application data.
+ * The request is then sent again with that event ID, after a delay, that grows with every attempt,
+ * until the result is ready or the deadline has passed.
+ *
+ * <p>The requests are sent with the {@link AsyncClient} and the delays are kept in a {@link
+ * TimerWheel}, so no thread waits for an operation and thousands of them share a few threads.
+ *
+ * <p>The {@link #DEFAULT} settings are read from the system properties <code>
+ * ismart.poll.initialDelay</code>, <code>ismart.poll.maxDelay</code>, <code>ismart.poll.timeout
+ * </code> (all in milliseconds), <code>ismart.poll.backoff</code> (the factor the delay grows with)
+ * and <code>ismart.poll.threads</code>.
+ *
+ * <p>Every instance has its own threads, close instances, that are no longer needed. The {@link
+ * #DEFAULT} instance is shared and can't be closed.
+ */
+public final class PendingOperations implements AutoCloseable {
+  private static final AtomicInteger INSTANCES = new AtomicInteger();
+
+  public static final PendingOperations DEFAULT =
+      new PendingOperations(
+          Long.getLong("ismart.poll.initialDelay", 1_000),
+          Long.getLong("ismart.poll.maxDelay", 10_000),
+          Double.parseDouble(System.getProperty("ismart.poll.backoff", "1.5")),
+          Long.getLong("ismart.poll.timeout", 180_000),
+          Integer.getInteger("ismart.poll.threads", 2));
+
+  private final long initialDelay;
+  private final long maxDelay;
+  private final double backoff;
+  private final long timeout;
+  private final ExecutorService executor;
+  private final TimerWheel wheel;
+  private final Set<Operation<?, ?>> operations = ConcurrentHashMap.newKeySet();
+  private volatile boolean closed;
+
+  /**
+   * @param initialDelay the delay before the first retry in milliseconds
+   * @param maxDelay the maximum delay between two retries in milliseconds
+   * @param backoff the factor the delay grows with after every retry
+   * @param timeout the time after the first request, when the operation fails with a {@link
+   *     TimeoutException}, in milliseconds
+   * @param threads the number of threads, that send the retries
+   */
+  public PendingOperations(
+      long initialDelay, long maxDelay, double backoff, long timeout, int threads) {
+    if (initialDelay < 1 || maxDelay < initialDelay || backoff < 1 || timeout < 0 || threads < 1) {
+      throw new IllegalArgumentException("Invalid poll settings");
+    }
+    this.initialDelay = initialDelay;
+    this.maxDelay = maxDelay;
+    this.backoff = backoff;
+    this.timeout = timeout;
+    String name = "saic-poll-" + INSTANCES.incrementAndGet();
+    AtomicInteger threadNumber = new AtomicInteger();
+    this.executor =
+        Executors.newFixedThreadPool(
+            threads,
+            runnable -> {
+              Thread thread = new Thread(runnable, name + "-" + threadNumber.incrementAndGet());
+              thread.setDaemon(true);
+              return thread;
+            });
+    // 100 ms ticks, one round of the wheel is about the default maximum delay
+    this.wheel = new TimerWheel(100, 128, executor, name + "-timer");
+  }
+
+  /**
+   * Sends the request and sends it again until the check accepts a response.
+   *
+   * <p>The check is called with every response, on a thread of the {@link AsyncClient}. It can
+   * update the message of the prepared request for the next attempt, like setting the event ID of
+   * the response, and throw an exception to fail the operation, like for an error message in the
+   * response. The request must not be used by others until the operation is completed.
+   *
+   * @return a future of the accepted response, that fails with a {@link TimeoutException} after the
+   *     timeout
+   * @throws IllegalStateException if this is closed
+   */
+  public <Q extends AbstractMessage<?, ?, ?>, R extends AbstractMessage<?, ?, ?>>
+      CompletableFuture<R> poll(
+          URI endpoint,
+          PreparedRequest<Q> request,
+          AbstractMessageCoder<?, ?, ?, R> responseCoder,
+          ResultCheck<? super R> check) {
+    return poll(
+        endpoint, request, responseCoder, check, () -> CompletableFuture.completedFuture(null));
+  }
+
+  /**
+   * Polls like {@link #poll(URI, PreparedRequest, AbstractMessageCoder, ResultCheck)}, but every
+   * attempt waits for a permit first, like one of a {@link RateLimiter}.
+   *
+   * @param permit returns a future, that completes when the next attempt may be sent
+   */
+  public <Q extends AbstractMessage<?, ?, ?>, R extends AbstractMessage<?, ?, ?>>
+      CompletableFuture<R> poll(
+          URI endpoint,
+          PreparedRequest<Q> request,
+          AbstractMessageCoder<?, ?, ?, R> responseCoder,
+          ResultCheck<? super R> check,
+          Supplier<? extends CompletableFuture<?>> permit) {
+    Operation<Q, R> operation =
+        new Operation<>(
+            endpoint,
+            request,
+            responseCoder,
+            check,
+            permit,
+            System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout));
+    operations.add(operation);
+    operation.result.whenComplete((response, throwable) -> operations.remove(operation));
+    if (closed) {
+      operation.result.cancel(false);
+      throw new IllegalStateException("Pending operations are closed");
+    }
+    // the deadline also covers waiting for a permit and for the response
+    wheel.schedule(timeout, operation::expire);
+    operation.send();
+    return operation.result;
+  }
+
+  /**
+   * Stops the threads and cancels the operations, that are still pending.
+   *
+   * @throws IllegalStateException if this is the {@link #DEFAULT} instance
+   */
+  @Override
+  public void close() {
+    if (this == DEFAULT) {
+      throw new IllegalStateException("The default pending operations can't be closed");
+    }
+    closed = true;
+    wheel.close();
+    executor.shutdown();
+    for (Operation<?, ?> operation : operations) {
+      operation.result.cancel(false);
+    }
+  }
+
+  /** Decides whether a response is the result of the operation. */
+  @FunctionalInterface
+  public interface ResultCheck<R> {
+    /**
+     * @return <code>true</code> if the response is the result, <code>false</code> to send the
+     *     request again
+     * @throws Exception to fail the operation
+     */
+    boolean isReady(R response) throws Exception;
+  }
+
+  private final class Operation<
+      Q extends AbstractMessage<?, ?, ?>, R extends AbstractMessage<?, ?, ?>> {
+    private final URI endpoint;
+    private final PreparedRequest<Q> request;
+    private final AbstractMessageCoder<?, ?, ?, R> responseCoder;
+    private final ResultCheck<? super R> check;
+    private final Supplier<? extends CompletableFuture<?>> permit;
+    private final long deadline;
+    private final CompletableFuture<R> result = new CompletableFuture<>();
+    private long delay = initialDelay;
+    private volatile CompletableFuture<?> waiting;
+
+    private Operation(
+        URI endpoint,
+        PreparedRequest<Q> request,
+        AbstractMessageCoder<?, ?, ?, R> responseCoder,
+        ResultCheck<? super R> check,
+        Supplier<? extends CompletableFuture<?>> permit,
+        long deadline) {
+      this.endpoint = endpoint;
+      this.request = request;
+      this.responseCoder = responseCoder;
+      this.check = check;
+      this.permit = permit;
+      this.deadline = deadline;
+      // give up the place in the queue of the permits, when the operation is done
+      result.whenComplete(
+          (response, throwable) -> {
+            CompletableFuture<?> granted = waiting;
+            if (granted != null) {
+              granted.cancel(false);
+            }
+          });
+    }
+
+    private void send() {
+      if (result.isDone()) {
+        // cancelled while waiting for the retry
+        return;
+      }
+      CompletableFuture<?> granted = permit.get();
+      waiting = granted;
+      if (result.isDone()) {
+        // completed while asking for the permit
+        granted.cancel(false);
+        return;
+      }
+      granted
+          .thenCompose(ignored -> AsyncClient.sendRequest(endpoint, request, responseCoder))
+          .whenComplete(
+              (response, throwable) -> {
+                if (throwable != null) {
+                  result.completeExceptionally(throwable);
+                  return;
+                }
+                try {
+                  if (check.isReady(response)) {
+                    result.complete(response);
+                  } else {
+                    retry();
+                  }
+                } catch (Exception e) {
+                  result.completeExceptionally(e);
+                }
+              });
+    }
+
+    private void retry() {
+      if (System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay) - deadline > 0) {
+        expire();
+        return;
+      }
+      wheel.schedule(delay, this::send);
+      delay = Math.min((long) (delay * backoff), maxDelay);
+    }
+
+    /** Fails the operation, unless it is done. */
+    private void expire() {
+      result.completeExceptionally(
+          new TimeoutException("No result from " + endpoint + " after " + timeout + " ms"));
+    }
+  }
+}
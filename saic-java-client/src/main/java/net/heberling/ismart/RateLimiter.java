@@ -0,0 +1,285 @@
+package net.heberling.ismart;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits the rate of the requests of an account with token buckets, one for the whole account and
+ * one for each endpoint. A request takes a token from both. Requests, that find an empty bucket,
+ * wait in a queue of their {@link Lane} until there are tokens again. Waiting {@link Lane#COMMAND}
+ * requests always get the tokens before waiting {@link Lane#BACKGROUND} requests.
+ *
+ * <p>The default budgets are read from the system properties <code>
+ * ismart.rate.account.permitsPerSecond</code>, <code>ismart.rate.account.burst</code>, <code>
+ * ismart.rate.endpoint.permitsPerSecond</code> and <code>ismart.rate.endpoint.burst</code>.
+ *
+ * <p>Instances are thread safe.
+ */
+public final class RateLimiter {
+  private static final ScheduledExecutorService SCHEDULER = createScheduler();
+
+  private final Budget accountBudget;
+  private final Budget endpointBudget;
+
+  private final AtomicLong throttled = new AtomicLong();
+
+  // guarded by this
+  private final Bucket account;
+  private final Map<String, Bucket> endpoints = new HashMap<>();
+  private final Queue<Waiter> commands = new ArrayDeque<>();
+  private final Queue<Waiter> background = new ArrayDeque<>();
+  private ScheduledFuture<?> drain;
+  private long drainTime;
+
+  /** Uses the default budgets for the account and each endpoint. */
+  public RateLimiter() {
+    this(Budget.DEFAULT_ACCOUNT, Budget.DEFAULT_ENDPOINT);
+  }
+
+  public RateLimiter(Budget accountBudget, Budget endpointBudget) {
+    this.accountBudget = accountBudget;
+    this.endpointBudget = endpointBudget;
+    this.account = new Bucket(accountBudget, System.nanoTime());
+  }
+
+  /**
+   * Takes a token for a request to the endpoint.
+   *
+   * @return a future, that completes when the request may be sent. Cancelling it gives up the place
+   *     in the queue.
+   */
+  public CompletableFuture<Void> acquire(String endpoint, Lane lane) {
+    synchronized (this) {
+      long now = System.nanoTime();
+      Bucket bucket = endpoint(endpoint, now);
+      // waiting requests of the same or a higher lane go first
+      boolean ahead = !commands.isEmpty() || (lane == Lane.BACKGROUND && !background.isEmpty());
+      if (!ahead && account.hasToken(now) && bucket.hasToken(now)) {
+        account.tryTake(now);
+        bucket.tryTake(now);
+        return CompletableFuture.completedFuture(null);
+      }
+      throttled.incrementAndGet();
+      Waiter waiter = new Waiter(endpoint);
+      (lane == Lane.COMMAND ? commands : background).add(waiter);
+      scheduleDrain(now);
+      waiter.permit.whenComplete(
+          (granted, throwable) -> {
+            if (waiter.permit.isCancelled()) {
+              cancelled();
+            }
+          });
+      return waiter.permit;
+    }
+  }
+
+  /** The requests behind a cancelled one may get a token earlier. */
+  private synchronized void cancelled() {
+    scheduleDrain(System.nanoTime());
+  }
+
+  /** Returns the number of requests, that had to wait for a token. */
+  public long getThrottled() {
+    return throttled.get();
+  }
+
+  /** Returns the number of requests, that are waiting for a token now. */
+  public synchronized int getQueued() {
+    return commands.size() + background.size();
+  }
+
+  public Budget getAccountBudget() {
+    return accountBudget;
+  }
+
+  public Budget getEndpointBudget() {
+    return endpointBudget;
+  }
+
+  private void drain() {
+    List<Waiter> ready = new ArrayList<>();
+    synchronized (this) {
+      drain = null;
+      long now = System.nanoTime();
+      take(commands, now, ready);
+      if (commands.isEmpty()) {
+        take(background, now, ready);
+      }
+      if (!commands.isEmpty() || !background.isEmpty()) {
+        scheduleDrain(now);
+      }
+    }
+    // complete outside the lock, the requests are sent by the dependent actions
+    for (Waiter waiter : ready) {
+      waiter.permit.complete(null);
+    }
+  }
+
+  /** Moves the waiters, whose endpoints have tokens, in order to the ready list. */
+  private void take(Queue<Waiter> queue, long now, List<Waiter> ready) {
+    Iterator<Waiter> iterator = queue.iterator();
+    while (iterator.hasNext()) {
+      Waiter waiter = iterator.next();
+      if (waiter.permit.isDone()) {
+        // cancelled
+        iterator.remove();
+        continue;
+      }
+      if (!account.hasToken(now)) {
+        return;
+      }
+      Bucket bucket = endpoint(waiter.endpoint, now);
+      if (bucket.tryTake(now)) {
+        account.tryTake(now);
+        iterator.remove();
+        ready.add(waiter);
+      }
+    }
+  }
+
+  /**
+   * Schedules the next drain for when the first waiter can get a token. While commands are waiting,
+   * only they can get the tokens, so the background requests don't count.
+   */
+  private void scheduleDrain(long now) {
+    commands.removeIf(waiter -> waiter.permit.isDone());
+    background.removeIf(waiter -> waiter.permit.isDone());
+    Queue<Waiter> queue = commands.isEmpty() ? background : commands;
+    if (queue.isEmpty()) {
+      return;
+    }
+    long delay = Long.MAX_VALUE;
+    for (Waiter waiter : queue) {
+      delay = Math.min(delay, endpoint(waiter.endpoint, now).nanosUntilToken(now));
+    }
+    delay = Math.max(delay, account.nanosUntilToken(now));
+    if (drain != null) {
+      if (drainTime - (now + delay) <= 0) {
+        return;
+      }
+      // a new waiter can get a token earlier
+      drain.cancel(false);
+    }
+    drainTime = now + delay;
+    drain = SCHEDULER.schedule(this::drain, delay, TimeUnit.NANOSECONDS);
+  }
+
+  private Bucket endpoint(String endpoint, long now) {
+    return endpoints.computeIfAbsent(endpoint, e -> new Bucket(endpointBudget, now));
+  }
+
+  private static ScheduledExecutorService createScheduler() {
+    ScheduledThreadPoolExecutor scheduler =
+        new ScheduledThreadPoolExecutor(
+            1,
+            runnable -> {
+              Thread thread = new Thread(runnable, "saic-rate-limiter");
+              thread.setDaemon(true);
+              return thread;
+            });
+    scheduler.setRemoveOnCancelPolicy(true);
+    return scheduler;
+  }
+
+  /** The queues of the waiting requests. */
+  public enum Lane {
+    /** Commands, that a user waits for, like locking the doors. */
+    COMMAND,
+    /** Polling of the status and the messages. */
+    BACKGROUND
+  }
+
+  /** The rate and the burst size of a token bucket. */
+  public static final class Budget {
+    public static final Budget DEFAULT_ACCOUNT =
+        new Budget(
+            Double.parseDouble(System.getProperty("ismart.rate.account.permitsPerSecond", "5")),
+            Integer.getInteger("ismart.rate.account.burst", 20));
+
+    public static final Budget DEFAULT_ENDPOINT =
+        new Budget(
+            Double.parseDouble(System.getProperty("ismart.rate.endpoint.permitsPerSecond", "3")),
+            Integer.getInteger("ismart.rate.endpoint.burst", 10));
+
+    private final double permitsPerSecond;
+    private final int burst;
+
+    /**
+     * @param permitsPerSecond the number of tokens, that are added to the bucket per second
+     * @param burst the number of tokens, the bucket can hold
+     */
+    public Budget(double permitsPerSecond, int burst) {
+      if (!(permitsPerSecond > 0) || burst < 1) {
+        throw new IllegalArgumentException("Invalid rate limit budget");
+      }
+      this.permitsPerSecond = permitsPerSecond;
+      this.burst = burst;
+    }
+
+    public double getPermitsPerSecond() {
+      return permitsPerSecond;
+    }
+
+    public int getBurst() {
+      return burst;
+    }
+  }
+
+  /** A token bucket, that starts full. Only used while holding the lock of the limiter. */
+  private static final class Bucket {
+    private final double tokensPerNano;
+    private final int burst;
+    private double tokens;
+    private long refilled;
+
+    private Bucket(Budget budget, long now) {
+      this.tokensPerNano = budget.permitsPerSecond / TimeUnit.SECONDS.toNanos(1);
+      this.burst = budget.burst;
+      this.tokens = budget.burst;
+      this.refilled = now;
+    }
+
+    private void refill(long now) {
+      tokens = Math.min(burst, tokens + (now - refilled) * tokensPerNano);
+      refilled = now;
+    }
+
+    private boolean hasToken(long now) {
+      refill(now);
+      return tokens >= 1;
+    }
+
+    private boolean tryTake(long now) {
+      if (hasToken(now)) {
+        tokens--;
+        return true;
+      }
+      return false;
+    }
+
+    private long nanosUntilToken(long now) {
+      refill(now);
+      return tokens >= 1 ? 0 : (long) Math.ceil((1 - tokens) / tokensPerNano);
+    }
+  }
+
+  private static final class Waiter {
+    private final String endpoint;
+    private final CompletableFuture<Void> permit = new CompletableFuture<>();
+
+    private Waiter(String endpoint) {
+      this.endpoint = endpoint;
+    }
+  }
+}
@@ -0,0 +1,50 @@
+package net.heberling.ismart;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Runs one operation per key at a time. An operation for a key, whose operation is still in flight,
+ * is not started, its caller gets the result of the running one instead.
+ *
+ * <p>Every caller gets its own copy of the result, so cancelling it doesn't affect the others.
+ */
+final class RequestCoalescer<K> {
+  private final Map<K, CompletableFuture<?>> inFlight = new ConcurrentHashMap<>();
+  private final AtomicLong coalesced = new AtomicLong();
+
+  @SuppressWarnings("unchecked")
+  <R> CompletableFuture<R> run(K key, Supplier<CompletableFuture<R>> operation) {
+    CompletableFuture<R> pending = new CompletableFuture<>();
+    CompletableFuture<R> running = (CompletableFuture<R>) inFlight.putIfAbsent(key, pending);
+    if (running != null) {
+      coalesced.incrementAndGet();
+      return running.copy();
+    }
+    CompletableFuture<R> result;
+    try {
+      result = operation.get();
+    } catch (RuntimeException e) {
+      result = CompletableFuture.failedFuture(e);
+    }
+    result.whenComplete(
+        (response, throwable) -> {
+          // later callers start a new operation
+          inFlight.remove(key, pending);
+          if (throwable != null) {
+            pending.completeExceptionally(throwable);
+          } else {
+            pending.complete(response);
+          }
+        });
+    return pending.copy();
+  }
+
+  /** Returns the number of callers, that got the result of an operation, that was in flight. */
+  long getCoalesced() {
+    return coalesced.get();
+  }
+}
@@ -0,0 +1,592 @@
+package net.heberling.ismart;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import net.heberling.ismart.RateLimiter.Lane;
+import net.heberling.ismart.SessionManager.Credentials;
+import net.heberling.ismart.asn1.AbstractMessage;
+import net.heberling.ismart.asn1.AbstractMessageCoder;
+import net.heberling.ismart.asn1.PreparedRequest;
+import net.heberling.ismart.asn1.SequenceOfVisitor;
+import net.heberling.ismart.asn1.Util;
+import net.heberling.ismart.asn1.v1_1.Message;
+import net.heberling.ismart.asn1.v1_1.MessageCoder;
+import net.heberling.ismart.asn1.v1_1.entity.AlarmSwitchReq;
+import net.heberling.ismart.asn1.v1_1.entity.MP_UserLoggingInReq;
+import net.heberling.ismart.asn1.v1_1.entity.MP_UserLoggingInResp;
+import net.heberling.ismart.asn1.v1_1.entity.MessageListReq;
+import net.heberling.ismart.asn1.v1_1.entity.MessageListResp;
+import net.heberling.ismart.asn1.v2_1.entity.OTA_RVCReq;
+import net.heberling.ismart.asn1.v2_1.entity.OTA_RVCStatus25857;
+import net.heberling.ismart.asn1.v2_1.entity.OTA_RVMVehicleStatusReq;
+import net.heberling.ismart.asn1.v2_1.entity.OTA_RVMVehicleStatusResp25857;
+import net.heberling.ismart.asn1.v3_0.entity.OTA_ChrgCtrlReq;
+import net.heberling.ismart.asn1.v3_0.entity.OTA_ChrgCtrlStsResp;
+import net.heberling.ismart.asn1.v3_0.entity.OTA_ChrgMangDataResp;
+import org.bn.coders.IASN1PreparedElement;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Typed client for the operations of the SAIC API. It knows the application IDs, versions and
+ * endpoints of the operations. The uid and token of the {@link #login} are kept by its {@link
+ * SessionManager}. If a response shows that the token has expired, the client logs in again and
+ * sends the request once more with the new token.
+ *
+ * <p>All requests go through the same pipeline, that notifies the {@link Listener} of every request
+ * and response and logs the time of each operation at debug level. Operations, whose results are
+ * not ready right away, like the vehicle status, are polled with the {@link PendingOperations}.
+ * Their futures complete with the first response, that has application data or an error message.
+ *
+ * <p>Status requests for a car, whose same status is already being polled, join that operation
+ * instead of waking the car again. Commands are always sent.
+ *
+ * <p>The requests of the client are limited by its {@link RateLimiter}. The login and the commands
+ * go before the status requests and the messages, that are waiting for their turn.
+ */
+public class SaicApiClient {
+  private static final Logger LOGGER = LoggerFactory.getLogger(SaicApiClient.class);
+
+  private static final String USER_PADDING = "0000000000000000000000000000000000000000000000000#";
+
+  private final URI saicUri;
+  private final PendingOperations pendingOperations;
+  private final RateLimiter rateLimiter;
+
+  private final SessionManager session = new SessionManager(this::sendLogin);
+  private final RequestCoalescer<OperationKey> statusRequests = new RequestCoalescer<>();
+
+  private volatile Listener listener = new Listener() {};
+
+  public SaicApiClient(URI saicUri) {
+    this(saicUri, PendingOperations.DEFAULT);
+  }
+
+  public SaicApiClient(URI saicUri, PendingOperations pendingOperations) {
+    this(saicUri, pendingOperations, new RateLimiter());
+  }
+
+  /**
+   * @param rateLimiter limits the requests of this client, it should not be shared with the clients
+   *     of other accounts
+   */
+  public SaicApiClient(URI saicUri, PendingOperations pendingOperations, RateLimiter rateLimiter) {
+    this.saicUri = saicUri;
+    this.pendingOperations = pendingOperations;
+    this.rateLimiter = rateLimiter;
+  }
+
+  public void setListener(Listener listener) {
+    this.listener = listener;
+  }
+
+  public SessionManager getSession() {
+    return session;
+  }
+
+  public RateLimiter getRateLimiter() {
+    return rateLimiter;
+  }
+
+  /**
+   * Returns the number of status requests, that were not sent, because the same status of the same
+   * car was already requested.
+   */
+  public long getCoalescedRequests() {
+    return statusRequests.getCoalesced();
+  }
+
+  public String getUid() {
+    return session.getUid();
+  }
+
+  public String getToken() {
+    return session.getToken();
+  }
+
+  /**
+   * Logs in and keeps the uid and token for the other operations, if the login succeeded. The user
+   * and password are kept to log in again, when the token has expired.
+   */
+  public Message<MP_UserLoggingInResp> login(String user, String password) throws IOException {
+    CompletableFuture<Message<MP_UserLoggingInResp>> login = session.login(user, password);
+    login.whenComplete((response, throwable) -> listener.onSession(session.getMetrics()));
+    return await(login);
+  }
+
+  private CompletableFuture<Message<MP_UserLoggingInResp>> sendLogin(String user, String password) {
+    MessageCoder<MP_UserLoggingInReq> requestCoder = MessageCoder.of(MP_UserLoggingInReq.class);
+    MP_UserLoggingInReq applicationData = new MP_UserLoggingInReq();
+    applicationData.setPassword(password);
+    Message<MP_UserLoggingInReq> request =
+        requestCoder.initializeMessage(
+            USER_PADDING.substring(user.length()) + user,
+            null,
+            null,
+            "501",
+            513,
+            1,
+            applicationData);
+
+    Listener listener = this.listener;
+    listener.onRequest(request);
+    long start = System.nanoTime();
+    // all other requests wait for the login
+    return rateLimiter
+        .acquire("/TAP.Web/ota.mp", Lane.COMMAND)
+        .thenCompose(
+            granted ->
+                AsyncClient.sendRequest(
+                    saicUri.resolve("/TAP.Web/ota.mp"),
+                    request,
+                    requestCoder,
+                    MessageCoder.of(MP_UserLoggingInResp.class)))
+        .whenComplete(
+            (response, throwable) -> {
+              if (throwable == null) {
+                received(listener, "501", start, response);
+              }
+            });
+  }
+
+  /** Switches the delivery of alarm messages on or off. */
+  public Message<IASN1PreparedElement> alarmSwitch(AlarmSwitchReq alarmSwitchReq)
+      throws IOException {
+    MessageCoder<AlarmSwitchReq> requestCoder = MessageCoder.of(AlarmSwitchReq.class);
+    Credentials credentials = session.current();
+    Message<AlarmSwitchReq> request =
+        requestCoder.initializeMessage(
+            uid(credentials), token(credentials), null, "521", 513, 1, alarmSwitchReq);
+    return send(
+        "521",
+        "/TAP.Web/ota.mp",
+        Lane.BACKGROUND,
+        request,
+        credentials,
+        endpoint ->
+            Client.sendRequest(
+                endpoint, request, requestCoder, MessageCoder.of(IASN1PreparedElement.class)));
+  }
+
+  /**
+   * Lists the messages of the account and passes them one at a time to the visitor.
+   *
+   * @see Client#sendRequest(URI, AbstractMessage, AbstractMessageCoder, AbstractMessageCoder,
+   *     Class, SequenceOfVisitor)
+   */
+  public Message<MessageListResp> messageList(
+      MessageListReq messageListReq,
+      SequenceOfVisitor<? super net.heberling.ismart.asn1.v1_1.entity.Message> visitor)
+      throws IOException {
+    MessageCoder<MessageListReq> requestCoder = MessageCoder.of(MessageListReq.class);
+    Credentials credentials = session.current();
+    Message<MessageListReq> request =
+        requestCoder.initializeMessage(
+            uid(credentials), token(credentials), null, "531", 513, 1, messageListReq);
+    request.getHeader().setProtocolVersion(18);
+    return send(
+        "531",
+        "/TAP.Web/ota.mp",
+        Lane.BACKGROUND,
+        request,
+        credentials,
+        endpoint ->
+            Client.sendRequest(
+                endpoint,
+                request,
+                requestCoder,
+                MessageCoder.of(MessageListResp.class),
+                net.heberling.ismart.asn1.v1_1.entity.Message.class,
+                visitor));
+  }
+
+  /** Wakes the car, if needed, and polls its status. */
+  public CompletableFuture<net.heberling.ismart.asn1.v2_1.Message<OTA_RVMVehicleStatusResp25857>>
+      vehicleStatus(String vin) {
+    return statusRequests.run(
+        new OperationKey(vin, "511", 25857), () -> sendVehicleStatusRequest(vin));
+  }
+
+  private CompletableFuture<net.heberling.ismart.asn1.v2_1.Message<OTA_RVMVehicleStatusResp25857>>
+      sendVehicleStatusRequest(String vin) {
+    net.heberling.ismart.asn1.v2_1.MessageCoder<OTA_RVMVehicleStatusReq> requestCoder =
+        net.heberling.ismart.asn1.v2_1.MessageCoder.of(OTA_RVMVehicleStatusReq.class);
+    OTA_RVMVehicleStatusReq vehicleStatusReq = new OTA_RVMVehicleStatusReq();
+    vehicleStatusReq.setVehStatusReqType(2);
+    Credentials credentials = session.current();
+    net.heberling.ismart.asn1.v2_1.Message<OTA_RVMVehicleStatusReq> request =
+        requestCoder.initializeMessage(
+            uid(credentials), token(credentials), vin, "511", 25857, 1, vehicleStatusReq);
+    return poll(
+        "/TAP.Web/ota.mpv21",
+        "511",
+        Lane.BACKGROUND,
+        credentials,
+        requestCoder.prepareRequest(request),
+        net.heberling.ismart.asn1.v2_1.MessageCoder.of(OTA_RVMVehicleStatusResp25857.class),
+        response -> prepareRetry(PolledBody.V2_1, true, request, request.getReserved(), response));
+  }
+
+  /** Sends a remote control command, like locking the doors, and polls its result. */
+  public CompletableFuture<net.heberling.ismart.asn1.v2_1.Message<OTA_RVCStatus25857>>
+      remoteControl(String vin, OTA_RVCReq rvcReq) {
+    net.heberling.ismart.asn1.v2_1.MessageCoder<OTA_RVCReq> requestCoder =
+        net.heberling.ismart.asn1.v2_1.MessageCoder.of(OTA_RVCReq.class);
+    Credentials credentials = session.current();
+    net.heberling.ismart.asn1.v2_1.Message<OTA_RVCReq> request =
+        requestCoder.initializeMessage(
+            uid(credentials), token(credentials), vin, "510", 25857, 1, rvcReq);
+    return poll(
+        "/TAP.Web/ota.mpv21",
+        "510",
+        Lane.COMMAND,
+        credentials,
+        requestCoder.prepareRequest(request),
+        net.heberling.ismart.asn1.v2_1.MessageCoder.of(OTA_RVCStatus25857.class),
+        response -> prepareRetry(PolledBody.V2_1, false, request, request.getReserved(), response));
+  }
+
+  /** Wakes the car, if needed, and polls its charging status. */
+  public CompletableFuture<net.heberling.ismart.asn1.v3_0.Message<OTA_ChrgMangDataResp>>
+      chargeStatus(String vin) {
+    return statusRequests.run(
+        new OperationKey(vin, "516", 768), () -> sendChargeStatusRequest(vin));
+  }
+
+  private CompletableFuture<net.heberling.ismart.asn1.v3_0.Message<OTA_ChrgMangDataResp>>
+      sendChargeStatusRequest(String vin) {
+    net.heberling.ismart.asn1.v3_0.MessageCoder<IASN1PreparedElement> requestCoder =
+        net.heberling.ismart.asn1.v3_0.MessageCoder.of(IASN1PreparedElement.class);
+    Credentials credentials = session.current();
+    net.heberling.ismart.asn1.v3_0.Message<IASN1PreparedElement> request =
+        requestCoder.initializeMessage(
+            uid(credentials), token(credentials), vin, "516", 768, 5, null);
+    return poll(
+        "/TAP.Web/ota.mpv30",
+        "516",
+        Lane.BACKGROUND,
+        credentials,
+        requestCoder.prepareRequest(request),
+        net.heberling.ismart.asn1.v3_0.MessageCoder.of(OTA_ChrgMangDataResp.class),
+        response -> prepareRetry(PolledBody.V3_0, true, request, request.getReserved(), response));
+  }
+
+  /** Starts or stops charging and polls the result. */
+  public CompletableFuture<net.heberling.ismart.asn1.v3_0.Message<OTA_ChrgCtrlStsResp>>
+      chargeControl(String vin, OTA_ChrgCtrlReq chrgCtrlReq) {
+    net.heberling.ismart.asn1.v3_0.MessageCoder<OTA_ChrgCtrlReq> requestCoder =
+        net.heberling.ismart.asn1.v3_0.MessageCoder.of(OTA_ChrgCtrlReq.class);
+    Credentials credentials = session.current();
+    net.heberling.ismart.asn1.v3_0.Message<OTA_ChrgCtrlReq> request =
+        requestCoder.initializeMessage(
+            uid(credentials), token(credentials), vin, "516", 768, 7, chrgCtrlReq);
+    return poll(
+        "/TAP.Web/ota.mpv30",
+        "516",
+        Lane.COMMAND,
+        credentials,
+        requestCoder.prepareRequest(request),
+        net.heberling.ismart.asn1.v3_0.MessageCoder.of(OTA_ChrgCtrlStsResp.class),
+        response -> prepareRetry(PolledBody.V3_0, false, request, request.getReserved(), response));
+  }
+
+  /** Sends the request and sends it once more, if the token has expired. */
+  private <R extends AbstractMessage<?, ?, ?>> R send(
+      String applicationId,
+      String path,
+      Lane lane,
+      AbstractMessage<?, ?, ?> request,
+      Credentials credentials,
+      Exchange<R> exchange)
+      throws IOException {
+    R response = send(applicationId, path, lane, request, exchange);
+    if (response != null && SessionManager.isExpired(result(response))) {
+      Credentials renewed = await(renew(credentials));
+      setCredentials(request, renewed);
+      response = send(applicationId, path, lane, request, exchange);
+    }
+    return response;
+  }
+
+  private <R extends AbstractMessage<?, ?, ?>> R send(
+      String applicationId,
+      String path,
+      Lane lane,
+      AbstractMessage<?, ?, ?> request,
+      Exchange<R> exchange)
+      throws IOException {
+    await(rateLimiter.acquire(path, lane));
+    Listener listener = this.listener;
+    listener.onRequest(request);
+    long start = System.nanoTime();
+    R response = exchange.send(saicUri.resolve(path));
+    received(listener, applicationId, start, response);
+    return response;
+  }
+
+  /**
+   * Polls the request and polls it once more from the start, if the token has expired.
+   *
+   * @param retry prepares the request for the next attempt and returns <code>true</code>, or
+   *     returns <code>false</code> if the response is final
+   */
+  private <Q extends AbstractMessage<?, ?, ?>, R extends AbstractMessage<?, ?, ?>>
+      CompletableFuture<R> poll(
+          String path,
+          String applicationId,
+          Lane lane,
+          Credentials credentials,
+          PreparedRequest<Q> request,
+          AbstractMessageCoder<?, ?, ?, R> responseCoder,
+          Predicate<R> retry) {
+    return poll(path, applicationId, lane, request, responseCoder, retry)
+        .thenCompose(
+            response -> {
+              if (response == null || !SessionManager.isExpired(result(response))) {
+                return CompletableFuture.completedFuture(response);
+              }
+              return renew(credentials)
+                  .thenCompose(
+                      renewed -> {
+                        setCredentials(request.getMessage(), renewed);
+                        return poll(path, applicationId, lane, request, responseCoder, retry);
+                      });
+            });
+  }
+
+  private <Q extends AbstractMessage<?, ?, ?>, R extends AbstractMessage<?, ?, ?>>
+      CompletableFuture<R> poll(
+          String path,
+          String applicationId,
+          Lane lane,
+          PreparedRequest<Q> request,
+          AbstractMessageCoder<?, ?, ?, R> responseCoder,
+          Predicate<R> retry) {
+    Listener listener = this.listener;
+    listener.onRequest(request.getMessage());
+    long start = System.nanoTime();
+    return pendingOperations.poll(
+        saicUri.resolve(path),
+        request,
+        responseCoder,
+        response -> {
+          received(listener, applicationId, start, response);
+          if (response == null
+              || SessionManager.isExpired(result(response))
+              || !retry.test(response)) {
+            return true;
+          }
+          listener.onRequest(request.getMessage());
+          return false;
+        },
+        () -> rateLimiter.acquire(path, lane));
+  }
+
+  private CompletableFuture<Credentials> renew(Credentials expired) {
+    CompletableFuture<Credentials> renewal = session.renew(expired);
+    renewal.whenComplete((credentials, throwable) -> listener.onSession(session.getMetrics()));
+    return renewal;
+  }
+
+  private static void received(
+      Listener listener, String applicationId, long start, AbstractMessage<?, ?, ?> response) {
+    if (LOGGER.isDebugEnabled()) {
+      LOGGER.debug(
+          "Response for {} after {} ms",
+          applicationId,
+          TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+    if (response != null) {
+      listener.onResponse(response);
+    }
+  }
+
+  /**
+   * Prepares a polled request for the next attempt, unless the response has application data or an
+   * error message. Status requests keep asking for the event ID of their first response, like the
+   * status polling always did. Commands ask for the event ID of a successful response, otherwise
+   * the next attempt starts with a fresh one.
+   *
+   * @param status whether the request is a status request
+   * @return <code>true</code> if the request should be sent again
+   */
+  private static <B extends IASN1PreparedElement> boolean prepareRetry(
+      PolledBody<B> polledBody,
+      boolean status,
+      AbstractMessage<?, B, ?> request,
+      byte[] reserved,
+      AbstractMessage<?, B, ?> response) {
+    if (response.getApplicationData() != null
+        || polledBody.errorMessagePresent.test(response.getBody())) {
+      return false;
+    }
+    if (status) {
+      Integer eventId = polledBody.eventId.apply(request.getBody());
+      if (eventId == null || eventId == 0) {
+        // we get an eventId back, keep using it, so the car is only woken once
+        polledBody.setEventId.accept(
+            request.getBody(), polledBody.eventId.apply(response.getBody()));
+      }
+    } else if (polledBody.result.apply(response.getBody()) == 0) {
+      // we get an eventId back, use that to request the data again
+      polledBody.setEventId.accept(request.getBody(), polledBody.eventId.apply(response.getBody()));
+    } else {
+      // try a fresh eventId
+      polledBody.setEventId.accept(request.getBody(), 0);
+    }
+    Util.fillReserved(reserved);
+    return true;
+  }
+
+  private static Integer result(AbstractMessage<?, ?, ?> message) {
+    if (message instanceof Message) {
+      return ((Message<?>) message).getBody().getResult();
+    }
+    if (message instanceof net.heberling.ismart.asn1.v2_1.Message) {
+      return ((net.heberling.ismart.asn1.v2_1.Message<?>) message).getBody().getResult();
+    }
+    if (message instanceof net.heberling.ismart.asn1.v3_0.Message) {
+      return ((net.heberling.ismart.asn1.v3_0.Message<?>) message).getBody().getResult();
+    }
+    return null;
+  }
+
+  /** Sets the new uid and token and, for polled requests, starts with a fresh event ID. */
+  private static void setCredentials(AbstractMessage<?, ?, ?> message, Credentials credentials) {
+    if (message instanceof Message) {
+      ((Message<?>) message).getBody().setUid(credentials.uid);
+      ((Message<?>) message).getBody().setToken(credentials.token);
+    } else if (message instanceof net.heberling.ismart.asn1.v2_1.Message) {
+      net.heberling.ismart.asn1.v2_1.Message<?> request =
+          (net.heberling.ismart.asn1.v2_1.Message<?>) message;
+      request.getBody().setUid(credentials.uid);
+      request.getBody().setToken(credentials.token);
+      request.getBody().setEventID(0);
+      Util.fillReserved(request.getReserved());
+    } else if (message instanceof net.heberling.ismart.asn1.v3_0.Message) {
+      net.heberling.ismart.asn1.v3_0.Message<?> request =
+          (net.heberling.ismart.asn1.v3_0.Message<?>) message;
+      request.getBody().setUid(credentials.uid);
+      request.getBody().setToken(credentials.token);
+      request.getBody().setEventID(0);
+      Util.fillReserved(request.getReserved());
+    }
+  }
+
+  private static String uid(Credentials credentials) {
+    return credentials == null ? null : credentials.uid;
+  }
+
+  private static String token(Credentials credentials) {
+    return credentials == null ? null : credentials.token;
+  }
+
+  private static <T> T await(CompletableFuture<T> future) throws IOException {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      future.cancel(false);
+      throw new InterruptedIOException(e.getMessage());
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new IOException(cause);
+    }
+  }
+
+  /**
+   * Is notified of the messages exchanged with the SAIC API. The requests of polled operations may
+   * be changed for the next attempt after the call returns.
+   */
+  public interface Listener {
+    default void onRequest(AbstractMessage<?, ?, ?> request) {}
+
+    default void onResponse(AbstractMessage<?, ?, ?> response) {}
+
+    /** Is called after every login, with the counters of the session. */
+    default void onSession(SessionManager.Metrics metrics) {}
+  }
+
+  /** Identifies the status requests, that can share one operation. */
+  private static final class OperationKey {
+    private final String vin;
+    private final String applicationId;
+    private final int applicationDataProtocolVersion;
+
+    private OperationKey(String vin, String applicationId, int applicationDataProtocolVersion) {
+      this.vin = vin;
+      this.applicationId = applicationId;
+      this.applicationDataProtocolVersion = applicationDataProtocolVersion;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof OperationKey)) {
+        return false;
+      }
+      OperationKey that = (OperationKey) o;
+      return applicationDataProtocolVersion == that.applicationDataProtocolVersion
+          && Objects.equals(vin, that.vin)
+          && applicationId.equals(that.applicationId);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(vin, applicationId, applicationDataProtocolVersion);
+    }
+  }
+
+  /** The accessors of the dispatcher bodies, that the polling needs, for each protocol version. */
+  private static final class PolledBody<B> {
+    private static final PolledBody<net.heberling.ismart.asn1.v2_1.MP_DispatcherBody> V2_1 =
+        new PolledBody<>(
+            net.heberling.ismart.asn1.v2_1.MP_DispatcherBody::getResult,
+            net.heberling.ismart.asn1.v2_1.MP_DispatcherBody::isErrorMessagePresent,
+            net.heberling.ismart.asn1.v2_1.MP_DispatcherBody::getEventID,
+            net.heberling.ismart.asn1.v2_1.MP_DispatcherBody::setEventID);
+
+    private static final PolledBody<net.heberling.ismart.asn1.v3_0.MP_DispatcherBody> V3_0 =
+        new PolledBody<>(
+            net.heberling.ismart.asn1.v3_0.MP_DispatcherBody::getResult,
+            net.heberling.ismart.asn1.v3_0.MP_DispatcherBody::isErrorMessagePresent,
+            net.heberling.ismart.asn1.v3_0.MP_DispatcherBody::getEventID,
+            net.heberling.ismart.asn1.v3_0.MP_DispatcherBody::setEventID);
+
+    private final Function<B, Integer> result;
+    private final Predicate<B> errorMessagePresent;
+    private final Function<B, Integer> eventId;
+    private final BiConsumer<B, Integer> setEventId;
+
+    private PolledBody(
+        Function<B, Integer> result,
+        Predicate<B> errorMessagePresent,
+        Function<B, Integer> eventId,
+        BiConsumer<B, Integer> setEventId) {
+      this.result = result;
+      this.errorMessagePresent = errorMessagePresent;
+      this.eventId = eventId;
+      this.setEventId = setEventId;
+    }
+  }
+
+  private interface Exchange<R> {
+    R send(URI endpoint) throws IOException;
+  }
+}
@@ -0,0 +1,210 @@
+package net.heberling.ismart;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import net.heberling.ismart.asn1.v1_1.Message;
+import net.heberling.ismart.asn1.v1_1.entity.MP_UserLoggingInResp;
+
+/**
+ * Owns the uid and token of the login to the SAIC API. Requests take the current {@link
+ * Credentials} and, if the response shows that the token has expired, ask for new ones with {@link
+ * #renew}. Only the first of them logs in again, the others wait for and share that login, so an
+ * expired token costs one login, however many requests were in flight.
+ *
+ * <p>Instances are thread safe.
+ */
+public final class SessionManager {
+  /** The result of a response, if the token is not valid anymore. */
+  public static final int RESULT_TOKEN_EXPIRED = 2;
+
+  private final Login login;
+
+  private final AtomicLong logins = new AtomicLong();
+  private final AtomicLong relogins = new AtomicLong();
+  private final AtomicLong failedLogins = new AtomicLong();
+  private final AtomicLong expiredResponses = new AtomicLong();
+  private volatile Instant lastLogin;
+
+  // guarded by this
+  private String user;
+  private String password;
+  private Credentials credentials;
+  private CompletableFuture<Credentials> renewal;
+
+  SessionManager(Login login) {
+    this.login = login;
+  }
+
+  /** Returns whether the result of a response means, that the token has expired. */
+  public static boolean isExpired(Integer result) {
+    return result != null && result == RESULT_TOKEN_EXPIRED;
+  }
+
+  /**
+   * Logs in and keeps the credentials for later requests and for logging in again.
+   *
+   * @return a future of the login response, the credentials are only kept, if it has application
+   *     data
+   */
+  CompletableFuture<Message<MP_UserLoggingInResp>> login(String user, String password) {
+    synchronized (this) {
+      this.user = user;
+      this.password = password;
+    }
+    return login
+        .login(user, password)
+        .whenComplete(
+            (response, throwable) -> {
+              if (throwable == null && response != null && response.getApplicationData() != null) {
+                loggedIn(response);
+              } else {
+                failedLogins.incrementAndGet();
+              }
+            });
+  }
+
+  /** Returns the current credentials, or <code>null</code> before the first successful login. */
+  synchronized Credentials current() {
+    return credentials;
+  }
+
+  /**
+   * Returns new credentials for a request, that was rejected with the expired ones. If they were
+   * already replaced, the current ones are returned. Otherwise a login is started, unless another
+   * request already started one, and all of them get the credentials of that login.
+   */
+  synchronized CompletableFuture<Credentials> renew(Credentials expired) {
+    expiredResponses.incrementAndGet();
+    if (credentials != expired && credentials != null) {
+      return CompletableFuture.completedFuture(credentials);
+    }
+    if (renewal == null) {
+      if (user == null) {
+        return CompletableFuture.failedFuture(new IllegalStateException("Not logged in"));
+      }
+      relogins.incrementAndGet();
+      CompletableFuture<Credentials> current = new CompletableFuture<>();
+      renewal = current;
+      login
+          .login(user, password)
+          .whenComplete(
+              (response, throwable) -> {
+                synchronized (this) {
+                  renewal = null;
+                }
+                if (throwable != null) {
+                  failedLogins.incrementAndGet();
+                  current.completeExceptionally(throwable);
+                } else if (response == null || response.getApplicationData() == null) {
+                  failedLogins.incrementAndGet();
+                  current.completeExceptionally(loginFailed(response));
+                } else {
+                  current.complete(loggedIn(response));
+                }
+              });
+      return current;
+    }
+    return renewal;
+  }
+
+  private Credentials loggedIn(Message<MP_UserLoggingInResp> response) {
+    Credentials loggedIn =
+        new Credentials(response.getBody().getUid(), response.getApplicationData().getToken());
+    synchronized (this) {
+      credentials = loggedIn;
+    }
+    logins.incrementAndGet();
+    lastLogin = Instant.now();
+    return loggedIn;
+  }
+
+  private static IOException loginFailed(Message<MP_UserLoggingInResp> response) {
+    if (response == null) {
+      return new IOException("Login failed without a response");
+    }
+    if (response.getBody().getErrorMessage() == null) {
+      return new IOException("Login failed with result " + response.getBody().getResult());
+    }
+    return new IOException(
+        "Login failed with message: "
+            + new String(response.getBody().getErrorMessage(), StandardCharsets.UTF_8));
+  }
+
+  public String getUid() {
+    Credentials current = current();
+    return current == null ? null : current.uid;
+  }
+
+  public String getToken() {
+    Credentials current = current();
+    return current == null ? null : current.token;
+  }
+
+  /** Returns a snapshot of the counters of this session. */
+  public Metrics getMetrics() {
+    return new Metrics(
+        logins.get(), relogins.get(), failedLogins.get(), expiredResponses.get(), lastLogin);
+  }
+
+  /** The uid and token of a login. */
+  static final class Credentials {
+    final String uid;
+    final String token;
+
+    Credentials(String uid, String token) {
+      this.uid = uid;
+      this.token = token;
+    }
+  }
+
+  /** Sends the login request. */
+  @FunctionalInterface
+  interface Login {
+    CompletableFuture<Message<MP_UserLoggingInResp>> login(String user, String password);
+  }
+
+  /** The counters of a session. */
+  public static final class Metrics {
+    private final long logins;
+    private final long relogins;
+    private final long failedLogins;
+    private final long expiredResponses;
+    private final Instant lastLogin;
+
+    private Metrics(
+        long logins, long relogins, long failedLogins, long expiredResponses, Instant lastLogin) {
+      this.logins = logins;
+      this.relogins = relogins;
+      this.failedLogins = failedLogins;
+      this.expiredResponses = expiredResponses;
+      this.lastLogin = lastLogin;
+    }
+
+    /** The number of successful logins, including the relogins. */
+    public long getLogins() {
+      return logins;
+    }
+
+    /** The number of logins, that were started because the token had expired. */
+    public long getRelogins() {
+      return relogins;
+    }
+
+    public long getFailedLogins() {
+      return failedLogins;
+    }
+
+    /** The number of responses, that were rejected because the token had expired. */
+    public long getExpiredResponses() {
+      return expiredResponses;
+    }
+
+    /** The time of the last successful login, or <code>null</code>. */
+    public Instant getLastLogin() {
+      return lastLogin;
+    }
+  }
+}
@@ -0,0 +1,118 @@
+package net.heberling.ismart;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A hashed timer wheel. Tasks are put into the bucket of the tick they are due in, with the number
+ * of rounds of the wheel, that have to pass first. A single daemon thread advances the wheel once
+ * per tick and hands the due tasks to the executor, so scheduling and running thousands of tasks
+ * costs no more than a bucket lookup each.
+ *
+ * <p>Tasks run at the end of the tick they are due in, up to one tick late.
+ */
+final class TimerWheel {
+  private static final Logger LOGGER = LoggerFactory.getLogger(TimerWheel.class);
+
+  private final long tickNanos;
+  private final List<Task>[] buckets;
+  private final Executor executor;
+
+  /** Tasks scheduled by other threads, the timer thread moves them into their buckets. */
+  private final Queue<Task> scheduled = new ConcurrentLinkedQueue<>();
+
+  private final long startTime;
+  private final Thread thread;
+  private volatile boolean closed;
+
+  /** The current tick, only used by the timer thread. */
+  private long tick;
+
+  /**
+   * @param ticksPerWheel the number of buckets, rounded up to a power of two
+   */
+  @SuppressWarnings("unchecked")
+  TimerWheel(long tickMillis, int ticksPerWheel, Executor executor, String name) {
+    if (tickMillis < 1 || ticksPerWheel < 1) {
+      throw new IllegalArgumentException("Invalid timer wheel");
+    }
+    this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+    this.buckets = new List[Integer.highestOneBit(Math.max(ticksPerWheel - 1, 1)) << 1];
+    for (int i = 0; i < buckets.length; i++) {
+      buckets[i] = new ArrayList<>();
+    }
+    this.executor = executor;
+    this.startTime = System.nanoTime();
+    this.thread = new Thread(this::run, name);
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  /** Runs the task on the executor after the delay. */
+  void schedule(long delayMillis, Runnable task) {
+    scheduled.add(new Task(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMillis), task));
+  }
+
+  /** Stops the timer thread. Tasks, that have not run yet, never run. */
+  void close() {
+    closed = true;
+    LockSupport.unpark(thread);
+  }
+
+  private void run() {
+    while (!closed) {
+      long sleep;
+      while ((sleep = startTime + (tick + 1) * tickNanos - System.nanoTime()) > 0) {
+        LockSupport.parkNanos(this, sleep);
+        if (closed) {
+          return;
+        }
+      }
+      Task task;
+      while ((task = scheduled.poll()) != null) {
+        // tasks, that are already due, are run in this tick
+        long due = Math.max((task.deadline - startTime) / tickNanos, tick);
+        task.rounds = (due - tick) / buckets.length;
+        buckets[(int) (due & (buckets.length - 1))].add(task);
+      }
+      expire(buckets[(int) (tick & (buckets.length - 1))]);
+      tick++;
+    }
+  }
+
+  private void expire(List<Task> bucket) {
+    int kept = 0;
+    for (Task task : bucket) {
+      if (task.rounds > 0) {
+        task.rounds--;
+        bucket.set(kept++, task);
+      } else {
+        try {
+          executor.execute(task.runnable);
+        } catch (RuntimeException e) {
+          // a rejected task must not stop the timer thread
+          LOGGER.error("Could not run timer task", e);
+        }
+      }
+    }
+    bucket.subList(kept, bucket.size()).clear();
+  }
+
+  private static final class Task {
+    private final long deadline;
+    private final Runnable runnable;
+    private long rounds;
+
+    private Task(long deadline, Runnable runnable) {
+      this.deadline = deadline;
+      this.runnable = runnable;
+    }
+  }
+}
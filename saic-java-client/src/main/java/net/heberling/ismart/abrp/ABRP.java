@@ -6,12 +6,11 @@ import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.Objects;
 import java.util.stream.Collectors;
+import net.heberling.ismart.Client;
 import net.heberling.ismart.asn1.v2_1.entity.OTA_RVMVehicleStatusResp25857;
 import net.heberling.ismart.asn1.v3_0.entity.OTA_ChrgMangDataResp;
 import org.apache.hc.client5.http.ClientProtocolException;
 import org.apache.hc.client5.http.classic.methods.HttpGet;
-import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
-import org.apache.hc.client5.http.impl.classic.HttpClients;
 import org.apache.hc.core5.http.HttpEntity;
 import org.apache.hc.core5.http.HttpStatus;
 import org.apache.hc.core5.http.ParseException;
@@ -28,7 +27,7 @@ public class ABRP {
       String abrpUserToken,
       OTA_RVMVehicleStatusResp25857 vehicleStatus,
       OTA_ChrgMangDataResp chargeStatus) {
-    try (CloseableHttpClient httpclient = HttpClients.createDefault()) {
+    try {
       // Request parameters and other properties.
       HashMap<String, Object> map = new HashMap<>();
       // utc [s]: Current UTC timestamp (epoch) in seconds (note, not milliseconds!)
@@ -148,7 +147,7 @@ public class ABRP {
               }
             }
           };
-      String response = httpclient.execute(httppost, responseHandler);
+      String response = Client.getHttpClient().execute(httppost, responseHandler);
       LOGGER.debug("ABRP response: {}", response);
       return response;
     } catch (IOException e) {
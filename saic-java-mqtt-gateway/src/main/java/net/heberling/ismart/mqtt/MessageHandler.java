@@ -1,14 +1,16 @@
 package net.heberling.ismart.mqtt;
 
 import java.io.IOException;
-import java.net.URI;
 import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.time.OffsetDateTime;
 import java.time.ZoneId;
-import net.heberling.ismart.Client;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import net.heberling.ismart.SaicApiClient;
 import net.heberling.ismart.asn1.v1_1.Message;
-import net.heberling.ismart.asn1.v1_1.MessageCoder;
 import net.heberling.ismart.asn1.v1_1.entity.MessageListReq;
 import net.heberling.ismart.asn1.v1_1.entity.MessageListResp;
 import net.heberling.ismart.asn1.v1_1.entity.StartEndNumber;
@@ -19,30 +21,24 @@ import org.slf4j.LoggerFactory;
 class MessageHandler implements Runnable {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(MessageHandler.class);
-  private final String uid;
-  private final String token;
+  private final SaicApiClient saicApi;
   private final SaicMqttGateway gateway;
-  private final URI saicUri;
   private final String mqttMessagePrefix;
 
-  public MessageHandler(
-      URI saicUri, String uid, String token, String mqttAccountPrefix, SaicMqttGateway gateway) {
-    this.saicUri = saicUri;
-    this.uid = uid;
-    this.token = token;
+  /** The IDs of the messages in the last response, they are not converted and published again. */
+  private Set<Long> publishedMessageIds = Set.of();
+
+  public MessageHandler(SaicApiClient saicApi, String mqttAccountPrefix, SaicMqttGateway gateway) {
+    this.saicApi = saicApi;
     this.mqttMessagePrefix = mqttAccountPrefix + "/messages";
     this.gateway = gateway;
   }
 
   @Override
   public void run() {
-    MessageCoder<MessageListReq> messageListRequestMessageCoder =
-        new MessageCoder<>(MessageListReq.class);
-
     // We currently assume that the newest message is the first.
     // TODO: get all messages
     // TODO: delete old messages
-    // TODO: handle case when no messages are there
     // TODO: automatically subscribe for engine start messages
     MessageListReq messageListReq = new MessageListReq();
     messageListReq.setStartEndNumber(new StartEndNumber());
@@ -50,32 +46,26 @@ class MessageHandler implements Runnable {
     messageListReq.getStartEndNumber().setEndNumber(5L);
     messageListReq.setMessageGroup("ALARM");
 
-    Message<MessageListReq> messageListRequestMessage =
-        messageListRequestMessageCoder.initializeMessage(
-            uid, token, null, "531", 513, 1, messageListReq);
-
-    messageListRequestMessage.getHeader().setProtocolVersion(18);
-
-    String messageListRequest =
-        messageListRequestMessageCoder.encodeRequest(messageListRequestMessage);
-
     try {
-      String messageListResponse =
-          Client.sendRequest(saicUri.resolve("/TAP.Web/ota.mp"), messageListRequest);
-
+      Set<Long> messageIds = new HashSet<>();
+      List<SaicMessage> newMessages = new ArrayList<>();
+      // the messages are decoded one by one and only new ones are converted
       Message<MessageListResp> messageListResponseMessage =
-          new MessageCoder<>(MessageListResp.class).decodeResponse(messageListResponse);
-
-      LOGGER.debug(
-          SaicMqttGateway.toJSON(
-              SaicMqttGateway.anonymized(
-                  new MessageCoder<>(MessageListResp.class), messageListResponseMessage)));
+          saicApi.messageList(
+              messageListReq,
+              message -> {
+                messageIds.add(message.getMessageId());
+                if (!publishedMessageIds.contains(message.getMessageId())) {
+                  newMessages.add(convert(message));
+                }
+                return true;
+              });
 
       if (messageListResponseMessage.getApplicationData() != null) {
-        for (net.heberling.ismart.asn1.v1_1.entity.Message message :
-            messageListResponseMessage.getApplicationData().getMessages()) {
-          gateway.notifyMessage(mqttMessagePrefix, convert(message));
+        for (SaicMessage message : newMessages) {
+          gateway.notifyMessage(mqttMessagePrefix, message);
         }
+        publishedMessageIds = messageIds;
       } else {
         // logger.warn("No application data found!");
       }
@@ -34,6 +34,7 @@ public class MqttGatewayTopics {
   public static final String INTERNAL = "_internal";
   public static final String INTERNAL_ABRP = INTERNAL + "/abrp";
   public static final String INTERNAL_CONFIGURATION_RAW = INTERNAL + "/configuration/raw";
+  public static final String INTERNAL_SESSION = INTERNAL + "/session";
   public static final String LOCATION = "location";
   public static final String LOCATION_HEADING = LOCATION + "/heading";
   public static final String LOCATION_POSITION = LOCATION + "/position";
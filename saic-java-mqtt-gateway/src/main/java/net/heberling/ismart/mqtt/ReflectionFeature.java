@@ -64,6 +64,22 @@ public class ReflectionFeature implements Feature {
     register(net.heberling.ismart.asn1.v3_0.DataEncodingType.EnumType.class);
     register(net.heberling.ismart.asn1.v1_1.entity.LanguageType.EnumType.class);
     register(net.heberling.ismart.asn1.v2_1.DataEncodingType.EnumType.class);
+    // the generated PER codecs are looked up by name, if the build created them
+    for (String packageName :
+        new String[] {
+          "net.heberling.ismart.asn1.v1_1",
+          "net.heberling.ismart.asn1.v1_1.entity",
+          "net.heberling.ismart.asn1.v2_1",
+          "net.heberling.ismart.asn1.v2_1.entity",
+          "net.heberling.ismart.asn1.v3_0",
+          "net.heberling.ismart.asn1.v3_0.entity"
+        }) {
+      Class<?> codecs = access.findClassByName(packageName + ".GeneratedPerCodecs");
+      if (codecs != null) {
+        RuntimeReflection.register(codecs);
+        RuntimeReflection.register(codecs.getFields());
+      }
+    }
     //        Reflections reflections =
     //                new Reflections("net.heberling.ismart.asn1", new SubTypesScanner(false));
     //        reflections.getSubTypesOf(IASN1PreparedElement.class).stream()
@@ -1,23 +1,14 @@
 package net.heberling.ismart.mqtt;
 
+import static net.heberling.ismart.mqtt.MqttGatewayTopics.INTERNAL_SESSION;
 import static net.heberling.ismart.mqtt.MqttGatewayTopics.REFRESH_MODE;
 import static net.heberling.ismart.mqtt.MqttGatewayTopics.REFRESH_PERIOD;
 
 import com.fasterxml.jackson.dataformat.toml.TomlMapper;
-import com.owlike.genson.Context;
-import com.owlike.genson.Converter;
-import com.owlike.genson.Genson;
-import com.owlike.genson.GensonBuilder;
-import com.owlike.genson.convert.ChainedFactory;
 import com.owlike.genson.ext.javadatetime.JavaDateTimeBundle;
-import com.owlike.genson.reflect.TypeUtil;
-import com.owlike.genson.stream.ObjectReader;
-import com.owlike.genson.stream.ObjectWriter;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.lang.reflect.Method;
-import java.lang.reflect.Type;
 import java.net.URI;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
@@ -32,26 +23,21 @@ import java.util.concurrent.Callable;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
-import net.heberling.ismart.Client;
+import net.heberling.ismart.SaicApiClient;
+import net.heberling.ismart.SessionManager;
 import net.heberling.ismart.asn1.AbstractMessage;
 import net.heberling.ismart.asn1.AbstractMessageCoder;
-import net.heberling.ismart.asn1.Anonymizer;
+import net.heberling.ismart.asn1.JsonSerializer;
 import net.heberling.ismart.asn1.v1_1.Message;
-import net.heberling.ismart.asn1.v1_1.MessageCoder;
 import net.heberling.ismart.asn1.v1_1.entity.AlarmSwitch;
 import net.heberling.ismart.asn1.v1_1.entity.AlarmSwitchReq;
 import net.heberling.ismart.asn1.v1_1.entity.MP_AlarmSettingType;
-import net.heberling.ismart.asn1.v1_1.entity.MP_UserLoggingInReq;
 import net.heberling.ismart.asn1.v1_1.entity.MP_UserLoggingInResp;
-import net.heberling.ismart.cli.UTF8StringObjectWriter;
-import org.bn.annotations.ASN1Enum;
-import org.bn.annotations.ASN1Sequence;
 import org.bn.coders.IASN1PreparedElement;
 import org.eclipse.paho.client.mqttv3.IMqttClient;
 import org.eclipse.paho.client.mqttv3.IMqttDeliveryToken;
@@ -72,6 +58,10 @@ public class SaicMqttGateway implements Callable<Integer> {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(SaicMqttGateway.class);
 
+  private static final JsonSerializer JSON =
+      new JsonSerializer(
+          false, builder -> builder.useDateAsTimestamp(false).withBundle(new JavaDateTimeBundle()));
+
   static class ConfigFileConverter implements CommandLine.ITypeConverter<File> {
 
     @Override
@@ -167,6 +157,8 @@ public class SaicMqttGateway implements Callable<Integer> {
 
   private IMqttClient client;
 
+  private SaicApiClient saicApi;
+
   private final Map<String, VehicleHandler> vehicleHandlerMap = new HashMap<>();
 
   private final Map<String, VehicleState> vehicleStateMap =
@@ -241,41 +233,39 @@ public class SaicMqttGateway implements Callable<Integer> {
       client.subscribe(mqttAccountPrefix + "/vehicles/+/" + REFRESH_MODE);
       client.subscribe(mqttAccountPrefix + "/vehicles/+/" + REFRESH_PERIOD + "/+");
 
-      MessageCoder<MP_UserLoggingInReq> loginRequestMessageCoder =
-          new MessageCoder<>(MP_UserLoggingInReq.class);
-
-      MP_UserLoggingInReq applicationData = new MP_UserLoggingInReq();
-      applicationData.setPassword(saicPassword);
-      Message<MP_UserLoggingInReq> loginRequestMessage =
-          loginRequestMessageCoder.initializeMessage(
-              "0000000000000000000000000000000000000000000000000#".substring(saicUser.length())
-                  + saicUser,
-              null,
-              null,
-              "501",
-              513,
-              1,
-              applicationData);
-
-      String loginRequest = loginRequestMessageCoder.encodeRequest(loginRequestMessage);
+      saicApi = new SaicApiClient(saicUri);
+      saicApi.setListener(
+          new SaicApiClient.Listener() {
+            @Override
+            public void onRequest(AbstractMessage<?, ?, ?> request) {
+              WireTrace.trace(LOGGER, request);
+            }
 
-      LOGGER.debug(toJSON(anonymized(loginRequestMessageCoder, loginRequestMessage)));
+            @Override
+            public void onResponse(AbstractMessage<?, ?, ?> response) {
+              WireTrace.trace(LOGGER, response);
+            }
 
-      String loginResponse = Client.sendRequest(saicUri.resolve("/TAP.Web/ota.mp"), loginRequest);
+            @Override
+            public void onSession(SessionManager.Metrics metrics) {
+              MqttMessage msg = new MqttMessage(toJSONBytes(metrics));
+              msg.setQos(0);
+              msg.setRetained(true);
+              try {
+                client.publish(mqttAccountPrefix + "/" + INTERNAL_SESSION, msg);
+              } catch (MqttException e) {
+                LOGGER.warn("Could not publish the session metrics", e);
+              }
+            }
+          });
 
-      Message<MP_UserLoggingInResp> loginResponseMessage =
-          new MessageCoder<>(MP_UserLoggingInResp.class).decodeResponse(loginResponse);
+      Message<MP_UserLoggingInResp> loginResponseMessage = saicApi.login(saicUser, saicPassword);
 
       // register for all known alarm types (not all might be actually delivered)
       for (MP_AlarmSettingType.EnumType type : MP_AlarmSettingType.EnumType.values()) {
-        registerAlarmMessage(
-            loginResponseMessage.getBody().getUid(),
-            loginResponseMessage.getApplicationData().getToken(),
-            type);
+        registerAlarmMessage(type);
       }
 
-      LOGGER.debug(
-          toJSON(anonymized(new MessageCoder<>(MP_UserLoggingInResp.class), loginResponseMessage)));
       List<Future<?>> futures =
           loginResponseMessage.getApplicationData().getVinList().stream()
               .map(
@@ -284,9 +274,7 @@ public class SaicMqttGateway implements Callable<Integer> {
                         new VehicleHandler(
                             this,
                             client,
-                            saicUri,
-                            loginResponseMessage.getBody().getUid(),
-                            loginResponseMessage.getApplicationData().getToken(),
+                            saicApi,
                             mqttAccountPrefix,
                             vin,
                             getVehicleState(mqttAccountPrefix, vin.getVin()));
@@ -303,11 +291,7 @@ public class SaicMqttGateway implements Callable<Integer> {
               .map(Executors.newSingleThreadExecutor()::submit)
               .collect(Collectors.toList());
 
-      ScheduledFuture<?> pollingJob =
-          createMessagePoller(
-              loginResponseMessage.getBody().getUid(),
-              loginResponseMessage.getApplicationData().getToken(),
-              mqttAccountPrefix);
+      ScheduledFuture<?> pollingJob = createMessagePoller(mqttAccountPrefix);
 
       futures.add(pollingJob);
 
@@ -326,28 +310,14 @@ public class SaicMqttGateway implements Callable<Integer> {
     }
   }
 
-  private void registerAlarmMessage(String uid, String token, MP_AlarmSettingType.EnumType type)
+  private void registerAlarmMessage(MP_AlarmSettingType.EnumType type)
       throws NoSuchAlgorithmException, IOException {
-    MessageCoder<AlarmSwitchReq> alarmSwitchReqMessageCoder =
-        new MessageCoder<>(AlarmSwitchReq.class);
-
     AlarmSwitchReq alarmSwitchReq = new AlarmSwitchReq();
     alarmSwitchReq.setAlarmSwitchList(
         Stream.of(type).map(v -> createAlarmSwitch(v, true)).collect(Collectors.toList()));
     alarmSwitchReq.setPin(hashMD5("123456"));
 
-    Message<AlarmSwitchReq> alarmSwitchMessage =
-        alarmSwitchReqMessageCoder.initializeMessage(
-            uid, token, null, "521", 513, 1, alarmSwitchReq);
-    String alarmSwitchRequest = alarmSwitchReqMessageCoder.encodeRequest(alarmSwitchMessage);
-    String alarmSwitchResponse =
-        Client.sendRequest(saicUri.resolve("/TAP.Web/ota.mp"), alarmSwitchRequest);
-    final MessageCoder<IASN1PreparedElement> alarmSwitchResMessageCoder =
-        new MessageCoder<>(IASN1PreparedElement.class);
-    Message<IASN1PreparedElement> alarmSwitchResponseMessage =
-        alarmSwitchResMessageCoder.decodeResponse(alarmSwitchResponse);
-
-    LOGGER.debug(toJSON(anonymized(alarmSwitchResMessageCoder, alarmSwitchResponseMessage)));
+    Message<IASN1PreparedElement> alarmSwitchResponseMessage = saicApi.alarmSwitch(alarmSwitchReq);
 
     if (alarmSwitchResponseMessage.getBody().getErrorMessage() != null) {
       LOGGER.warn(
@@ -381,14 +351,10 @@ public class SaicMqttGateway implements Callable<Integer> {
 
   private static final char[] HEX_ARRAY = "0123456789ABCDEF".toCharArray();
 
-  private ScheduledFuture<?> createMessagePoller(
-      String uid, String token, String mqttAccountPrefix) {
+  private ScheduledFuture<?> createMessagePoller(String mqttAccountPrefix) {
     return Executors.newSingleThreadScheduledExecutor()
         .scheduleWithFixedDelay(
-            new MessageHandler(saicUri, uid, token, mqttAccountPrefix, this),
-            1,
-            1,
-            TimeUnit.SECONDS);
+            new MessageHandler(saicApi, mqttAccountPrefix, this), 1, 1, TimeUnit.SECONDS);
   }
 
   public static void main(String... args) {
@@ -419,102 +385,12 @@ public class SaicMqttGateway implements Callable<Integer> {
     return map;
   }
 
-  static <
-          H extends IASN1PreparedElement,
-          B extends IASN1PreparedElement,
-          E extends IASN1PreparedElement,
-          M extends AbstractMessage<H, B, E>>
-      M anonymized(AbstractMessageCoder<H, B, E, M> coder, M message) {
-    M messageCopy = coder.decodeResponse(coder.encodeRequest(message));
-    Anonymizer.anonymize(messageCopy);
-    return messageCopy;
-  }
-
-  public static void fillReserved(byte[] reservedBytes) {
-    System.arraycopy(
-        (ThreadLocalRandom.current().nextLong() + "1111111111111111").getBytes(),
-        0,
-        reservedBytes,
-        0,
-        16);
-  }
-
   public static String toJSON(Object message) {
-    // TODO: make sure this corresponds to the JER ASN.1 serialisation format
-    final ChainedFactory chain =
-        new ChainedFactory() {
-          @Override
-          protected Converter<?> create(Type type, Genson genson, Converter<?> nextConverter) {
-            return new Converter<>() {
-              @Override
-              public void serialize(Object object, ObjectWriter writer, Context ctx)
-                  throws Exception {
-                if (object != null) {
-                  writer.beginNextObjectMetadata();
-                  if (object.getClass().isAnnotationPresent(ASN1Enum.class)) {
-                    writer.writeMetadata(
-                        "ASN1Type", object.getClass().getAnnotation(ASN1Enum.class).name());
-                  } else if (object.getClass().isAnnotationPresent(ASN1Sequence.class)) {
-                    writer.writeMetadata(
-                        "ASN1Type", object.getClass().getAnnotation(ASN1Sequence.class).name());
-                  }
-                }
-
-                @SuppressWarnings("unchecked")
-                Converter<Object> n = (Converter<Object>) nextConverter;
-                if (!(writer instanceof UTF8StringObjectWriter)) {
-                  writer = new UTF8StringObjectWriter(writer);
-                }
-                n.serialize(object, writer, ctx);
-              }
-
-              @Override
-              public Object deserialize(ObjectReader reader, Context ctx) throws Exception {
-                return nextConverter.deserialize(reader, ctx);
-              }
-            };
-          }
-        };
-    chain.withNext(
-        new ChainedFactory() {
-          @Override
-          protected Converter<?> create(Type type, Genson genson, Converter<?> converter) {
-            final Class<?> clazz = TypeUtil.getRawClass(type);
-            if (clazz.isAnnotationPresent(ASN1Enum.class)) {
-
-              return new Converter<>() {
-                @Override
-                public void serialize(Object o, ObjectWriter objectWriter, Context context)
-                    throws Exception {
-                  Method getValue = clazz.getMethod("getValue");
-                  Object value = getValue.invoke(o);
-                  if (value == null) {
-                    objectWriter.writeNull();
-                  } else {
-                    objectWriter.writeString(String.valueOf(value));
-                  }
-                }
-
-                @Override
-                public Object deserialize(ObjectReader objectReader, Context context) {
-                  throw new UnsupportedOperationException("not implemented yet");
-                }
-              };
-            } else {
+    return JSON.toJSON(message);
+  }
 
-              return converter;
-            }
-          }
-        });
-    return new GensonBuilder()
-        .useDateAsTimestamp(false)
-        .withBundle(new JavaDateTimeBundle())
-        .useIndentation(true)
-        .useRuntimeType(true)
-        .exclude("preparedData")
-        .withConverterFactory(chain)
-        .create()
-        .serialize(message);
+  public static byte[] toJSONBytes(Object message) {
+    return JSON.toJSONBytes(message);
   }
 
   public String getAbrpApiKey() {
@@ -526,8 +402,7 @@ public class SaicMqttGateway implements Callable<Integer> {
   }
 
   public void notifyMessage(String mqttMessagePrefix, SaicMessage message) throws MqttException {
-    MqttMessage msg =
-        new MqttMessage(SaicMqttGateway.toJSON(message).getBytes(StandardCharsets.UTF_8));
+    MqttMessage msg = new MqttMessage(SaicMqttGateway.toJSONBytes(message));
     msg.setQos(0);
     // Don't retain, so deleted messages are removed
     // automatically from the broker
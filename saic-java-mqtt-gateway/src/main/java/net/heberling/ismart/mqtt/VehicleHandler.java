@@ -4,27 +4,23 @@ import static net.heberling.ismart.mqtt.MqttGatewayTopics.*;
 import static net.heberling.ismart.mqtt.RefreshMode.FORCE;
 
 import java.io.IOException;
-import java.net.URI;
 import java.net.URISyntaxException;
 import java.nio.charset.StandardCharsets;
 import java.time.OffsetDateTime;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeoutException;
-import net.heberling.ismart.Client;
+import net.heberling.ismart.SaicApiClient;
 import net.heberling.ismart.abrp.ABRP;
 import net.heberling.ismart.asn1.v1_1.entity.VinInfo;
-import net.heberling.ismart.asn1.v2_1.MessageCoder;
 import net.heberling.ismart.asn1.v2_1.entity.OTA_RVCReq;
 import net.heberling.ismart.asn1.v2_1.entity.OTA_RVCStatus25857;
-import net.heberling.ismart.asn1.v2_1.entity.OTA_RVMVehicleStatusReq;
 import net.heberling.ismart.asn1.v2_1.entity.OTA_RVMVehicleStatusResp25857;
 import net.heberling.ismart.asn1.v2_1.entity.RvcReqParam;
-import net.heberling.ismart.asn1.v3_0.Message;
 import net.heberling.ismart.asn1.v3_0.entity.OTA_ChrgCtrlReq;
 import net.heberling.ismart.asn1.v3_0.entity.OTA_ChrgCtrlStsResp;
 import net.heberling.ismart.asn1.v3_0.entity.OTA_ChrgMangDataResp;
-import org.bn.coders.IASN1PreparedElement;
 import org.eclipse.paho.client.mqttv3.IMqttClient;
 import org.eclipse.paho.client.mqttv3.MqttException;
 import org.eclipse.paho.client.mqttv3.MqttMessage;
@@ -34,9 +30,7 @@ import org.slf4j.LoggerFactory;
 public class VehicleHandler {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(VehicleHandler.class);
-  private final URI saicUri;
-  private final String uid;
-  private final String token;
+  private final SaicApiClient saicApi;
   private final VinInfo vinInfo;
   private final SaicMqttGateway saicMqttGateway;
   private final IMqttClient client;
@@ -46,18 +40,14 @@ public class VehicleHandler {
   public VehicleHandler(
       SaicMqttGateway saicMqttGateway,
       IMqttClient client,
-      URI saicUri,
-      String uid,
-      String token,
+      SaicApiClient saicApi,
       String mqttAccountPrefix,
       VinInfo vinInfo,
       VehicleState vehicleState) {
 
     this.saicMqttGateway = saicMqttGateway;
     this.client = client;
-    this.saicUri = saicUri;
-    this.uid = uid;
-    this.token = token;
+    this.saicApi = saicApi;
     this.vinInfo = vinInfo;
     this.vehicleState = vehicleState;
   }
@@ -75,10 +65,9 @@ public class VehicleHandler {
 
         try {
 
-          OTA_RVMVehicleStatusResp25857 vehicleStatus =
-              updateVehicleStatus(uid, token, vinInfo.getVin());
+          OTA_RVMVehicleStatusResp25857 vehicleStatus = updateVehicleStatus(vinInfo.getVin());
 
-          OTA_ChrgMangDataResp chargeStatus = updateChargeStatus(uid, token, vinInfo.getVin());
+          OTA_ChrgMangDataResp chargeStatus = updateChargeStatus(vinInfo.getVin());
           final String abrpApiKey = saicMqttGateway.getAbrpApiKey();
           final String abrpUserToken = saicMqttGateway.getAbrpUserToken(vinInfo.getVin());
           if (abrpApiKey != null && abrpUserToken != null && vehicleStatus != null) {
@@ -125,151 +114,81 @@ public class VehicleHandler {
     client.publish(vehicleState.getMqttVINPrefix() + "/" + DRIVETRAIN_SOC, msg);
   }
 
-  private OTA_RVMVehicleStatusResp25857 updateVehicleStatus(String uid, String token, String vin)
+  private OTA_RVMVehicleStatusResp25857 updateVehicleStatus(String vin)
       throws IOException, MqttException {
-    MessageCoder<OTA_RVMVehicleStatusReq> otaRvmVehicleStatusReqMessageCoder =
-        new MessageCoder<>(OTA_RVMVehicleStatusReq.class);
-
-    OTA_RVMVehicleStatusReq otaRvmVehicleStatusReq = new OTA_RVMVehicleStatusReq();
-    otaRvmVehicleStatusReq.setVehStatusReqType(2);
-    net.heberling.ismart.asn1.v2_1.Message<OTA_RVMVehicleStatusReq> vehicleStatusRequestMessage =
-        otaRvmVehicleStatusReqMessageCoder.initializeMessage(
-            uid, token, vin, "511", 25857, 1, otaRvmVehicleStatusReq);
-
-    String vehicleStatusRequest =
-        otaRvmVehicleStatusReqMessageCoder.encodeRequest(vehicleStatusRequestMessage);
-
-    String vehicleStatusResponse =
-        Client.sendRequest(saicUri.resolve("/TAP.Web/ota.mpv21"), vehicleStatusRequest);
-
     net.heberling.ismart.asn1.v2_1.Message<OTA_RVMVehicleStatusResp25857>
-        vehicleStatusResponseMessage =
-            new net.heberling.ismart.asn1.v2_1.MessageCoder<>(OTA_RVMVehicleStatusResp25857.class)
-                .decodeResponse(vehicleStatusResponse);
-
-    // we get an eventId back...
-    vehicleStatusRequestMessage
-        .getBody()
-        .setEventID(vehicleStatusResponseMessage.getBody().getEventID());
-    // ... use that to request the data again, until we have it
-    while (vehicleStatusResponseMessage.getApplicationData() == null) {
+        vehicleStatusResponseMessage = await(saicApi.vehicleStatus(vin));
 
-      if (vehicleStatusResponseMessage.getBody().isErrorMessagePresent()) {
-
-        if (vehicleStatusResponseMessage.getBody().getResult() == 2) {
-          // TODO: relogn
-        }
-
-        throw new MqttGatewayException(
-            "Refreshing Vehicle State from SAIC API failed with message: "
-                + new String(
-                    vehicleStatusResponseMessage.getBody().getErrorMessage(),
-                    StandardCharsets.UTF_8));
-      }
-
-      vehicleStatusRequestMessage.getBody().setUid(uid);
-      vehicleStatusRequestMessage.getBody().setToken(token);
-
-      SaicMqttGateway.fillReserved(vehicleStatusRequestMessage.getReserved());
-
-      vehicleStatusRequest =
-          otaRvmVehicleStatusReqMessageCoder.encodeRequest(vehicleStatusRequestMessage);
-
-      vehicleStatusResponse =
-          Client.sendRequest(saicUri.resolve("/TAP.Web/ota.mpv21"), vehicleStatusRequest);
-
-      vehicleStatusResponseMessage =
-          new net.heberling.ismart.asn1.v2_1.MessageCoder<>(OTA_RVMVehicleStatusResp25857.class)
-              .decodeResponse(vehicleStatusResponse);
-
-      LOGGER.debug(
-          SaicMqttGateway.toJSON(
-              SaicMqttGateway.anonymized(
-                  new net.heberling.ismart.asn1.v2_1.MessageCoder<>(
-                      OTA_RVMVehicleStatusResp25857.class),
-                  vehicleStatusResponseMessage)));
+    if (vehicleStatusResponseMessage == null) {
+      throw new MqttGatewayException("Refreshing Vehicle State from SAIC API failed: no response");
+    }
+    if (vehicleStatusResponseMessage.getApplicationData() == null) {
+      throw new MqttGatewayException(
+          "Refreshing Vehicle State from SAIC API failed with message: "
+              + errorMessage(
+                  vehicleStatusResponseMessage.getBody().getErrorMessage(),
+                  vehicleStatusResponseMessage.getBody().getResult()));
     }
 
     vehicleState.handleVehicleStatusMessage(vehicleStatusResponseMessage);
     return vehicleStatusResponseMessage.getApplicationData();
   }
 
-  private OTA_ChrgMangDataResp updateChargeStatus(String uid, String token, String vin)
-      throws IOException, MqttException {
-    net.heberling.ismart.asn1.v3_0.MessageCoder<IASN1PreparedElement>
-        chargingStatusRequestMessageEncoder =
-            new net.heberling.ismart.asn1.v3_0.MessageCoder<>(IASN1PreparedElement.class);
-
-    net.heberling.ismart.asn1.v3_0.Message<IASN1PreparedElement> chargingStatusMessage =
-        chargingStatusRequestMessageEncoder.initializeMessage(uid, token, vin, "516", 768, 5, null);
-
-    String chargingStatusRequestMessage =
-        chargingStatusRequestMessageEncoder.encodeRequest(chargingStatusMessage);
-
-    LOGGER.debug(
-        SaicMqttGateway.toJSON(
-            SaicMqttGateway.anonymized(
-                chargingStatusRequestMessageEncoder, chargingStatusMessage)));
-
-    String chargingStatusResponse =
-        Client.sendRequest(saicUri.resolve("/TAP.Web/ota.mpv30"), chargingStatusRequestMessage);
-
+  private OTA_ChrgMangDataResp updateChargeStatus(String vin) throws IOException, MqttException {
     net.heberling.ismart.asn1.v3_0.Message<OTA_ChrgMangDataResp> chargingStatusResponseMessage =
-        new net.heberling.ismart.asn1.v3_0.MessageCoder<>(OTA_ChrgMangDataResp.class)
-            .decodeResponse(chargingStatusResponse);
-
-    LOGGER.debug(
-        SaicMqttGateway.toJSON(
-            SaicMqttGateway.anonymized(
-                new net.heberling.ismart.asn1.v3_0.MessageCoder<>(OTA_ChrgMangDataResp.class),
-                chargingStatusResponseMessage)));
-
-    // we get an eventId back...
-    chargingStatusMessage
-        .getBody()
-        .setEventID(chargingStatusResponseMessage.getBody().getEventID());
-    // ... use that to request the data again, until we have it
-    while (chargingStatusResponseMessage.getApplicationData() == null) {
-
-      if (chargingStatusResponseMessage.getBody().isErrorMessagePresent()) {
-        if (chargingStatusResponseMessage.getBody().getResult() == 2) {
-          // TODO: relogn
-        }
-        LOGGER.error(
-            "Refreshing Charging State from SAIC API failed with message: {}",
-            new String(
-                chargingStatusResponseMessage.getBody().getErrorMessage(), StandardCharsets.UTF_8));
-        return null;
-      }
-
-      SaicMqttGateway.fillReserved(chargingStatusMessage.getReserved());
+        await(saicApi.chargeStatus(vin));
 
-      LOGGER.debug(
-          SaicMqttGateway.toJSON(
-              SaicMqttGateway.anonymized(
-                  chargingStatusRequestMessageEncoder, chargingStatusMessage)));
-
-      chargingStatusRequestMessage =
-          chargingStatusRequestMessageEncoder.encodeRequest(chargingStatusMessage);
-
-      chargingStatusResponse =
-          Client.sendRequest(saicUri.resolve("/TAP.Web/ota.mpv30"), chargingStatusRequestMessage);
-
-      chargingStatusResponseMessage =
-          new net.heberling.ismart.asn1.v3_0.MessageCoder<>(OTA_ChrgMangDataResp.class)
-              .decodeResponse(chargingStatusResponse);
-
-      LOGGER.debug(
-          SaicMqttGateway.toJSON(
-              SaicMqttGateway.anonymized(
-                  new net.heberling.ismart.asn1.v3_0.MessageCoder<>(OTA_ChrgMangDataResp.class),
-                  chargingStatusResponseMessage)));
+    if (chargingStatusResponseMessage == null) {
+      LOGGER.error("Refreshing Charging State from SAIC API failed: no response");
+      return null;
+    }
+    if (chargingStatusResponseMessage.getApplicationData() == null) {
+      LOGGER.error(
+          "Refreshing Charging State from SAIC API failed with message: {}",
+          errorMessage(
+              chargingStatusResponseMessage.getBody().getErrorMessage(),
+              chargingStatusResponseMessage.getBody().getResult()));
+      return null;
     }
     vehicleState.handleChargeStatusMessage(chargingStatusResponseMessage);
 
     return chargingStatusResponseMessage.getApplicationData();
   }
 
+  /**
+   * Returns the error message of a response without application data, or its result, if the
+   * response has no error message, like when the token was still expired after logging in again.
+   */
+  private static String errorMessage(byte[] errorMessage, Integer result) {
+    if (errorMessage == null) {
+      return "no error message, result " + result;
+    }
+    return new String(errorMessage, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Waits for the result of a pending operation. Timeouts are thrown as {@link
+   * MqttGatewayException}s, like errors of the SAIC API.
+   */
+  private static <R> R await(CompletableFuture<R> operation) throws IOException {
+    try {
+      return operation.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      operation.cancel(false);
+      throw new MqttGatewayException("Interrupted while waiting for the SAIC API", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new MqttGatewayException(cause.getMessage(), cause);
+    }
+  }
+
   public void notifyMessage(SaicMessage message) throws MqttException {
     vehicleState.notifyMessage(message);
   }
@@ -294,8 +213,6 @@ public class VehicleHandler {
           TimeoutException,
           MqttException,
           IOException {
-    MessageCoder<OTA_RVCReq> otaRvcReqMessageCoder = new MessageCoder<>(OTA_RVCReq.class);
-
     // we send a command end expect the car to wake up
     vehicleState.notifyCarActivityTime(OffsetDateTime.now(), false);
 
@@ -314,53 +231,13 @@ public class VehicleHandler {
           });
     }
 
-    net.heberling.ismart.asn1.v2_1.Message<OTA_RVCReq> sendCommandRequest =
-        otaRvcReqMessageCoder.initializeMessage(uid, token, vinInfo.getVin(), "510", 25857, 1, req);
-
-    String sendCommandRequestMessage = otaRvcReqMessageCoder.encodeRequest(sendCommandRequest);
-
-    String sendCommandResponseMessage =
-        Client.sendRequest(saicUri.resolve("/TAP.Web/ota.mpv21"), sendCommandRequestMessage);
-
-    final MessageCoder<OTA_RVCStatus25857> otaRvcStatus25857MessageCoder =
-        new MessageCoder<>(OTA_RVCStatus25857.class);
     net.heberling.ismart.asn1.v2_1.Message<OTA_RVCStatus25857> sendCommandReqestMessage =
-        otaRvcStatus25857MessageCoder.decodeResponse(sendCommandResponseMessage);
+        await(saicApi.remoteControl(vinInfo.getVin(), req));
 
-    // ... use that to request the data again, until we have it
     // TODO: check for real errors (result!=0 and/or errorMessagePresent)
-    while (sendCommandReqestMessage.getApplicationData() == null) {
-      if (sendCommandReqestMessage.getBody().isErrorMessagePresent()) {
-        if (sendCommandReqestMessage.getBody().getResult() == 2) {
-          // TODO:
-          // getBridgeHandler().relogin();
-        }
-        throw new TimeoutException(
-            new String(sendCommandReqestMessage.getBody().getErrorMessage()));
-      }
-      SaicMqttGateway.fillReserved(sendCommandRequest.getReserved());
-
-      if (sendCommandReqestMessage.getBody().getResult() == 0) {
-        // we get an eventId back...
-        sendCommandRequest.getBody().setEventID(sendCommandReqestMessage.getBody().getEventID());
-      } else {
-        // try a fresh eventId
-        sendCommandRequest.getBody().setEventID(0);
-      }
-
-      sendCommandRequestMessage = otaRvcReqMessageCoder.encodeRequest(sendCommandRequest);
-
-      sendCommandResponseMessage =
-          Client.sendRequest(saicUri.resolve("/TAP.Web/ota.mpv21"), sendCommandRequestMessage);
-
-      sendCommandReqestMessage =
-          otaRvcStatus25857MessageCoder.decodeResponse(sendCommandResponseMessage);
+    if (sendCommandReqestMessage.getApplicationData() == null) {
+      throw new TimeoutException(new String(sendCommandReqestMessage.getBody().getErrorMessage()));
     }
-
-    LOGGER.debug(
-        "Got SendCommand Response message: {}",
-        SaicMqttGateway.toJSON(
-            SaicMqttGateway.anonymized(otaRvcStatus25857MessageCoder, sendCommandReqestMessage)));
   }
 
   private void sendCharging(boolean state)
@@ -370,9 +247,6 @@ public class VehicleHandler {
           TimeoutException,
           MqttException,
           IOException {
-    net.heberling.ismart.asn1.v3_0.MessageCoder<OTA_ChrgCtrlReq> otaRvcReqMessageCoder =
-        new net.heberling.ismart.asn1.v3_0.MessageCoder<>(OTA_ChrgCtrlReq.class);
-
     // we send a command end expect the car to wake up
     vehicleState.notifyCarActivityTime(OffsetDateTime.now(), false);
 
@@ -381,54 +255,13 @@ public class VehicleHandler {
     req.setTboxEleccLckCtrlReq(0);
     req.setChrgCtrlReq(state ? 1 : 2);
 
-    Message<OTA_ChrgCtrlReq> sendCommandRequest =
-        otaRvcReqMessageCoder.initializeMessage(uid, token, vinInfo.getVin(), "516", 768, 7, req);
-
-    String sendCommandRequestMessage = otaRvcReqMessageCoder.encodeRequest(sendCommandRequest);
-
-    String sendCommandResponseMessage =
-        Client.sendRequest(saicUri.resolve("/TAP.Web/ota.mpv30"), sendCommandRequestMessage);
-
-    final net.heberling.ismart.asn1.v3_0.MessageCoder<OTA_ChrgCtrlStsResp>
-        otaRvcStatus25857MessageCoder =
-            new net.heberling.ismart.asn1.v3_0.MessageCoder<>(OTA_ChrgCtrlStsResp.class);
     net.heberling.ismart.asn1.v3_0.Message<OTA_ChrgCtrlStsResp> sendCommandReqestMessage =
-        otaRvcStatus25857MessageCoder.decodeResponse(sendCommandResponseMessage);
+        await(saicApi.chargeControl(vinInfo.getVin(), req));
 
-    // ... use that to request the data again, until we have it
     // TODO: check for real errors (result!=0 and/or errorMessagePresent)
-    while (sendCommandReqestMessage.getApplicationData() == null) {
-      if (sendCommandReqestMessage.getBody().isErrorMessagePresent()) {
-        if (sendCommandReqestMessage.getBody().getResult() == 2) {
-          // TODO:
-          // getBridgeHandler().relogin();
-        }
-        throw new TimeoutException(
-            new String(sendCommandReqestMessage.getBody().getErrorMessage()));
-      }
-      SaicMqttGateway.fillReserved(sendCommandRequest.getReserved());
-
-      if (sendCommandReqestMessage.getBody().getResult() == 0) {
-        // we get an eventId back...
-        sendCommandRequest.getBody().setEventID(sendCommandReqestMessage.getBody().getEventID());
-      } else {
-        // try a fresh eventId
-        sendCommandRequest.getBody().setEventID(0);
-      }
-
-      sendCommandRequestMessage = otaRvcReqMessageCoder.encodeRequest(sendCommandRequest);
-
-      sendCommandResponseMessage =
-          Client.sendRequest(saicUri.resolve("/TAP.Web/ota.mpv30"), sendCommandRequestMessage);
-
-      sendCommandReqestMessage =
-          otaRvcStatus25857MessageCoder.decodeResponse(sendCommandResponseMessage);
+    if (sendCommandReqestMessage.getApplicationData() == null) {
+      throw new TimeoutException(new String(sendCommandReqestMessage.getBody().getErrorMessage()));
     }
-
-    LOGGER.debug(
-        "Got SendCommand Response message: {}",
-        SaicMqttGateway.toJSON(
-            SaicMqttGateway.anonymized(otaRvcStatus25857MessageCoder, sendCommandReqestMessage)));
   }
 
   public void handleMQTTCommand(String topic, MqttMessage message) throws MqttException {
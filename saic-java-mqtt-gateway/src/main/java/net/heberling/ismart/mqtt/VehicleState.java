@@ -79,9 +79,7 @@ public class VehicleState {
 
     setHVBatteryActive(isCharging || engineRunning || remoteClimateStatus > 0);
 
-    MqttMessage msg =
-        new MqttMessage(
-            SaicMqttGateway.toJSON(vehicleStatusResponseMessage).getBytes(StandardCharsets.UTF_8));
+    MqttMessage msg = new MqttMessage(SaicMqttGateway.toJSONBytes(vehicleStatusResponseMessage));
     msg.setQos(0);
     msg.setRetained(true);
     client.publish(
@@ -144,13 +142,12 @@ public class VehicleState {
 
     msg =
         new MqttMessage(
-            SaicMqttGateway.toJSON(
-                    vehicleStatusResponseMessage
-                        .getApplicationData()
-                        .getGpsPosition()
-                        .getWayPoint()
-                        .getPosition())
-                .getBytes(StandardCharsets.UTF_8));
+            SaicMqttGateway.toJSONBytes(
+                vehicleStatusResponseMessage
+                    .getApplicationData()
+                    .getGpsPosition()
+                    .getWayPoint()
+                    .getPosition()));
     msg.setQos(0);
     msg.setRetained(true);
     client.publish(mqttVINPrefix + "/" + LOCATION_POSITION, msg);
@@ -395,9 +392,7 @@ public class VehicleState {
   public void handleChargeStatusMessage(
       net.heberling.ismart.asn1.v3_0.Message<OTA_ChrgMangDataResp> chargingStatusResponseMessage)
       throws MqttException {
-    MqttMessage msg =
-        new MqttMessage(
-            SaicMqttGateway.toJSON(chargingStatusResponseMessage).getBytes(StandardCharsets.UTF_8));
+    MqttMessage msg = new MqttMessage(SaicMqttGateway.toJSONBytes(chargingStatusResponseMessage));
     msg.setQos(0);
     msg.setRetained(true);
     client.publish(
@@ -486,8 +481,7 @@ public class VehicleState {
   public void notifyMessage(SaicMessage message) throws MqttException {
     if (lastVehicleMessage == null || message.getMessageTime().isAfter(lastVehicleMessage)) {
       // only publish the latest message
-      MqttMessage msg =
-          new MqttMessage(SaicMqttGateway.toJSON(message).getBytes(StandardCharsets.UTF_8));
+      MqttMessage msg = new MqttMessage(SaicMqttGateway.toJSONBytes(message));
       msg.setQos(0);
       msg.setRetained(true);
       client.publish(mqttVINPrefix + "/" + INFO_LAST_MESSAGE, msg);
@@ -536,8 +530,7 @@ public class VehicleState {
     }
     this.hvBatteryActive = hvBatteryActive;
 
-    MqttMessage msg =
-        new MqttMessage(SaicMqttGateway.toJSON(hvBatteryActive).getBytes(StandardCharsets.UTF_8));
+    MqttMessage msg = new MqttMessage(SaicMqttGateway.toJSONBytes(hvBatteryActive));
     msg.setQos(0);
     msg.setRetained(true);
     client.publish(mqttVINPrefix + "/" + DRIVETRAIN_HV_BATTERY_ACTIVE, msg);
@@ -0,0 +1,64 @@
+package net.heberling.ismart.mqtt;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import net.heberling.ismart.asn1.AbstractMessage;
+import net.heberling.ismart.asn1.Anonymizer;
+import net.heberling.ismart.asn1.MessageCopier;
+import org.slf4j.Logger;
+
+/**
+ * Logs the messages exchanged with the SAIC API anonymized and as JSON at debug level.
+ *
+ * <p>Nothing is done, if debug logging is disabled for the logger. Otherwise only a copy of the
+ * message is taken on the calling thread, as the caller may still change it. Anonymizing and
+ * serializing happens on a single background thread, so the traces keep their order. If the
+ * background thread can't keep up, traces are dropped instead of slowing down the caller.
+ */
+final class WireTrace {
+  private static final int QUEUE_CAPACITY = 64;
+
+  private static final AtomicLong DROPPED = new AtomicLong();
+
+  private static final ThreadPoolExecutor EXECUTOR =
+      new ThreadPoolExecutor(
+          1,
+          1,
+          0,
+          TimeUnit.SECONDS,
+          new ArrayBlockingQueue<>(QUEUE_CAPACITY),
+          runnable -> {
+            Thread thread = new Thread(runnable, "wire-trace");
+            thread.setDaemon(true);
+            return thread;
+          },
+          (runnable, executor) -> DROPPED.incrementAndGet());
+
+  private WireTrace() {}
+
+  static void trace(Logger logger, AbstractMessage<?, ?, ?> message) {
+    trace(logger, "{}", message);
+  }
+
+  static void trace(Logger logger, String format, AbstractMessage<?, ?, ?> message) {
+    if (!logger.isDebugEnabled()) {
+      return;
+    }
+    AbstractMessage<?, ?, ?> copy = MessageCopier.copy(message);
+    EXECUTOR.execute(
+        () -> {
+          long dropped = DROPPED.getAndSet(0);
+          if (dropped > 0) {
+            logger.debug("Dropped {} traced messages", dropped);
+          }
+          try {
+            Anonymizer.anonymize(copy);
+            logger.debug(format, SaicMqttGateway.toJSON(copy));
+          } catch (RuntimeException e) {
+            logger.warn("Could not trace message", e);
+          }
+        });
+  }
+}